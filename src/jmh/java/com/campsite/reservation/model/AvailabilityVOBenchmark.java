@@ -0,0 +1,47 @@
+package com.campsite.reservation.model;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Builds an AvailabilityVO with one free date range between every two bookings,
+ * for the given number of bookings.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AvailabilityVOBenchmark {
+
+	@Param({ "10", "100", "1000", "10000", "100000" })
+	int bookings;
+
+	DateRangeVO inThisDateRange;
+
+	DateRangeVO[] freeRanges;
+
+	@Setup
+	public void setup() {
+		LocalDate from = LocalDate.now();
+		inThisDateRange = new DateRangeVO(from, from.plusDays(2L * bookings + 1));
+		freeRanges = new DateRangeVO[bookings];
+		for (int i = 0; i < bookings; i++)
+			freeRanges[i] = new DateRangeVO(from.plusDays(2L * i), from.plusDays(2L * i + 1));
+	}
+
+	@Benchmark
+	public AvailabilityVO addRange() {
+		AvailabilityVO.Builder builder = AvailabilityVO.builder(inThisDateRange);
+		for (DateRangeVO freeRange : freeRanges)
+			builder.addRange(freeRange);
+		return builder.build();
+	}
+}
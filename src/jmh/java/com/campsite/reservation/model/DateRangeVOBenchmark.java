@@ -0,0 +1,57 @@
+package com.campsite.reservation.model;
+
+import java.time.LocalDate;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.data.util.Pair;
+
+/**
+ * DateRangeVO operations used by the availability kernel, one call each.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DateRangeVOBenchmark {
+
+	DateRangeVO range;
+
+	DateRangeVO inside;
+
+	DateRangeVO overlapping;
+
+	@Setup
+	public void setup() {
+		LocalDate now = LocalDate.now();
+		range = new DateRangeVO(now, now.plusMonths(1));
+		inside = new DateRangeVO(now.plusDays(5), now.plusDays(8));
+		overlapping = new DateRangeVO(now.plusDays(25), now.plusMonths(2));
+	}
+
+	@Benchmark
+	public Pair<Optional<DateRangeVO>, Optional<DateRangeVO>> minusInside() {
+		return range.minus(inside);
+	}
+
+	@Benchmark
+	public Pair<Optional<DateRangeVO>, Optional<DateRangeVO>> minusOverlapping() {
+		return range.minus(overlapping);
+	}
+
+	@Benchmark
+	public boolean isInsideRange() {
+		return inside.isInsideRange(range);
+	}
+
+	@Benchmark
+	public int compareTo() {
+		return inside.compareTo(overlapping);
+	}
+}
@@ -0,0 +1,76 @@
+package com.campsite.reservation.service.impl;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.campsite.reservation.model.AvailabilityVO;
+import com.campsite.reservation.model.BookingSlot;
+import com.campsite.reservation.model.DateRangeVO;
+
+/**
+ * Availability calculation from booking slots (what AvailabilityServiceImpl
+ * does with the slots read from the database) and the availability checks made
+ * before saving a booking (over the calculated availability, or stopping at
+ * the first booking overlapping as InMemoryAvailabilityServiceImpl does), for
+ * the given number of one night bookings with one free night in between.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AvailabilityKernelBenchmark {
+
+	@Param({ "10", "100", "1000", "10000", "100000" })
+	int bookings;
+
+	DateRangeVO inThisDateRange;
+
+	List<BookingSlot> slots;
+
+	AvailabilityVO availability;
+
+	BookingIntervalIndex index;
+
+	/**
+	 * Only fits in the last free night, the worst case for the check.
+	 */
+	DateRangeVO toBook;
+
+	@Setup
+	public void setup() {
+		LocalDate from = LocalDate.now();
+		inThisDateRange = new DateRangeVO(from, from.plusDays(2L * bookings + 1));
+		slots = new ArrayList<BookingSlot>(bookings);
+		for (int i = 0; i < bookings; i++)
+			slots.add(new BookingSlot("id" + i, new DateRangeVO(from.plusDays(2L * i + 1), from.plusDays(2L * i + 2))));
+		availability = AvailabilityGaps.fold(inThisDateRange, slots);
+		index = new BookingIntervalIndex();
+		slots.forEach(index::put);
+		toBook = new DateRangeVO(from.plusDays(2L * bookings), from.plusDays(2L * bookings + 1));
+	}
+
+	@Benchmark
+	public AvailabilityVO calculateAvailability() {
+		return AvailabilityGaps.fold(inThisDateRange, slots);
+	}
+
+	@Benchmark
+	public boolean covers() {
+		return availability.covers(toBook);
+	}
+
+	@Benchmark
+	public boolean anyOverlapping() {
+		return index.anyOverlapping(toBook, null);
+	}
+}
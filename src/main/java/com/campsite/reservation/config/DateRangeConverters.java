@@ -0,0 +1,91 @@
+package com.campsite.reservation.config;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.bson.Document;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.core.env.Environment;
+import org.springframework.data.convert.ReadingConverter;
+import org.springframework.data.convert.WritingConverter;
+
+import com.campsite.reservation.model.DateRangeVO;
+
+/**
+ * Storage format for booking date ranges, set with reservation.booking-storage:
+ * 'date' (default) keeps 'from' and 'to' as BSON dates, 'epoch-day' keeps them
+ * as int32 days since 1970-01-01, half the size in documents and indexes and
+ * compared as plain integers.
+ * 
+ * Date ranges are always read from both formats, so documents not migrated yet
+ * can still be read.
+ */
+public final class DateRangeConverters {
+
+	public static final String STORAGE_PROPERTY = "reservation.booking-storage";
+
+	public static final String EPOCH_DAY = "epoch-day";
+
+	private DateRangeConverters() {
+	}
+
+	public static boolean isEpochDay(Environment env) {
+		return EPOCH_DAY.equals(env.getProperty(STORAGE_PROPERTY, "date"));
+	}
+
+	public static List<Converter<?, ?>> converters(boolean epochDay) {
+		if (epochDay)
+			return Arrays.asList(DateRangeToEpochDaysConverter.INSTANCE, DocumentToDateRangeConverter.INSTANCE);
+		return Collections.<Converter<?, ?>>singletonList(DocumentToDateRangeConverter.INSTANCE);
+	}
+
+	/**
+	 * Value to store or query for the given date, as per the storage format.
+	 */
+	public static Object toStored(LocalDate date, boolean epochDay) {
+		return epochDay ? (Object) Integer.valueOf((int) date.toEpochDay()) : date;
+	}
+
+	/**
+	 * Value read for a date in any of the storage formats. BSON dates are read in
+	 * the system zone, the same one Spring Data writes them in.
+	 */
+	public static LocalDate fromStored(Object value) {
+		if (value == null)
+			return null;
+		if (value instanceof Number)
+			return LocalDate.ofEpochDay(((Number) value).longValue());
+		if (value instanceof Date)
+			return ((Date) value).toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+		throw new IllegalArgumentException(String.format("Cannot read date from %s", value));
+	}
+
+	@WritingConverter
+	enum DateRangeToEpochDaysConverter implements Converter<DateRangeVO, Document> {
+
+		INSTANCE;
+
+		@Override
+		public Document convert(DateRangeVO source) {
+			Document document = new Document("from", toStored(source.getFrom(), true));
+			if (!source.isOpen())
+				document.put("to", toStored(source.getTo(), true));
+			return document;
+		}
+	}
+
+	@ReadingConverter
+	enum DocumentToDateRangeConverter implements Converter<Document, DateRangeVO> {
+
+		INSTANCE;
+
+		@Override
+		public DateRangeVO convert(Document source) {
+			return new DateRangeVO(fromStored(source.get("from")), fromStored(source.get("to")));
+		}
+	}
+}
@@ -0,0 +1,118 @@
+package com.campsite.reservation.config;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+import java.util.Arrays;
+
+import javax.annotation.PostConstruct;
+
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import com.campsite.reservation.model.Booking;
+import com.campsite.reservation.model.Hold;
+import com.campsite.reservation.repository.HoldRepository;
+
+import reactor.core.publisher.Mono;
+
+@Configuration
+public class MongoConfig {
+
+	private static final Logger LOG = LoggerFactory.getLogger(MongoConfig.class);
+
+	/**
+	 * BSON type numbers for the booking date range storage formats.
+	 */
+	private static final int BSON_DATE = 9;
+
+	private static final int BSON_INT32 = 16;
+
+	@Autowired
+	ReactiveMongoTemplate mongo;
+
+	@Autowired
+	Environment env;
+
+	@Autowired
+	HoldRepository holdRepository;
+
+	/**
+	 * Static so it can be created before this configuration, which needs the
+	 * template built with it.
+	 */
+	@Bean
+	public static MongoCustomConversions mongoCustomConversions(Environment env) {
+		return new MongoCustomConversions(DateRangeConverters.converters(DateRangeConverters.isEpochDay(env)));
+	}
+
+	/**
+	 * Indexes needed by BookingRepositoryCustom queries, created at startup.
+	 * 
+	 * The overlap indexes lead with dateRange.to so the scan for a given date
+	 * range starts at the first booking ending after 'from', past bookings are
+	 * never touched no matter how big the history gets. The one prefixed by siteId
+	 * is used when looking for a given site, so bookings for other sites are never
+	 * scanned either.
+	 * 
+	 * Booking and hold date ranges stored in the other format than
+	 * reservation.booking-storage are converted first, since queries only match
+	 * values of the same BSON type.
+	 */
+	@PostConstruct
+	public void ensureIndexes() {
+		Long migrated = mongo.updateMulti(query(where("siteId").exists(false)),
+				new Update().set("siteId", Booking.DEFAULT_SITE), Booking.class).map(result -> result.getModifiedCount())
+				.block();
+		LOG.info("ensureIndexes bookings moved to site '{}': {}", Booking.DEFAULT_SITE, migrated);
+		boolean epochDay = DateRangeConverters.isEpochDay(env);
+		for (Class<?> entityClass : Arrays.asList(Booking.class, Hold.class)) {
+			migrated = migrateDateRanges(entityClass, epochDay ? BSON_DATE : BSON_INT32, epochDay).block();
+			LOG.info("ensureIndexes {} date ranges converted to '{}': {}", mongo.getCollectionName(entityClass),
+					env.getProperty(DateRangeConverters.STORAGE_PROPERTY, "date"), migrated);
+		}
+		String name = mongo.indexOps(Booking.class).ensureIndex(new Index().on("dateRange.to", Sort.Direction.ASC)
+				.on("dateRange.from", Sort.Direction.ASC).named("dateRange_overlap")).block();
+		LOG.info("ensureIndexes booking: {}", name);
+		name = mongo.indexOps(Booking.class)
+				.ensureIndex(new Index().on("siteId", Sort.Direction.ASC).on("dateRange.to", Sort.Direction.ASC)
+						.on("dateRange.from", Sort.Direction.ASC).named("siteId_dateRange_overlap"))
+				.block();
+		LOG.info("ensureIndexes booking: {}", name);
+		LOG.info("ensureIndexes hold: {}", holdRepository.ensureIndexes().block());
+	}
+
+	/**
+	 * Streams the bookings (or holds) whose date range is stored as fromType and
+	 * rewrites each one, only if it was not changed in the meantime.
+	 */
+	private Mono<Long> migrateDateRanges(Class<?> entityClass, int fromType, boolean epochDay) {
+		String collection = mongo.getCollectionName(entityClass);
+		Query stored = query(where("dateRange.from").type(fromType));
+		stored.fields().include("dateRange");
+		return mongo.find(stored, Document.class, collection).flatMap(booking -> {
+			Document dateRange = booking.get("dateRange", Document.class);
+			Object from = dateRange.get("from");
+			Object to = dateRange.get("to");
+			return mongo.updateFirst(
+					query(where("_id").is(booking.get("_id")).and("dateRange.from").is(from).and("dateRange.to").is(to)),
+					new Update()
+							.set("dateRange.from",
+									DateRangeConverters.toStored(DateRangeConverters.fromStored(from), epochDay))
+							.set("dateRange.to",
+									DateRangeConverters.toStored(DateRangeConverters.fromStored(to), epochDay)),
+					collection);
+		}, 8).filter(result -> result.getModifiedCount() > 0).count();
+	}
+}
@@ -2,11 +2,13 @@ package com.campsite.reservation.controller;
 
 import java.net.URI;
 import java.time.LocalDate;
+import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -14,18 +16,23 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.campsite.reservation.model.AvailabilityVO;
+import com.campsite.reservation.model.BatchItemResultVO;
+import com.campsite.reservation.model.BatchMode;
 import com.campsite.reservation.model.Booking;
 import com.campsite.reservation.model.DateRangeVO;
+import com.campsite.reservation.model.Hold;
 import com.campsite.reservation.service.ReservationService;
 
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @Api(value = "Reservations system")
@@ -41,19 +48,81 @@ public class ReservationController {
 	@ApiOperation(value = "Checks availability for a given date range. By default 'from' is set to today, 'to' to today + 1 month", response = AvailabilityVO.class)
 	@GetMapping("/find-availability")
 	public Mono<ResponseEntity<AvailabilityVO>> findAvailability(
+			@ApiParam(value = "Site to check for availability, 'default' if not set.", required = false) @RequestParam(value = "siteId", required = false, defaultValue = Booking.DEFAULT_SITE) String siteId,
 			@ApiParam(value = "From what date to check for availability?, in 'yyyy-MM-dd' format.", required = false) @RequestParam(value = "from", required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate from,
 			@ApiParam(value = "To what date to check for availability?, in 'yyyy-MM-dd' format.", required = false) @RequestParam(value = "to", required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate to) {
-		LOG.info("findAvailability from: {}, to: {}", from, to);
-		return reservationService.findAvailability(new DateRangeVO(from, to))
+		LOG.info("findAvailability siteId: {}, from: {}, to: {}", siteId, from, to);
+		return reservationService.findAvailability(siteId, new DateRangeVO(from, to))
 				.map(availability -> ResponseEntity.ok(availability));
 	}
 
+	@ApiOperation(value = "Same as find-availability, but streams every available date range as soon as it is known (one JSON document per line). By default 'from' is set to today, 'to' to today + 1 month", response = DateRangeVO.class, responseContainer = "List")
+	@GetMapping(value = "/find-availability/stream", produces = MediaType.APPLICATION_STREAM_JSON_VALUE)
+	public Flux<DateRangeVO> streamAvailability(
+			@ApiParam(value = "Site to check for availability, 'default' if not set.", required = false) @RequestParam(value = "siteId", required = false, defaultValue = Booking.DEFAULT_SITE) String siteId,
+			@ApiParam(value = "From what date to check for availability?, in 'yyyy-MM-dd' format.", required = false) @RequestParam(value = "from", required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate from,
+			@ApiParam(value = "To what date to check for availability?, in 'yyyy-MM-dd' format.", required = false) @RequestParam(value = "to", required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate to) {
+		LOG.info("streamAvailability siteId: {}, from: {}, to: {}", siteId, from, to);
+		return reservationService.streamAvailability(siteId, new DateRangeVO(from, to));
+	}
+
+	@ApiOperation(value = "Server-sent events with the availability changed inside the given date range, every time a reservation is made, modified or cancelled there. Subscribe before calling find-availability so no change is missed. By default 'from' is set to today, 'to' to today + 1 month", response = AvailabilityVO.class, responseContainer = "List")
+	@GetMapping(value = "/availability-changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+	public Flux<AvailabilityVO> watchAvailability(
+			@ApiParam(value = "Site to watch for availability changes, 'default' if not set.", required = false) @RequestParam(value = "siteId", required = false, defaultValue = Booking.DEFAULT_SITE) String siteId,
+			@ApiParam(value = "From what date to watch for availability changes?, in 'yyyy-MM-dd' format.", required = false) @RequestParam(value = "from", required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate from,
+			@ApiParam(value = "To what date to watch for availability changes?, in 'yyyy-MM-dd' format.", required = false) @RequestParam(value = "to", required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate to) {
+		LOG.info("watchAvailability siteId: {}, from: {}, to: {}", siteId, from, to);
+		return reservationService.watchAvailability(siteId, new DateRangeVO(from, to));
+	}
+
+	@ApiOperation(value = "Looks for the sites with no reservation at all for a given date range.", response = String.class, responseContainer = "List")
+	@GetMapping("/find-free-sites")
+	public Mono<ResponseEntity<List<String>>> findFreeSites(
+			@ApiParam(value = "From what date the site needs to be free?, in 'yyyy-MM-dd' format.", required = true) @RequestParam(value = "from") @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate from,
+			@ApiParam(value = "To what date the site needs to be free?, in 'yyyy-MM-dd' format.", required = true) @RequestParam(value = "to") @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate to) {
+		LOG.info("findFreeSites from: {}, to: {}", from, to);
+		return reservationService.findFreeSites(new DateRangeVO(from, to)).map(sites -> ResponseEntity.ok(sites));
+	}
+
 	@ApiOperation(value = "Makes a reservation. Reservations should be done minimum 1 day ahead of arrival and up to 30 days in advance, for up to 3 days.")
 	@PostMapping("")
-	public Mono<ResponseEntity<Void>> makeReservation(@RequestBody Booking booking) {
-		LOG.info("makeReservation booking: {}", booking);
-		return reservationService.makeReservation(booking).map(booked -> ResponseEntity
-				.created(URI.create(String.format("/reservations/%s", booked.getId()))).build());
+	public Mono<ResponseEntity<Void>> makeReservation(
+			@ApiParam(value = "Retries sent with the same key get the response of the first request, with no new booking made.", required = false) @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+			@RequestBody Booking booking) {
+		LOG.info("makeReservation idempotencyKey: {}, booking: {}", idempotencyKey, booking);
+		Mono<String> bookingId = idempotencyKey == null ? reservationService.makeReservation(booking).map(Booking::getId)
+				: reservationService.makeReservation(booking, idempotencyKey);
+		return bookingId.map(
+				id -> ResponseEntity.created(URI.create(String.format("/reservations/%s", id))).<Void>build());
+	}
+
+	@ApiOperation(value = "Makes several reservations at once, same rules as making one. Returns the result for each reservation, in the same order.", response = BatchItemResultVO.class, responseContainer = "List")
+	@PostMapping("/batch")
+	public Mono<ResponseEntity<List<BatchItemResultVO>>> makeReservations(
+			@ApiParam(value = "ALL_OR_NOTHING (default) makes no reservation unless all of them can be made, BEST_EFFORT makes the ones that can be made.", required = false) @RequestParam(value = "mode", required = false, defaultValue = "ALL_OR_NOTHING") BatchMode mode,
+			@RequestBody List<Booking> bookings) {
+		LOG.info("makeReservations mode: {}, bookings: {}", mode, bookings.size());
+		return reservationService.makeReservations(bookings, mode).map(results -> ResponseEntity.ok(results));
+	}
+
+	@ApiOperation(value = "Holds the nights of a reservation for some minutes, so they are not taken while the reservation is being completed. Same rules as making a reservation.", response = Hold.class)
+	@PostMapping("/holds")
+	public Mono<ResponseEntity<Hold>> holdReservation(
+			@ApiParam(value = "For how many minutes to hold the nights, 10 if not set.", required = false) @RequestParam(value = "minutes", required = false, defaultValue = "10") int minutes,
+			@RequestBody Booking booking) {
+		LOG.info("holdReservation minutes: {}, booking: {}", minutes, booking);
+		return reservationService.holdReservation(booking, minutes).map(hold -> ResponseEntity
+				.created(URI.create(String.format("/reservations/holds/%s", hold.getId()))).body(hold));
+	}
+
+	@ApiOperation(value = "Makes the reservation for a hold not expired yet, by id.")
+	@PostMapping("/holds/{holdId}/confirm")
+	public Mono<ResponseEntity<Void>> confirmHold(
+			@ApiParam(value = "Hold id to confirm.", required = true) @PathVariable String holdId) {
+		LOG.info("confirmHold holdId: {}", holdId);
+		return reservationService.confirmHold(holdId).map(booked -> ResponseEntity
+				.created(URI.create(String.format("/reservations/%s", booked.getId()))).<Void>build());
 	}
 
 	@ApiOperation(value = "Shows info for a given reservation, by id.", response = Booking.class)
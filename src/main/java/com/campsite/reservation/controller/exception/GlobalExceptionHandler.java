@@ -1,11 +1,16 @@
 package com.campsite.reservation.controller.exception;
 
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 
 import com.campsite.reservation.exception.BookingNotFoundException;
+import com.campsite.reservation.exception.HoldNotFoundException;
+import com.campsite.reservation.exception.IdempotencyKeyInUseException;
+import com.campsite.reservation.exception.UnsupportedModeException;
+import com.campsite.reservation.exception.WriteQueueFullException;
 
 import reactor.core.publisher.Mono;
 
@@ -17,8 +22,36 @@ public class GlobalExceptionHandler {
 		return Mono.<ResponseEntity<String>>just(new ResponseEntity<String>(ex.getMessage(), HttpStatus.NOT_FOUND));
 	}
 
+	@ExceptionHandler(HoldNotFoundException.class)
+	public final Mono<ResponseEntity<String>> handleHoldNotFoundException(HoldNotFoundException ex) {
+		return Mono.<ResponseEntity<String>>just(new ResponseEntity<String>(ex.getMessage(), HttpStatus.NOT_FOUND));
+	}
+
+	@ExceptionHandler(UnsupportedModeException.class)
+	public final Mono<ResponseEntity<String>> handleUnsupportedModeException(UnsupportedModeException ex) {
+		return Mono
+				.<ResponseEntity<String>>just(new ResponseEntity<String>(ex.getMessage(), HttpStatus.NOT_IMPLEMENTED));
+	}
+
 	@ExceptionHandler(IllegalArgumentException.class)
 	public final Mono<ResponseEntity<String>> handleAIllegalArgumentException(IllegalArgumentException ex) {
 		return Mono.<ResponseEntity<String>>just(new ResponseEntity<String>(ex.getMessage(), HttpStatus.BAD_REQUEST));
 	}
+
+	@ExceptionHandler(OptimisticLockingFailureException.class)
+	public final Mono<ResponseEntity<String>> handleOptimisticLockingFailureException(
+			OptimisticLockingFailureException ex) {
+		return Mono.<ResponseEntity<String>>just(new ResponseEntity<String>(ex.getMessage(), HttpStatus.CONFLICT));
+	}
+
+	@ExceptionHandler(IdempotencyKeyInUseException.class)
+	public final Mono<ResponseEntity<String>> handleIdempotencyKeyInUseException(IdempotencyKeyInUseException ex) {
+		return Mono.<ResponseEntity<String>>just(new ResponseEntity<String>(ex.getMessage(), HttpStatus.CONFLICT));
+	}
+
+	@ExceptionHandler(WriteQueueFullException.class)
+	public final Mono<ResponseEntity<String>> handleWriteQueueFullException(WriteQueueFullException ex) {
+		return Mono.<ResponseEntity<String>>just(
+				new ResponseEntity<String>(ex.getMessage(), HttpStatus.SERVICE_UNAVAILABLE));
+	}
 }
@@ -0,0 +1,88 @@
+package com.campsite.reservation.event;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.util.Assert;
+
+import com.campsite.reservation.model.Booking;
+import com.campsite.reservation.model.DateRangeVO;
+
+/**
+ * Published (synchronously) once a booking was created, modified or cancelled
+ * in the database, so in-memory views of the bookings can be kept up to date.
+ * Also published when nights were held for a booking (see Hold), in that case
+ * the booking has the hold id.
+ */
+public class BookingEvent {
+
+	public enum Type {
+		CREATED, MODIFIED, CANCELLED, HELD
+	}
+
+	private final Type type;
+
+	private final Booking booking;
+
+	private final DateRangeVO previousDateRange;
+
+	private BookingEvent(Type type, Booking booking, DateRangeVO previousDateRange) {
+		Assert.notNull(type, "type needs to be set");
+		Assert.notNull(booking, "booking needs to be set");
+		this.type = type;
+		this.booking = booking;
+		this.previousDateRange = previousDateRange;
+	}
+
+	public static BookingEvent created(Booking booking) {
+		return new BookingEvent(Type.CREATED, booking, null);
+	}
+
+	public static BookingEvent modified(Booking booking, DateRangeVO previousDateRange) {
+		Assert.notNull(previousDateRange, "previousDateRange needs to be set");
+		return new BookingEvent(Type.MODIFIED, booking, previousDateRange);
+	}
+
+	public static BookingEvent cancelled(Booking booking) {
+		return new BookingEvent(Type.CANCELLED, booking, null);
+	}
+
+	public static BookingEvent held(Booking booking) {
+		return new BookingEvent(Type.HELD, booking, null);
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	/**
+	 * The booking as it is after the change, or as it was when cancelled.
+	 */
+	public Booking getBooking() {
+		return booking;
+	}
+
+	/**
+	 * Date range before the change, only set when the booking was modified.
+	 */
+	public DateRangeVO getPreviousDateRange() {
+		return previousDateRange;
+	}
+
+	/**
+	 * Date ranges where availability changed because of this event.
+	 */
+	public List<DateRangeVO> getChangedDateRanges() {
+		List<DateRangeVO> changed = new ArrayList<DateRangeVO>();
+		changed.add(booking.getDateRange());
+		if (previousDateRange != null)
+			changed.add(previousDateRange);
+		return changed;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("[type: %s, booking: %s, previousDateRange: %s]", this.type, this.booking,
+				this.previousDateRange);
+	}
+}
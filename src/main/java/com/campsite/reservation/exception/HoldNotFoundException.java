@@ -0,0 +1,9 @@
+package com.campsite.reservation.exception;
+
+@SuppressWarnings("serial")
+public class HoldNotFoundException extends RuntimeException {
+
+	public HoldNotFoundException(String holdId) {
+		super(String.format("Hold id '%s' not found or expired!", holdId));
+	}
+}
@@ -0,0 +1,9 @@
+package com.campsite.reservation.exception;
+
+@SuppressWarnings("serial")
+public class IdempotencyKeyInUseException extends RuntimeException {
+
+	public IdempotencyKeyInUseException(String key) {
+		super(String.format("Request with Idempotency-Key '%s' is still being processed, please retry!", key));
+	}
+}
@@ -0,0 +1,9 @@
+package com.campsite.reservation.exception;
+
+@SuppressWarnings("serial")
+public class UnsupportedModeException extends RuntimeException {
+
+	public UnsupportedModeException(String message) {
+		super(message);
+	}
+}
@@ -0,0 +1,9 @@
+package com.campsite.reservation.exception;
+
+@SuppressWarnings("serial")
+public class WriteQueueFullException extends RuntimeException {
+
+	public WriteQueueFullException(String siteId) {
+		super(String.format("Too many reservations pending for site '%s', please retry!", siteId));
+	}
+}
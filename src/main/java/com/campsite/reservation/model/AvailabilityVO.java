@@ -1,7 +1,10 @@
 package com.campsite.reservation.model;
 
 import java.time.LocalDate;
-import java.util.TreeSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 
 import org.springframework.util.Assert;
 
@@ -14,26 +17,55 @@ public class AvailabilityVO {
 	@ApiModelProperty(notes = "Date range for the requested availability.")
 	private DateRangeVO inThisDateRange;
 
+	/**
+	 * Kept as a list, ranges are almost always added in order (see Builder).
+	 */
 	@ApiModelProperty(notes = "Set of date ranges available, sorted by 'from' date.")
-	private TreeSet<DateRangeVO> datesAvailable;
+	private List<DateRangeVO> datesAvailable;
 
 	public AvailabilityVO() {
 
 	}
 
-	public AvailabilityVO(TreeSet<DateRangeVO> datesAvailable, DateRangeVO inThisDateRange) {
+	public AvailabilityVO(Collection<DateRangeVO> datesAvailable, DateRangeVO inThisDateRange) {
 		this.inThisDateRange = inThisDateRange;
-		this.datesAvailable = datesAvailable;
+		if (datesAvailable != null) {
+			this.datesAvailable = new ArrayList<DateRangeVO>(datesAvailable);
+			Collections.sort(this.datesAvailable);
+		}
 	}
 
 	public DateRangeVO getInThisDateRange() {
 		return inThisDateRange;
 	}
 
-	public TreeSet<DateRangeVO> getDatesAvailable() {
+	public List<DateRangeVO> getDatesAvailable() {
 		return datesAvailable;
 	}
 
+	/**
+	 * True if every night in the given date range is available. Available date
+	 * ranges are sorted and do not overlap, so the search starts at the one
+	 * starting at or right before dateRange, moving on while they are adjacent.
+	 */
+	public boolean covers(DateRangeVO dateRange) {
+		Assert.notNull(dateRange, "dateRange needs to be set");
+		if (datesAvailable == null || datesAvailable.isEmpty())
+			return false;
+		int index = Collections.binarySearch(datesAvailable, dateRange);
+		LocalDate cursor = dateRange.getFrom();
+		for (int i = index >= 0 ? index : Math.max(0, -index - 2); i < datesAvailable.size(); i++) {
+			DateRangeVO available = datesAvailable.get(i);
+			if (available.getFrom().isAfter(cursor))
+				return false;
+			if (available.getTo().isAfter(cursor))
+				cursor = available.getTo();
+			if (!cursor.isBefore(dateRange.getTo()))
+				return true;
+		}
+		return false;
+	}
+
 	public static AvailabilityVO.Builder builder(DateRangeVO dateRange) {
 		Assert.notNull(dateRange, "dateRange needs to be set");
 		return new AvailabilityVO.Builder(dateRange);
@@ -61,7 +93,7 @@ public class AvailabilityVO {
 
 		private Builder(DateRangeVO dateRange) {
 			this.availability = new AvailabilityVO();
-			this.availability.datesAvailable = new TreeSet<DateRangeVO>();
+			this.availability.datesAvailable = new ArrayList<DateRangeVO>();
 			this.availability.inThisDateRange = dateRange;
 		}
 
@@ -72,17 +104,26 @@ public class AvailabilityVO {
 
 		public Builder addRange(DateRangeVO dateRange) {
 			Assert.notNull(dateRange, "dateRange needs to be set");
+			// Messages are only built on failure, this runs once per available date range
 			Assert.isTrue(dateRange.isInsideRange(this.availability.inThisDateRange),
-					String.format("Cannot add date range %s because it's out of availability range %s", dateRange,
-							this.availability.inThisDateRange));
-			if (this.availability.datesAvailable.isEmpty()) {
-				this.availability.datesAvailable.add(dateRange);
-			} else {
-				Assert.isTrue(!this.availability.datesAvailable.last().isOpen(),
-						String.format("Cannot add date range %s into %s because last is open", dateRange,
-								this.availability.getDatesAvailable()));
-				this.availability.datesAvailable.add(dateRange);
+					() -> String.format("Cannot add date range %s because it's out of availability range %s",
+							dateRange, this.availability.inThisDateRange));
+			List<DateRangeVO> datesAvailable = this.availability.datesAvailable;
+			if (datesAvailable.isEmpty()) {
+				datesAvailable.add(dateRange);
+				return this;
+			}
+			DateRangeVO last = datesAvailable.get(datesAvailable.size() - 1);
+			Assert.isTrue(!last.isOpen(), () -> String
+					.format("Cannot add date range %s into %s because last is open", dateRange, datesAvailable));
+			if (dateRange.compareTo(last) > 0) {
+				datesAvailable.add(dateRange);
+				return this;
 			}
+			// Out of order, kept sorted and with no duplicates as before
+			int index = Collections.binarySearch(datesAvailable, dateRange);
+			if (index < 0)
+				datesAvailable.add(-index - 1, dateRange);
 			return this;
 		}
 
@@ -0,0 +1,71 @@
+package com.campsite.reservation.model;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+
+/**
+ * Result for one booking of a batch, see BatchMode.
+ */
+@ApiModel(description = "Result for one booking of a batch request, in the same order as sent.")
+public class BatchItemResultVO {
+
+	public enum Status {
+		CREATED, REJECTED, NOT_SAVED
+	}
+
+	@ApiModelProperty(notes = "Position of the booking in the batch, starting at 0.")
+	private int index;
+
+	@ApiModelProperty(notes = "CREATED, REJECTED (the booking cannot be made, see 'message') or NOT_SAVED (the booking could be made but was not saved, see 'message').")
+	private Status status;
+
+	@ApiModelProperty(notes = "Id of the booking made, only when CREATED.")
+	private String bookingId;
+
+	@ApiModelProperty(notes = "Why the booking was not made, if it was not.")
+	private String message;
+
+	public BatchItemResultVO() {
+	}
+
+	private BatchItemResultVO(int index, Status status, String bookingId, String message) {
+		this.index = index;
+		this.status = status;
+		this.bookingId = bookingId;
+		this.message = message;
+	}
+
+	public static BatchItemResultVO created(int index, String bookingId) {
+		return new BatchItemResultVO(index, Status.CREATED, bookingId, null);
+	}
+
+	public static BatchItemResultVO rejected(int index, String message) {
+		return new BatchItemResultVO(index, Status.REJECTED, null, message);
+	}
+
+	public static BatchItemResultVO notSaved(int index, String message) {
+		return new BatchItemResultVO(index, Status.NOT_SAVED, null, message);
+	}
+
+	public int getIndex() {
+		return index;
+	}
+
+	public Status getStatus() {
+		return status;
+	}
+
+	public String getBookingId() {
+		return bookingId;
+	}
+
+	public String getMessage() {
+		return message;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("[index: %d, status: %s, bookingId: %s, message: %s]", this.index, this.status,
+				this.bookingId, this.message);
+	}
+}
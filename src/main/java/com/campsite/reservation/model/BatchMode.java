@@ -0,0 +1,18 @@
+package com.campsite.reservation.model;
+
+/**
+ * What to do with the bookings of a batch that can be made when others in the
+ * same batch cannot.
+ */
+public enum BatchMode {
+
+	/**
+	 * No booking is saved unless all of them can be.
+	 */
+	ALL_OR_NOTHING,
+
+	/**
+	 * Bookings that can be made are saved, the others are rejected.
+	 */
+	BEST_EFFORT
+}
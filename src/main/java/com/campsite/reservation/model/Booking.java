@@ -1,9 +1,13 @@
 package com.campsite.reservation.model;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.util.Assert;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonProperty.Access;
+
 import io.swagger.annotations.ApiModel;
 import io.swagger.annotations.ApiModelProperty;
 
@@ -11,10 +15,19 @@ import io.swagger.annotations.ApiModelProperty;
 @Document
 public class Booking {
 
+	/**
+	 * Site for bookings where no site was given, and for the ones saved before
+	 * sites were in place.
+	 */
+	public static final String DEFAULT_SITE = "default";
+
 	@ApiModelProperty(notes = "Id, autogenerated.")
 	@Id
 	private String id;
 
+	@ApiModelProperty(notes = "Site (campsite / unit) to book, 'default' if not set.")
+	private String siteId = DEFAULT_SITE;
+
 	@ApiModelProperty(notes = "Email for the person doing the reservation.")
 	private String email;
 
@@ -24,6 +37,11 @@ public class Booking {
 	@ApiModelProperty(notes = "Date range to make the reservation. Maximum 3 days.")
     private DateRangeVO dateRange;
 
+	@ApiModelProperty(notes = "Version, autogenerated. Incremented on every modification.")
+	@Version
+	@JsonProperty(access = Access.READ_ONLY)
+	private Long version;
+
 	public Booking() {
 	}
 
@@ -43,9 +61,31 @@ public class Booking {
 		this.id = id;
 	}
 
+	/**
+	 * @param id may be null (autogenerated when saved)
+	 */
+	public Booking(String id, String siteId, String email, String fullName, DateRangeVO dateRange) {
+		this(email, fullName, dateRange);
+		Assert.notNull(siteId, "siteId needs to be set");
+		this.id = id;
+		this.siteId = siteId;
+	}
+
 	public static Booking from(Booking booking, DateRangeVO newDateRange) {
 		Booking newBooking = new Booking(booking.email, booking.fullName, newDateRange);
 		newBooking.id = booking.id;
+		newBooking.setSiteId(booking.siteId);
+		newBooking.version = booking.version;
+		return newBooking;
+	}
+
+	/**
+	 * Same booking with the given version, for writes that do not read the saved
+	 * booking back.
+	 */
+	public Booking withVersion(Long version) {
+		Booking newBooking = from(this, this.dateRange);
+		newBooking.version = version;
 		return newBooking;
 	}
 
@@ -53,6 +93,18 @@ public class Booking {
 		return id;
 	}
 
+	public String getSiteId() {
+		return siteId != null ? siteId : DEFAULT_SITE;
+	}
+
+	/**
+	 * Null (ie: no site in the request) is taken as the default site, so every
+	 * booking is saved with a site.
+	 */
+	public void setSiteId(String siteId) {
+		this.siteId = siteId != null ? siteId : DEFAULT_SITE;
+	}
+
 	public String getEmail() {
 		return email;
 	}
@@ -65,17 +117,21 @@ public class Booking {
 		return dateRange;
 	}
 
+	public Long getVersion() {
+		return version;
+	}
+
 	@Override
 	public String toString() {
-		return String.format("[id: %s, email: %s, fullName: %s, dateRange: %s]", this.id, this.email, this.fullName,
-				this.dateRange);
+		return String.format("[id: %s, siteId: %s, email: %s, fullName: %s, dateRange: %s, version: %s]", this.id,
+				this.siteId, this.email, this.fullName, this.dateRange, this.version);
 	}
 
 	@Override
 	public boolean equals(Object obj) {
 		Booking other = (Booking) obj;
 		return (this.id != null ? this.id.equals(other.getId()) : other.getId() == null)
-				&& this.email.equals(other.getEmail()) && this.fullName.equals(other.getFullName())
+				&& this.getSiteId().equals(other.getSiteId()) && this.email.equals(other.getEmail()) && this.fullName.equals(other.getFullName())
 				&& this.dateRange.equals(other.getDateRange());
 	}
 }
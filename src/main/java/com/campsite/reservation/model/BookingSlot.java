@@ -0,0 +1,52 @@
+package com.campsite.reservation.model;
+
+import org.springframework.util.Assert;
+
+/**
+ * Read model for a booking when only the nights it takes are needed (ie: to
+ * calculate availability), this is: the booking id, its site and its date
+ * range.
+ */
+public class BookingSlot {
+
+	private String id;
+
+	private String siteId;
+
+	private DateRangeVO dateRange;
+
+	public BookingSlot() {
+	}
+
+	public BookingSlot(String id, DateRangeVO dateRange) {
+		Assert.notNull(dateRange, "dateRange needs to be set");
+		this.id = id;
+		this.dateRange = dateRange;
+	}
+
+	public BookingSlot(String id, String siteId, DateRangeVO dateRange) {
+		this(id, dateRange);
+		this.siteId = siteId;
+	}
+
+	public static BookingSlot from(Booking booking) {
+		return new BookingSlot(booking.getId(), booking.getSiteId(), booking.getDateRange());
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public String getSiteId() {
+		return siteId != null ? siteId : Booking.DEFAULT_SITE;
+	}
+
+	public DateRangeVO getDateRange() {
+		return dateRange;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("[id: %s, siteId: %s, dateRange: %s]", this.id, this.siteId, this.dateRange);
+	}
+}
@@ -0,0 +1,39 @@
+package com.campsite.reservation.model;
+
+import org.springframework.util.Assert;
+
+/**
+ * One write of a bulk write to the booking collection: the booking to insert,
+ * the booking whose dateRange is updated, or the booking to delete.
+ */
+public class BookingWrite {
+
+	public enum Type {
+		INSERT, UPDATE, DELETE
+	}
+
+	private final Type type;
+
+	private final Booking booking;
+
+	public BookingWrite(Type type, Booking booking) {
+		Assert.notNull(type, "type needs to be set");
+		Assert.notNull(booking, "booking needs to be set");
+		Assert.notNull(booking.getId(), "booking id needs to be set");
+		this.type = type;
+		this.booking = booking;
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	public Booking getBooking() {
+		return booking;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("[type: %s, booking: %s]", this.type, this.booking);
+	}
+}
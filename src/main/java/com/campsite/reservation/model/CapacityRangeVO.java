@@ -0,0 +1,37 @@
+package com.campsite.reservation.model;
+
+import java.time.LocalDate;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+
+/**
+ * Available date range where every night has the same remaining capacity, used
+ * when more than one booking can share a night.
+ * 
+ * Equality and ordering are the ones of DateRangeVO.
+ */
+@ApiModel(description = "Available date range where every night can still take 'remainingCapacity' bookings.")
+public class CapacityRangeVO extends DateRangeVO {
+
+	@ApiModelProperty(notes = "How many more bookings can take every night in this date range.")
+	private int remainingCapacity;
+
+	public CapacityRangeVO() {
+	}
+
+	public CapacityRangeVO(LocalDate from, LocalDate to, int remainingCapacity) {
+		super(from, to);
+		this.remainingCapacity = remainingCapacity;
+	}
+
+	public int getRemainingCapacity() {
+		return remainingCapacity;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("[from: %s, to: %s, remainingCapacity: %d]", this.getFrom(), this.getTo(),
+				this.remainingCapacity);
+	}
+}
@@ -2,12 +2,18 @@ package com.campsite.reservation.model;
 
 import java.time.LocalDate;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 
+import org.springframework.data.annotation.PersistenceConstructor;
+import org.springframework.data.annotation.Transient;
 import org.springframework.data.util.Pair;
 import org.springframework.util.Assert;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
 
 import io.swagger.annotations.ApiModel;
 import io.swagger.annotations.ApiModelProperty;
@@ -21,6 +27,16 @@ public class DateRangeVO implements Comparable<DateRangeVO> {
 	@ApiModelProperty(notes = "To date, in 'yyyy-MM-dd' format.")
     private LocalDate to;
 
+	/**
+	 * 'from' and 'to' as epoch days, set once so ranges are compared with no
+	 * conversion. 'to' is Integer.MAX_VALUE for open date ranges.
+	 */
+	@Transient
+	private final int fromDay;
+
+	@Transient
+	private final int toDay;
+
 	public DateRangeVO() {
 		this(null, null);
 	}
@@ -32,13 +48,20 @@ public class DateRangeVO implements Comparable<DateRangeVO> {
 	 *             Rules: 'from' and 'to' cannot be both null, if 'from' is null
 	 *             then it's set to today, 'to' can be null (in this case means the
 	 *             date range is open)
+	 * 
+	 *             Also used to read date ranges from MongoDB, so the epoch days
+	 *             are set from the stored dates.
 	 */
-	public DateRangeVO(LocalDate from, LocalDate to) {
+	@JsonCreator
+	@PersistenceConstructor
+	public DateRangeVO(@JsonProperty("from") LocalDate from, @JsonProperty("to") LocalDate to) {
 		if (from != null && to != null) {
 			Assert.isTrue(to.isAfter(from), String.format("Invalid date range, from: %s, to: %s", from, to));
 		}
 		this.from = from != null ? from : LocalDate.now();
 		this.to = to;
+		this.fromDay = epochDay(this.from);
+		this.toDay = to != null ? epochDay(to) : Integer.MAX_VALUE;
 	}
 
 	public LocalDate getFrom() {
@@ -54,33 +77,53 @@ public class DateRangeVO implements Comparable<DateRangeVO> {
 		return this.to == null;
 	}
 
+	public int fromEpochDay() {
+		return fromDay;
+	}
+
+	/**
+	 * Integer.MAX_VALUE if the date range is open.
+	 */
+	public int toEpochDay() {
+		return toDay;
+	}
+
 	public long totalDays() {
 		return ChronoUnit.DAYS.between(this.from, this.to);
 	}
 
+	/**
+	 * Nights taken by this date range, this is: every date from 'from' (inclusive)
+	 * to 'to' (exclusive)
+	 */
+	public List<LocalDate> nights() {
+		List<LocalDate> nights = new ArrayList<LocalDate>();
+		for (LocalDate night = this.from; night.isBefore(this.to); night = night.plusDays(1))
+			nights.add(night);
+		return nights;
+	}
+
 	/**
 	 * Checks if this DateRange instance is inside DateRange argument,
 	 * inThisDateRange
 	 */
 	public boolean isInsideRange(DateRangeVO inThisDateRange) {
-		return (this.from.isEqual(inThisDateRange.from) || this.from.isAfter(inThisDateRange.from))
-				&& (inThisDateRange.isOpen()
-						|| (this.to.isEqual(inThisDateRange.to) || this.to.isBefore(inThisDateRange.to)));
+		return this.fromDay >= inThisDateRange.fromDay && this.toDay <= inThisDateRange.toDay;
 	}
 
+	/**
+	 * Parts of this date range not covered by other, before and after it. Parts
+	 * equal to this date range are not copied.
+	 */
 	public Pair<Optional<DateRangeVO>, Optional<DateRangeVO>> minus(DateRangeVO other) {
-		Optional<DateRangeVO> l = Optional.empty();
-		Optional<DateRangeVO> r = Optional.empty();
-		if (this.to.isBefore(other.from) || (this.from.isAfter(other.to))) {
-			r = Optional.of(new DateRangeVO(this.from, this.to));
-		} else if (this.from.isBefore(other.from) && (this.to.isAfter(other.to))) {
-			l = Optional.of(new DateRangeVO(this.from, other.from));
-			r = Optional.of(new DateRangeVO(other.to, this.to));
-		} else if (this.from.isAfter(other.from) && (this.to.isAfter(other.to))) {
-			r = Optional.of(new DateRangeVO(other.to, this.to));
-		} else if (this.from.isBefore(other.from) && (this.to.isBefore(other.to))) {
-			l = Optional.of(new DateRangeVO(this.from, other.from));
-		}
+		if (this.toDay < other.fromDay || this.fromDay > other.toDay)
+			return Pair.of(Optional.empty(), Optional.of(this));
+		Optional<DateRangeVO> l = this.fromDay < other.fromDay
+				? Optional.of(this.toDay <= other.fromDay ? this : new DateRangeVO(this.from, other.from))
+				: Optional.empty();
+		Optional<DateRangeVO> r = this.toDay > other.toDay
+				? Optional.of(this.fromDay >= other.toDay ? this : new DateRangeVO(other.to, this.to))
+				: Optional.empty();
 		return Pair.of(l, r);
 	}
 
@@ -92,28 +135,27 @@ public class DateRangeVO implements Comparable<DateRangeVO> {
 	@Override
 	public boolean equals(Object obj) {
 		DateRangeVO vo = (DateRangeVO) obj;
-		Boolean cond1 = ((this.getFrom() != null && vo.getFrom() != null && this.getFrom().isEqual(vo.getFrom()))
-				|| (this.getFrom() == null && vo.getFrom() == null));
-		Boolean cond2 = ((this.getTo() != null && vo.getTo() != null && this.getTo().isEqual(vo.getTo()))
-				|| (this.getTo() == null && vo.getTo() == null));
-		return cond1 && cond2;
+		return this.fromDay == vo.fromDay && this.toDay == vo.toDay;
 	}
 
 	@Override
 	public int hashCode() {
-		return this.from.hashCode() * this.to.hashCode();
+		return this.fromDay * 31 + this.toDay;
 	}
 
 	@Override
 	public int compareTo(DateRangeVO o) {
-		if (this.from.equals(o.from)) {
-			if ((this.to == null && o.to == null) || (this.to.equals(o.to)))
-				return 0;
-			if (this.to == null && o.to != null)
-				return 1;
-			if (this.to != null && o.to == null)
-				return -1;
-		}
-		return this.from.compareTo(o.from);
+		int byFrom = Integer.compare(this.fromDay, o.fromDay);
+		if (byFrom != 0)
+			return byFrom;
+		// Open date ranges go last
+		return Integer.compare(this.toDay, o.toDay);
+	}
+
+	private static int epochDay(LocalDate date) {
+		long epochDay = date.toEpochDay();
+		Assert.isTrue(epochDay > Integer.MIN_VALUE && epochDay < Integer.MAX_VALUE,
+				String.format("Invalid date: %s", date));
+		return (int) epochDay;
 	}
 }
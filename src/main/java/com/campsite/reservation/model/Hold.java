@@ -0,0 +1,93 @@
+package com.campsite.reservation.model;
+
+import java.time.Instant;
+import java.util.Date;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.util.Assert;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+
+/**
+ * Nights held for a booking until it is confirmed, or until 'expiresAt'. There
+ * is a TTL index on 'expiresAt', so expired holds are removed by the database.
+ *
+ * Expiring publishes no BookingEvent, so cached availability and availability
+ * watchers keep showing the nights held as taken until the cache entry expires
+ * (reservation.availability-cache.ttl-seconds) or other booking changes them.
+ */
+@ApiModel(description = "Nights held for a booking until it is confirmed.")
+@Document(collection = "hold")
+public class Hold {
+
+	@ApiModelProperty(notes = "Id, autogenerated. Used to confirm the hold.")
+	@Id
+	private String id;
+
+	@ApiModelProperty(notes = "Site (campsite / unit) held.")
+	private String siteId;
+
+	@ApiModelProperty(notes = "Email for the person doing the reservation.")
+	private String email;
+
+	@ApiModelProperty(notes = "Full name for the person doing the reservation.")
+	private String fullName;
+
+	@ApiModelProperty(notes = "Date range held.")
+	private DateRangeVO dateRange;
+
+	@ApiModelProperty(notes = "When the hold expires, unless confirmed before.")
+	private Date expiresAt;
+
+	public Hold() {
+	}
+
+	public Hold(Booking booking, Instant expiresAt) {
+		Assert.notNull(booking, "booking needs to be set");
+		Assert.notNull(expiresAt, "expiresAt needs to be set");
+		this.siteId = booking.getSiteId();
+		this.email = booking.getEmail();
+		this.fullName = booking.getFullName();
+		this.dateRange = booking.getDateRange();
+		this.expiresAt = Date.from(expiresAt);
+	}
+
+	/**
+	 * The booking to save when the hold is confirmed, with the hold id.
+	 */
+	public Booking toBooking() {
+		return new Booking(id, getSiteId(), email, fullName, dateRange);
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public String getSiteId() {
+		return siteId != null ? siteId : Booking.DEFAULT_SITE;
+	}
+
+	public String getEmail() {
+		return email;
+	}
+
+	public String getFullName() {
+		return fullName;
+	}
+
+	public DateRangeVO getDateRange() {
+		return dateRange;
+	}
+
+	public Date getExpiresAt() {
+		return expiresAt;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("[id: %s, siteId: %s, email: %s, fullName: %s, dateRange: %s, expiresAt: %s]", this.id,
+				this.siteId, this.email, this.fullName, this.dateRange, this.expiresAt);
+	}
+}
@@ -0,0 +1,74 @@
+package com.campsite.reservation.model;
+
+import java.util.Date;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.util.Assert;
+
+/**
+ * Booking made by the first POST /reservations sent with a given
+ * Idempotency-Key, so retries get the same Location back instead of booking
+ * again. Stored with no booking id (pending) before the booking is made, so
+ * only one request can make it. There is a TTL index on 'createdAt', see
+ * reservation.idempotency.ttl-seconds
+ */
+@Document(collection = "idempotent_response")
+public class IdempotentResponse {
+
+	/**
+	 * The Idempotency-Key header.
+	 */
+	@Id
+	private String key;
+
+	/**
+	 * Hash of the request body, a key can only be replayed for the same body.
+	 */
+	private String requestHash;
+
+	private String bookingId;
+
+	private Date createdAt;
+
+	public IdempotentResponse() {
+	}
+
+	/**
+	 * @param bookingId null while the booking is being made
+	 */
+	public IdempotentResponse(String key, String requestHash, String bookingId) {
+		Assert.notNull(key, "key needs to be set");
+		Assert.notNull(requestHash, "requestHash needs to be set");
+		this.key = key;
+		this.requestHash = requestHash;
+		this.bookingId = bookingId;
+		this.createdAt = new Date();
+	}
+
+	public String getKey() {
+		return key;
+	}
+
+	public String getRequestHash() {
+		return requestHash;
+	}
+
+	public String getBookingId() {
+		return bookingId;
+	}
+
+	public Date getCreatedAt() {
+		return createdAt;
+	}
+
+	public boolean isPending() {
+		return bookingId == null;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("[key: %s, requestHash: %s, bookingId: %s, createdAt: %s]", this.key, this.requestHash,
+				this.bookingId, this.createdAt);
+	}
+}
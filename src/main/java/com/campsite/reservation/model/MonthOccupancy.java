@@ -0,0 +1,124 @@
+package com.campsite.reservation.model;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.util.Assert;
+
+/**
+ * Nights taken in one calendar month of a site: bit (day - 1) of 'mask' is set
+ * when that night is taken, and 'bookingIds' has the booking that took it, by
+ * day of month. Nights are taken and released with conditional $bit updates, so
+ * availability for any date range reads one document per month no matter how
+ * many bookings there are.
+ */
+@Document(collection = "month_occupancy")
+public class MonthOccupancy {
+
+	/**
+	 * siteId/yyyy-MM
+	 */
+	@Id
+	private String id;
+
+	private String siteId;
+
+	/**
+	 * First day of the month.
+	 */
+	private LocalDate month;
+
+	private long mask;
+
+	private Map<String, String> bookingIds = new HashMap<String, String>();
+
+	public MonthOccupancy() {
+	}
+
+	public MonthOccupancy(String siteId, YearMonth month) {
+		Assert.notNull(siteId, "siteId needs to be set");
+		Assert.notNull(month, "month needs to be set");
+		this.id = idFor(siteId, month);
+		this.siteId = siteId;
+		this.month = month.atDay(1);
+	}
+
+	public static String idFor(String siteId, YearMonth month) {
+		return String.format("%s/%s", siteId, month);
+	}
+
+	public static long bitFor(LocalDate night) {
+		return 1L << (night.getDayOfMonth() - 1);
+	}
+
+	public static String dayKey(LocalDate night) {
+		return String.valueOf(night.getDayOfMonth());
+	}
+
+	/**
+	 * Sets the night as taken by bookingId, no checks.
+	 */
+	public MonthOccupancy take(LocalDate night, String bookingId) {
+		Assert.isTrue(YearMonth.from(night).atDay(1).equals(month),
+				String.format("Night %s is not in month %s", night, month));
+		mask |= bitFor(night);
+		bookingIds.put(dayKey(night), bookingId);
+		return this;
+	}
+
+	/**
+	 * True if the night is taken by a booking other than excludingBookingId (can be
+	 * null).
+	 */
+	public boolean isTaken(LocalDate night, String excludingBookingId) {
+		if ((mask & bitFor(night)) == 0)
+			return false;
+		return excludingBookingId == null || !excludingBookingId.equals(bookingIds.get(dayKey(night)));
+	}
+
+	/**
+	 * Taken nights of this month and the booking that took each one, sorted by
+	 * night.
+	 */
+	public SortedMap<LocalDate, String> nightsTaken() {
+		SortedMap<LocalDate, String> taken = new TreeMap<LocalDate, String>();
+		bookingIds.forEach((day, bookingId) -> {
+			LocalDate night = month.withDayOfMonth(Integer.parseInt(day));
+			if ((mask & bitFor(night)) != 0)
+				taken.put(night, bookingId);
+		});
+		return taken;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public String getSiteId() {
+		return siteId;
+	}
+
+	public LocalDate getMonth() {
+		return month;
+	}
+
+	public long getMask() {
+		return mask;
+	}
+
+	public Map<String, String> getBookingIds() {
+		return bookingIds;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("[id: %s, mask: %s, bookingIds: %s]", this.id, Long.toBinaryString(this.mask),
+				this.bookingIds);
+	}
+}
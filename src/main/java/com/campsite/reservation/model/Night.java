@@ -0,0 +1,59 @@
+package com.campsite.reservation.model;
+
+import java.time.LocalDate;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.util.Assert;
+
+/**
+ * One night taken by a booking. There is a unique index on 'siteId' and 'date'
+ * so a given night can only be claimed once per site, no matter how many
+ * requests race for it.
+ */
+@Document(collection = "night")
+public class Night {
+
+	@Id
+	private String id;
+
+	private String siteId;
+
+	private LocalDate date;
+
+	private String bookingId;
+
+	public Night() {
+	}
+
+	public Night(String siteId, LocalDate date, String bookingId) {
+		Assert.notNull(siteId, "siteId needs to be set");
+		Assert.notNull(date, "date needs to be set");
+		Assert.notNull(bookingId, "bookingId needs to be set");
+		this.siteId = siteId;
+		this.date = date;
+		this.bookingId = bookingId;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public String getSiteId() {
+		return siteId;
+	}
+
+	public LocalDate getDate() {
+		return date;
+	}
+
+	public String getBookingId() {
+		return bookingId;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("[id: %s, siteId: %s, date: %s, bookingId: %s]", this.id, this.siteId, this.date,
+				this.bookingId);
+	}
+}
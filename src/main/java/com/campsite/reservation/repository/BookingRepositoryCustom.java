@@ -1,6 +1,11 @@
 package com.campsite.reservation.repository;
 
+import java.time.LocalDate;
+import java.util.List;
+
 import com.campsite.reservation.model.Booking;
+import com.campsite.reservation.model.BookingSlot;
+import com.campsite.reservation.model.BookingWrite;
 import com.campsite.reservation.model.DateRangeVO;
 
 import reactor.core.publisher.Flux;
@@ -9,25 +14,86 @@ import reactor.core.publisher.Mono;
 public interface BookingRepositoryCustom {
 
 	/**
-	 * Look for all bookings where: booking.dateRange.to <= to OR
-	 * booking.dateRange.from >= from Returns all bookings ordered by dateRange.from
+	 * Look for all bookings for the given site overlapping the given date range,
+	 * this is: booking.dateRange.from < to AND booking.dateRange.to > from. Returns
+	 * all bookings ordered by dateRange.from (ascending)
 	 */
-	Flux<Booking> findByDateRange(DateRangeVO dateRange);
+	Flux<Booking> findByDateRange(String siteId, DateRangeVO dateRange);
 
 	/**
 	 * Same as findByDateRange but excluding a specific bookingId, useful when
 	 * looking for availability to modify an existing booking. Returns all bookings
-	 * ordered by dateRange.from
+	 * ordered by dateRange.from (ascending)
+	 */
+	Flux<Booking> findByDateRangeExcluding(String siteId, DateRangeVO dateRange, String bookingId);
+
+	/**
+	 * Same as findByDateRange but only fetching id and dateRange for each booking,
+	 * enough to calculate availability.
+	 */
+	Flux<BookingSlot> findSlotsByDateRange(String siteId, DateRangeVO dateRange);
+
+	/**
+	 * Same as findByDateRangeExcluding but only fetching id and dateRange for each
+	 * booking, enough to calculate availability.
+	 */
+	Flux<BookingSlot> findSlotsByDateRangeExcluding(String siteId, DateRangeVO dateRange, String bookingId);
+
+	/**
+	 * True if at least one booking for the given site overlaps the given date
+	 * range. Stops at the first one found, only reading the overlap index.
+	 */
+	Mono<Boolean> existsByDateRange(String siteId, DateRangeVO dateRange);
+
+	/**
+	 * Same as existsByDateRange but excluding a specific bookingId, useful when
+	 * checking if an existing booking can be modified.
+	 */
+	Mono<Boolean> existsByDateRangeExcluding(String siteId, DateRangeVO dateRange, String bookingId);
+
+	/**
+	 * Sites with at least one booking overlapping the given date range, in one
+	 * distinct query no matter how many sites there are.
+	 */
+	Flux<String> findSiteIdsByDateRange(DateRangeVO dateRange);
+
+	/**
+	 * Look for all bookings still taking some night after the given date, this is:
+	 * booking.dateRange.to > date. Useful to load in memory all current and future
+	 * bookings, for every site. Returns id, siteId and dateRange only.
+	 */
+	Flux<BookingSlot> findSlotsEndingAfter(LocalDate date);
+
+	/**
+	 * Ids of all bookings, only the ids are sent over the wire.
 	 */
-	Flux<Booking> findByDateRangeExcluding(DateRangeVO dateRange, String bookingId);
+	Flux<String> findAllIds();
 
 	/**
 	 * Need a custom implementation for deleteById to eventually throw BookingNotFoundException.
+	 * Returns the deleted booking as it was when removed, found and removed in one
+	 * findAndRemove.
 	 */
-	Mono<Boolean> customDeleteById(String bookingId);
+	Mono<Booking> customDeleteById(String bookingId);
 
 	/**
 	 * Need a custom implementation findById to eventually throw BookingNotFoundException.
 	 */
 	Mono<Booking> customFindById(String bookingId);
+
+	/**
+	 * Updates the dateRange of an existing booking, only if its version is still
+	 * the same as in the given booking. Returns the updated booking, with the
+	 * version incremented. Throws OptimisticLockingFailureException if the booking
+	 * was modified in the meantime, or BookingNotFoundException if it was deleted.
+	 */
+	Mono<Booking> customUpdate(Booking booking);
+
+	/**
+	 * Applies the given writes in one ordered bulkWrite. Inserted bookings get
+	 * version 0, updated ones get their dateRange set and version incremented, both
+	 * matched by id only. Returns how many writes were applied: if one fails, that
+	 * one and all the writes after it are not applied.
+	 */
+	Mono<Integer> bulkWrite(List<BookingWrite> writes);
 }
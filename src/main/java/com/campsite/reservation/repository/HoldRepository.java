@@ -0,0 +1,11 @@
+package com.campsite.reservation.repository;
+
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+
+import com.campsite.reservation.model.Hold;
+
+@Repository
+public interface HoldRepository extends ReactiveMongoRepository<Hold, String>, HoldRepositoryCustom {
+
+}
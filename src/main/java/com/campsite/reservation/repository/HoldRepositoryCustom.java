@@ -0,0 +1,45 @@
+package com.campsite.reservation.repository;
+
+import com.campsite.reservation.model.BookingSlot;
+import com.campsite.reservation.model.DateRangeVO;
+import com.campsite.reservation.model.Hold;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public interface HoldRepositoryCustom {
+
+	/**
+	 * Holds not expired yet for the given site overlapping the given date range,
+	 * as slots (id, siteId and dateRange), ordered by dateRange.from (ascending).
+	 * Expired holds are left out even if the database did not remove them yet.
+	 */
+	Flux<BookingSlot> findSlotsByDateRange(String siteId, DateRangeVO dateRange);
+
+	/**
+	 * Same as findSlotsByDateRange but excluding a specific holdId.
+	 */
+	Flux<BookingSlot> findSlotsByDateRangeExcluding(String siteId, DateRangeVO dateRange, String holdId);
+
+	/**
+	 * True if at least one hold not expired yet for the given site overlaps the
+	 * given date range. Stops at the first one found.
+	 */
+	Mono<Boolean> existsByDateRange(String siteId, DateRangeVO dateRange);
+
+	/**
+	 * Same as existsByDateRange but excluding a specific holdId.
+	 */
+	Mono<Boolean> existsByDateRangeExcluding(String siteId, DateRangeVO dateRange, String holdId);
+
+	/**
+	 * The hold, if not expired yet. Throws HoldNotFoundException otherwise.
+	 */
+	Mono<Hold> findActiveById(String holdId);
+
+	/**
+	 * Creates the TTL index on 'expiresAt' and the overlap index for the queries
+	 * above.
+	 */
+	Mono<String> ensureIndexes();
+}
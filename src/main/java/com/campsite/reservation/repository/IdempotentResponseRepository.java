@@ -0,0 +1,12 @@
+package com.campsite.reservation.repository;
+
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+
+import com.campsite.reservation.model.IdempotentResponse;
+
+@Repository
+public interface IdempotentResponseRepository
+		extends ReactiveMongoRepository<IdempotentResponse, String>, IdempotentResponseRepositoryCustom {
+
+}
@@ -0,0 +1,30 @@
+package com.campsite.reservation.repository;
+
+import java.time.Duration;
+import java.util.Date;
+
+import com.campsite.reservation.model.IdempotentResponse;
+
+import reactor.core.publisher.Mono;
+
+public interface IdempotentResponseRepositoryCustom {
+
+	/**
+	 * Takes a pending key left by a request that did not finish (ie: the instance
+	 * stopped), this is: still pending, for the same request and created before
+	 * the given date. Returns it as pending again, empty if it was not taken.
+	 */
+	Mono<IdempotentResponse> takeOver(String key, String requestHash, Date pendingBefore);
+
+	/**
+	 * Sets the booking id of a pending key and returns it, empty if the key is not
+	 * pending anymore.
+	 */
+	Mono<IdempotentResponse> complete(String key, String bookingId);
+
+	/**
+	 * Creates the TTL index on 'createdAt', the existing one is dropped first if it
+	 * was created with a different ttl.
+	 */
+	Mono<String> ensureIndexes(Duration ttl);
+}
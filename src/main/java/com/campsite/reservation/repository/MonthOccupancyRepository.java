@@ -0,0 +1,12 @@
+package com.campsite.reservation.repository;
+
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+
+import com.campsite.reservation.model.MonthOccupancy;
+
+@Repository
+public interface MonthOccupancyRepository
+		extends ReactiveMongoRepository<MonthOccupancy, String>, MonthOccupancyRepositoryCustom {
+
+}
@@ -0,0 +1,44 @@
+package com.campsite.reservation.repository;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+
+import com.campsite.reservation.model.DateRangeVO;
+import com.campsite.reservation.model.MonthOccupancy;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public interface MonthOccupancyRepositoryCustom {
+
+	/**
+	 * Takes the given nights of a site for bookingId with one conditional upsert
+	 * per month, that only sets the bits if all of them are clear. Returns false
+	 * if any of the nights was already taken, in that case the months already
+	 * claimed by this call are released.
+	 */
+	Mono<Boolean> claimNights(String siteId, String bookingId, List<LocalDate> nights);
+
+	/**
+	 * Clears the given nights of a site, only if they belong to bookingId. One
+	 * update per month.
+	 */
+	Mono<Void> releaseNights(String siteId, String bookingId, List<LocalDate> nights);
+
+	/**
+	 * Month documents of all sites from the given month on.
+	 */
+	Flux<MonthOccupancy> findFrom(YearMonth month);
+
+	/**
+	 * Month documents of a site overlapping the given date range, sorted by month.
+	 * Months with no nights ever taken have no document.
+	 */
+	Flux<MonthOccupancy> findByDateRange(String siteId, DateRangeVO dateRange);
+
+	/**
+	 * Creates the index on 'siteId' and 'month'.
+	 */
+	Mono<String> ensureIndexes();
+}
@@ -0,0 +1,36 @@
+package com.campsite.reservation.repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import com.campsite.reservation.model.Night;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public interface NightRepositoryCustom {
+
+	/**
+	 * Inserts one night document per date for the given site and bookingId, in one
+	 * insert. Returns false if any of the nights was already taken (duplicate key
+	 * on 'siteId' and 'date'), in that case the nights inserted for this call are
+	 * released.
+	 */
+	Mono<Boolean> claimNights(String siteId, String bookingId, List<LocalDate> nights);
+
+	/**
+	 * Removes the given nights, only if they belong to bookingId.
+	 */
+	Mono<Void> releaseNights(String bookingId, List<LocalDate> nights);
+
+	/**
+	 * Nights of all sites from the given date on.
+	 */
+	Flux<Night> findFrom(LocalDate date);
+
+	/**
+	 * Creates the unique index on 'siteId' and 'date', nights saved before sites
+	 * were in place are moved to the default site first.
+	 */
+	Mono<String> ensureIndexes();
+}
@@ -3,52 +3,133 @@ package com.campsite.reservation.repository.impl;
 import static org.springframework.data.mongodb.core.query.Criteria.where;
 import static org.springframework.data.mongodb.core.query.Query.query;
 
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
 import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.util.Assert;
 
+import com.campsite.reservation.config.DateRangeConverters;
 import com.campsite.reservation.exception.BookingNotFoundException;
 import com.campsite.reservation.model.Booking;
+import com.campsite.reservation.model.BookingSlot;
+import com.campsite.reservation.model.BookingWrite;
 import com.campsite.reservation.model.DateRangeVO;
 import com.campsite.reservation.repository.BookingRepositoryCustom;
 
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.DeleteOneModel;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
+
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 public class BookingRepositoryCustomImpl implements BookingRepositoryCustom {
 
+	private static final Logger LOG = LoggerFactory.getLogger(BookingRepositoryCustomImpl.class);
+
 	@Autowired
 	private ReactiveMongoTemplate mongo;
 
+	@Autowired
+	private Environment env;
+
 	@Override
-	public Flux<Booking> findByDateRange(DateRangeVO dateRange) {
+	public Flux<Booking> findByDateRange(String siteId, DateRangeVO dateRange) {
+		Assert.notNull(siteId, "The given siteId must not be null!");
 		Assert.notNull(dateRange, "The given dateRange must not be null!");
 		Assert.isTrue(!dateRange.isOpen(), "The given dateRange cannot be open!");
-		return mongo.find(query(where("dateRange.to").lte(dateRange.getTo())
-				.orOperator(where("dateRange.from").gte(dateRange.getFrom())))
-						.with(Sort.by(Sort.Direction.DESC, "dateRange.from")),
-				Booking.class);
+		return mongo.find(overlapping(siteId, dateRange), Booking.class);
 	}
 
 	@Override
-	public Flux<Booking> findByDateRangeExcluding(DateRangeVO dateRange, String bookingId) {
+	public Flux<Booking> findByDateRangeExcluding(String siteId, DateRangeVO dateRange, String bookingId) {
+		Assert.notNull(siteId, "The given siteId must not be null!");
 		Assert.notNull(bookingId, "The given id must not be null!");
 		Assert.notNull(dateRange, "The given dateRange must not be null!");
 		Assert.isTrue(!dateRange.isOpen(), "The given dateRange cannot be open!");
-		return mongo.find(query(where("dateRange.to").lte(dateRange.getTo())
-				.orOperator(where("dateRange.from").gte(dateRange.getFrom()))).addCriteria(where("id").ne(bookingId))
-						.with(Sort.by(Sort.Direction.DESC, "dateRange.from")),
-				Booking.class);
+		return mongo.find(overlapping(siteId, dateRange).addCriteria(where("id").ne(bookingId)), Booking.class);
+	}
+
+	@Override
+	public Flux<BookingSlot> findSlotsByDateRange(String siteId, DateRangeVO dateRange) {
+		Assert.notNull(siteId, "The given siteId must not be null!");
+		Assert.notNull(dateRange, "The given dateRange must not be null!");
+		Assert.isTrue(!dateRange.isOpen(), "The given dateRange cannot be open!");
+		return mongo.find(slotsOnly(overlapping(siteId, dateRange)), BookingSlot.class,
+				mongo.getCollectionName(Booking.class));
 	}
 
 	@Override
-	public Mono<Boolean> customDeleteById(String bookingId) {
+	public Flux<BookingSlot> findSlotsByDateRangeExcluding(String siteId, DateRangeVO dateRange, String bookingId) {
+		Assert.notNull(siteId, "The given siteId must not be null!");
 		Assert.notNull(bookingId, "The given id must not be null!");
-		return mongo.findOne(query(where("id").is(bookingId)), Booking.class)
-				.switchIfEmpty(Mono.error(new BookingNotFoundException(bookingId)))
-				.flatMap(booking -> mongo.remove(booking))
-				.map(result -> result.wasAcknowledged());
+		Assert.notNull(dateRange, "The given dateRange must not be null!");
+		Assert.isTrue(!dateRange.isOpen(), "The given dateRange cannot be open!");
+		return mongo.find(slotsOnly(overlapping(siteId, dateRange).addCriteria(where("id").ne(bookingId))),
+				BookingSlot.class, mongo.getCollectionName(Booking.class));
+	}
+
+	@Override
+	public Mono<Boolean> existsByDateRange(String siteId, DateRangeVO dateRange) {
+		Assert.notNull(siteId, "The given siteId must not be null!");
+		Assert.notNull(dateRange, "The given dateRange must not be null!");
+		Assert.isTrue(!dateRange.isOpen(), "The given dateRange cannot be open!");
+		return mongo.find(firstOnly(overlap(siteId, dateRange)), BookingSlot.class,
+				mongo.getCollectionName(Booking.class)).hasElements();
+	}
+
+	@Override
+	public Mono<Boolean> existsByDateRangeExcluding(String siteId, DateRangeVO dateRange, String bookingId) {
+		Assert.notNull(siteId, "The given siteId must not be null!");
+		Assert.notNull(bookingId, "The given id must not be null!");
+		Assert.notNull(dateRange, "The given dateRange must not be null!");
+		Assert.isTrue(!dateRange.isOpen(), "The given dateRange cannot be open!");
+		return mongo.find(firstOnly(overlap(siteId, dateRange).addCriteria(where("id").ne(bookingId))),
+				BookingSlot.class, mongo.getCollectionName(Booking.class)).hasElements();
+	}
+
+	@Override
+	public Flux<String> findSiteIdsByDateRange(DateRangeVO dateRange) {
+		Assert.notNull(dateRange, "The given dateRange must not be null!");
+		Assert.isTrue(!dateRange.isOpen(), "The given dateRange cannot be open!");
+		return mongo.findDistinct(overlapping(dateRange), "siteId", Booking.class, String.class);
+	}
+
+	@Override
+	public Flux<BookingSlot> findSlotsEndingAfter(LocalDate date) {
+		Assert.notNull(date, "The given date must not be null!");
+		return mongo.find(slotsOnly(query(where("dateRange.to").gt(stored(date)))), BookingSlot.class,
+				mongo.getCollectionName(Booking.class));
+	}
+
+	@Override
+	public Flux<String> findAllIds() {
+		Query query = new Query();
+		query.fields().include("_id");
+		return mongo.find(query, Document.class, mongo.getCollectionName(Booking.class))
+				.map(booking -> booking.get("_id").toString());
+	}
+
+	@Override
+	public Mono<Booking> customDeleteById(String bookingId) {
+		Assert.notNull(bookingId, "The given id must not be null!");
+		return mongo.findAndRemove(query(where("id").is(bookingId)), Booking.class)
+				.switchIfEmpty(Mono.error(() -> new BookingNotFoundException(bookingId)));
 	}
 
 	@Override
@@ -57,4 +138,124 @@ public class BookingRepositoryCustomImpl implements BookingRepositoryCustom {
 		return mongo.findOne(query(where("id").is(bookingId)), Booking.class)
 				.switchIfEmpty(Mono.error(new BookingNotFoundException(bookingId)));
 	}
+
+	@Override
+	public Mono<Booking> customUpdate(Booking booking) {
+		Assert.notNull(booking, "The given booking must not be null!");
+		Assert.notNull(booking.getId(), "The given booking id must not be null!");
+		return mongo
+				.findAndModify(sameVersion(booking),
+						new Update().set("dateRange", booking.getDateRange()).inc("version", 1),
+						FindAndModifyOptions.options().returnNew(true), Booking.class)
+				.switchIfEmpty(Mono.defer(() -> notUpdated(booking.getId())));
+	}
+
+	@Override
+	public Mono<Integer> bulkWrite(List<BookingWrite> writes) {
+		Assert.notNull(writes, "The given writes must not be null!");
+		if (writes.isEmpty())
+			return Mono.just(0);
+		List<WriteModel<Document>> models = writes.stream().map(this::toWriteModel).collect(Collectors.toList());
+		return Mono
+				.from(mongo.getCollection(mongo.getCollectionName(Booking.class)).bulkWrite(models,
+						new BulkWriteOptions().ordered(true)))
+				.map(result -> writes.size()).onErrorResume(MongoBulkWriteException.class, ex -> {
+					LOG.warn("bulkWrite failed at write: {}, error: {}", ex.getWriteErrors().get(0).getIndex(),
+							ex.getWriteErrors().get(0).getMessage());
+					return Mono.just(ex.getWriteErrors().get(0).getIndex());
+				});
+	}
+
+	/**
+	 * The booking is converted as a whole, so its dateRange is stored in the same
+	 * format as everywhere else (see DateRangeConverters).
+	 */
+	private WriteModel<Document> toWriteModel(BookingWrite write) {
+		Document booking = new Document();
+		mongo.getConverter().write(write.getBooking(), booking);
+		Document byId = new Document("_id", booking.get("_id"));
+		switch (write.getType()) {
+		case INSERT:
+			booking.put("version", 0L);
+			return new InsertOneModel<Document>(booking);
+		case UPDATE:
+			return new UpdateOneModel<Document>(byId, new Document("$set",
+					new Document("dateRange", booking.get("dateRange"))).append("$inc", new Document("version", 1L)));
+		default:
+			return new DeleteOneModel<Document>(byId);
+		}
+	}
+
+	/**
+	 * Matches the booking only if it was not modified since it was read. Bookings
+	 * saved before versioning was in place have no version field, matched by null.
+	 */
+	private Query sameVersion(Booking booking) {
+		return query(where("id").is(booking.getId()).and("version").is(booking.getVersion()));
+	}
+
+	/**
+	 * Only when the update matched nothing, the booking is looked up by id to
+	 * tell a concurrent modification from a booking no longer there.
+	 */
+	private Mono<Booking> notUpdated(String bookingId) {
+		return mongo.exists(query(where("id").is(bookingId)), Booking.class)
+				.flatMap(exists -> Mono.error(exists
+						? new OptimisticLockingFailureException(String
+								.format("Booking id '%s' was modified concurrently, please retry!", bookingId))
+						: new BookingNotFoundException(bookingId)));
+	}
+
+	/**
+	 * Interval overlap: booking.dateRange.from < dateRange.to AND
+	 * booking.dateRange.to > dateRange.from. Bookings just touching the edges are
+	 * left out since they don't take any night inside the given range.
+	 */
+	private Query overlapping(DateRangeVO dateRange) {
+		return query(where("dateRange.to").gt(stored(dateRange.getFrom())).and("dateRange.from")
+				.lt(stored(dateRange.getTo())));
+	}
+
+	/**
+	 * Interval overlap for one site, sorted by dateRange.from ascending.
+	 */
+	private Query overlapping(String siteId, DateRangeVO dateRange) {
+		return overlap(siteId, dateRange).with(Sort.by(Sort.Direction.ASC, "dateRange.from"));
+	}
+
+	/**
+	 * Interval overlap for one site, in index order.
+	 */
+	private Query overlap(String siteId, DateRangeVO dateRange) {
+		return query(where("siteId").is(siteId).and("dateRange.to").gt(stored(dateRange.getFrom()))
+				.and("dateRange.from").lt(stored(dateRange.getTo())));
+	}
+
+	/**
+	 * Dates in queries need the same BSON type they are stored with (see
+	 * reservation.booking-storage).
+	 */
+	private Object stored(LocalDate date) {
+		return DateRangeConverters.toStored(date, DateRangeConverters.isEpochDay(env));
+	}
+
+	/**
+	 * Projection for BookingSlot, only id (included by default), siteId and
+	 * dateRange are sent over the wire, email and fullName are left in the server.
+	 */
+	private Query slotsOnly(Query query) {
+		query.fields().include("siteId").include("dateRange");
+		return query;
+	}
+
+	/**
+	 * Only the first match, with no sort and a projection on siteId only (_id
+	 * left out), so unless other fields are filtered the query is answered from
+	 * siteId_dateRange_overlap without reading any booking. Read as BookingSlot,
+	 * so ids given in the criteria are mapped to '_id' (as ObjectId).
+	 */
+	private Query firstOnly(Query query) {
+		query.fields().include("siteId").exclude("_id");
+		return query.limit(1);
+	}
 }
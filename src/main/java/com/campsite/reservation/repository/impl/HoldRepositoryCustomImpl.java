@@ -0,0 +1,118 @@
+package com.campsite.reservation.repository.impl;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Date;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.ReactiveIndexOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.util.Assert;
+
+import com.campsite.reservation.config.DateRangeConverters;
+import com.campsite.reservation.exception.HoldNotFoundException;
+import com.campsite.reservation.model.BookingSlot;
+import com.campsite.reservation.model.DateRangeVO;
+import com.campsite.reservation.model.Hold;
+import com.campsite.reservation.repository.HoldRepositoryCustom;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public class HoldRepositoryCustomImpl implements HoldRepositoryCustom {
+
+	@Autowired
+	private ReactiveMongoTemplate mongo;
+
+	@Autowired
+	private Environment env;
+
+	@Override
+	public Flux<BookingSlot> findSlotsByDateRange(String siteId, DateRangeVO dateRange) {
+		Assert.notNull(siteId, "The given siteId must not be null!");
+		Assert.notNull(dateRange, "The given dateRange must not be null!");
+		Assert.isTrue(!dateRange.isOpen(), "The given dateRange cannot be open!");
+		return mongo.find(slotsOnly(activeOverlapping(siteId, dateRange)), BookingSlot.class,
+				mongo.getCollectionName(Hold.class));
+	}
+
+	@Override
+	public Flux<BookingSlot> findSlotsByDateRangeExcluding(String siteId, DateRangeVO dateRange, String holdId) {
+		Assert.notNull(siteId, "The given siteId must not be null!");
+		Assert.notNull(holdId, "The given id must not be null!");
+		Assert.notNull(dateRange, "The given dateRange must not be null!");
+		Assert.isTrue(!dateRange.isOpen(), "The given dateRange cannot be open!");
+		return mongo.find(slotsOnly(activeOverlapping(siteId, dateRange).addCriteria(where("id").ne(holdId))),
+				BookingSlot.class, mongo.getCollectionName(Hold.class));
+	}
+
+	@Override
+	public Mono<Boolean> existsByDateRange(String siteId, DateRangeVO dateRange) {
+		Assert.notNull(siteId, "The given siteId must not be null!");
+		Assert.notNull(dateRange, "The given dateRange must not be null!");
+		Assert.isTrue(!dateRange.isOpen(), "The given dateRange cannot be open!");
+		return mongo.find(firstOnly(activeOverlap(siteId, dateRange)), BookingSlot.class,
+				mongo.getCollectionName(Hold.class)).hasElements();
+	}
+
+	@Override
+	public Mono<Boolean> existsByDateRangeExcluding(String siteId, DateRangeVO dateRange, String holdId) {
+		Assert.notNull(siteId, "The given siteId must not be null!");
+		Assert.notNull(holdId, "The given id must not be null!");
+		Assert.notNull(dateRange, "The given dateRange must not be null!");
+		Assert.isTrue(!dateRange.isOpen(), "The given dateRange cannot be open!");
+		return mongo.find(firstOnly(activeOverlap(siteId, dateRange).addCriteria(where("id").ne(holdId))),
+				BookingSlot.class, mongo.getCollectionName(Hold.class)).hasElements();
+	}
+
+	@Override
+	public Mono<Hold> findActiveById(String holdId) {
+		Assert.notNull(holdId, "The given id must not be null!");
+		return mongo.findOne(query(where("id").is(holdId).and("expiresAt").gt(new Date())), Hold.class)
+				.switchIfEmpty(Mono.error(() -> new HoldNotFoundException(holdId)));
+	}
+
+	@Override
+	public Mono<String> ensureIndexes() {
+		ReactiveIndexOperations indexOps = mongo.indexOps(Hold.class);
+		return indexOps.ensureIndex(new Index().on("expiresAt", Sort.Direction.ASC).expire(Duration.ZERO)
+				.named("expiresAt_ttl"))
+				.then(indexOps.ensureIndex(new Index().on("siteId", Sort.Direction.ASC)
+						.on("dateRange.to", Sort.Direction.ASC).on("dateRange.from", Sort.Direction.ASC)
+						.named("siteId_dateRange_overlap")));
+	}
+
+	/**
+	 * Same interval overlap as for bookings (see BookingRepositoryCustomImpl),
+	 * only for holds not expired yet.
+	 */
+	private Query activeOverlapping(String siteId, DateRangeVO dateRange) {
+		return activeOverlap(siteId, dateRange).with(Sort.by(Sort.Direction.ASC, "dateRange.from"));
+	}
+
+	private Query activeOverlap(String siteId, DateRangeVO dateRange) {
+		return query(where("siteId").is(siteId).and("dateRange.to").gt(stored(dateRange.getFrom()))
+				.and("dateRange.from").lt(stored(dateRange.getTo())).and("expiresAt").gt(new Date()));
+	}
+
+	private Object stored(LocalDate date) {
+		return DateRangeConverters.toStored(date, DateRangeConverters.isEpochDay(env));
+	}
+
+	private Query slotsOnly(Query query) {
+		query.fields().include("siteId").include("dateRange");
+		return query;
+	}
+
+	private Query firstOnly(Query query) {
+		query.fields().include("siteId").exclude("_id");
+		return query.limit(1);
+	}
+}
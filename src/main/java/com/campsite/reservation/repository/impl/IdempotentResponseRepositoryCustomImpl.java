@@ -0,0 +1,63 @@
+package com.campsite.reservation.repository.impl;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.ReactiveIndexOperations;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.util.Assert;
+
+import com.campsite.reservation.model.IdempotentResponse;
+import com.campsite.reservation.repository.IdempotentResponseRepositoryCustom;
+
+import reactor.core.publisher.Mono;
+
+public class IdempotentResponseRepositoryCustomImpl implements IdempotentResponseRepositoryCustom {
+
+	private static final String TTL_INDEX = "createdAt_ttl";
+
+	@Autowired
+	private ReactiveMongoTemplate mongo;
+
+	@Override
+	public Mono<IdempotentResponse> takeOver(String key, String requestHash, Date pendingBefore) {
+		Assert.notNull(key, "The given key must not be null!");
+		Assert.notNull(requestHash, "The given requestHash must not be null!");
+		Assert.notNull(pendingBefore, "The given pendingBefore must not be null!");
+		return mongo.findAndModify(
+				query(where("key").is(key).and("bookingId").is(null).and("requestHash").is(requestHash)
+						.and("createdAt").lt(pendingBefore)),
+				new Update().set("createdAt", new Date()), FindAndModifyOptions.options().returnNew(true),
+				IdempotentResponse.class);
+	}
+
+	@Override
+	public Mono<IdempotentResponse> complete(String key, String bookingId) {
+		Assert.notNull(key, "The given key must not be null!");
+		Assert.notNull(bookingId, "The given bookingId must not be null!");
+		return mongo.findAndModify(query(where("key").is(key).and("bookingId").is(null)),
+				new Update().set("bookingId", bookingId), FindAndModifyOptions.options().returnNew(true),
+				IdempotentResponse.class);
+	}
+
+	@Override
+	public Mono<String> ensureIndexes(Duration ttl) {
+		Assert.notNull(ttl, "The given ttl must not be null!");
+		ReactiveIndexOperations indexOps = mongo.indexOps(IdempotentResponse.class);
+		return indexOps.getIndexInfo()
+				.filter(index -> TTL_INDEX.equals(index.getName())
+						&& !index.getExpireAfter().equals(Optional.of(ttl)))
+				.flatMap(index -> indexOps.dropIndex(index.getName()))
+				.then(indexOps.ensureIndex(
+						new Index().on("createdAt", Sort.Direction.ASC).expire(ttl).named(TTL_INDEX)));
+	}
+}
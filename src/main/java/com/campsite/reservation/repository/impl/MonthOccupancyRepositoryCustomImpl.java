@@ -0,0 +1,140 @@
+package com.campsite.reservation.repository.impl;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.util.Assert;
+
+import com.campsite.reservation.model.DateRangeVO;
+import com.campsite.reservation.model.MonthOccupancy;
+import com.campsite.reservation.repository.MonthOccupancyRepositoryCustom;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public class MonthOccupancyRepositoryCustomImpl implements MonthOccupancyRepositoryCustom {
+
+	@Autowired
+	private ReactiveMongoTemplate mongo;
+
+	@Override
+	public Mono<Boolean> claimNights(String siteId, String bookingId, List<LocalDate> nights) {
+		Assert.notNull(siteId, "The given siteId must not be null!");
+		Assert.notNull(bookingId, "The given bookingId must not be null!");
+		Assert.notNull(nights, "The given nights must not be null!");
+		if (nights.isEmpty())
+			return Mono.just(Boolean.TRUE);
+		Map<YearMonth, List<LocalDate>> nightsByMonth = byMonth(nights);
+		return Mono.defer(() -> {
+			List<LocalDate> claimed = new ArrayList<LocalDate>();
+			return Flux.fromIterable(nightsByMonth.entrySet())
+					.concatMap(month -> claimMonth(siteId, bookingId, month.getKey(), month.getValue())
+							.doOnNext(ok -> {
+								if (ok)
+									claimed.addAll(month.getValue());
+							}))
+					.all(ok -> ok).flatMap(ok -> ok ? Mono.just(Boolean.TRUE)
+							: releaseNights(siteId, bookingId, claimed).then(Mono.just(Boolean.FALSE)));
+		});
+	}
+
+	@Override
+	public Mono<Void> releaseNights(String siteId, String bookingId, List<LocalDate> nights) {
+		Assert.notNull(siteId, "The given siteId must not be null!");
+		Assert.notNull(bookingId, "The given bookingId must not be null!");
+		Assert.notNull(nights, "The given nights must not be null!");
+		return Flux.fromIterable(byMonth(nights).entrySet())
+				.concatMap(month -> releaseMonth(siteId, bookingId, month.getKey(), month.getValue())).then();
+	}
+
+	@Override
+	public Flux<MonthOccupancy> findFrom(YearMonth month) {
+		Assert.notNull(month, "The given month must not be null!");
+		return mongo.find(query(where("month").gte(month.atDay(1))), MonthOccupancy.class);
+	}
+
+	@Override
+	public Flux<MonthOccupancy> findByDateRange(String siteId, DateRangeVO dateRange) {
+		Assert.notNull(siteId, "The given siteId must not be null!");
+		Assert.notNull(dateRange, "The given dateRange must not be null!");
+		Assert.isTrue(!dateRange.isOpen(), "The given dateRange cannot be open!");
+		LocalDate firstMonth = YearMonth.from(dateRange.getFrom()).atDay(1);
+		LocalDate lastMonth = YearMonth.from(dateRange.getTo().minusDays(1)).atDay(1);
+		return mongo.find(
+				query(where("siteId").is(siteId).and("month").gte(firstMonth).lte(lastMonth))
+						.with(Sort.by(Sort.Direction.ASC, "month")),
+				MonthOccupancy.class);
+	}
+
+	@Override
+	public Mono<String> ensureIndexes() {
+		return mongo.indexOps(MonthOccupancy.class).ensureIndex(
+				new Index().on("siteId", Sort.Direction.ASC).on("month", Sort.Direction.ASC).named("siteId_month"));
+	}
+
+	/**
+	 * Upserts the month document only if all the given nights are clear: when some
+	 * are taken the query does not match, the upsert tries to insert a document
+	 * with the same id and fails with a duplicate key. Two first claims in the
+	 * same month can both try to insert it, so on a duplicate key the update is
+	 * retried once against the document now there, and only fails if the nights
+	 * are taken.
+	 */
+	private Mono<Boolean> claimMonth(String siteId, String bookingId, YearMonth month, List<LocalDate> nights) {
+		long bits = bitsFor(nights);
+		Query claimable = query(
+				where("_id").is(MonthOccupancy.idFor(siteId, month)).and("mask").bits().allClear((int) bits));
+		Update update = new Update().bitwise("mask").or(bits).setOnInsert("siteId", siteId).setOnInsert("month",
+				month.atDay(1));
+		nights.forEach(night -> update.set("bookingIds." + MonthOccupancy.dayKey(night), bookingId));
+		return mongo.upsert(claimable, update, MonthOccupancy.class).then(Mono.just(Boolean.TRUE))
+				.onErrorResume(DuplicateKeyException.class, ex -> mongo
+						.updateFirst(claimable, update, MonthOccupancy.class).map(result -> result.getMatchedCount() > 0));
+	}
+
+	/**
+	 * Clears all the given nights of a month with one update when they all belong
+	 * to bookingId, else night by night so the nights of other bookings are kept.
+	 */
+	private Mono<Void> releaseMonth(String siteId, String bookingId, YearMonth month, List<LocalDate> nights) {
+		Criteria owned = where("_id").is(MonthOccupancy.idFor(siteId, month));
+		Update update = new Update().bitwise("mask").and(~bitsFor(nights));
+		for (LocalDate night : nights) {
+			owned = owned.and("bookingIds." + MonthOccupancy.dayKey(night)).is(bookingId);
+			update.unset("bookingIds." + MonthOccupancy.dayKey(night));
+		}
+		return mongo.updateFirst(query(owned), update, MonthOccupancy.class).flatMap(result -> {
+			if (result.getMatchedCount() > 0 || nights.size() == 1)
+				return Mono.<Void>empty();
+			return Flux.fromIterable(nights)
+					.concatMap(night -> releaseMonth(siteId, bookingId, month, Collections.singletonList(night)))
+					.then();
+		});
+	}
+
+	private static Map<YearMonth, List<LocalDate>> byMonth(List<LocalDate> nights) {
+		return nights.stream()
+				.collect(Collectors.groupingBy(YearMonth::from, LinkedHashMap::new, Collectors.toList()));
+	}
+
+	private static long bitsFor(List<LocalDate> nights) {
+		return nights.stream().mapToLong(MonthOccupancy::bitFor).reduce(0L, (a, b) -> a | b);
+	}
+}
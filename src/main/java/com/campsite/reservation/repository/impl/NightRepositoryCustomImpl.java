@@ -0,0 +1,70 @@
+package com.campsite.reservation.repository.impl;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.ReactiveIndexOperations;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.util.Assert;
+
+import com.campsite.reservation.model.Booking;
+import com.campsite.reservation.model.Night;
+import com.campsite.reservation.repository.NightRepositoryCustom;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public class NightRepositoryCustomImpl implements NightRepositoryCustom {
+
+	@Autowired
+	private ReactiveMongoTemplate mongo;
+
+	@Override
+	public Mono<Boolean> claimNights(String siteId, String bookingId, List<LocalDate> nights) {
+		Assert.notNull(siteId, "The given siteId must not be null!");
+		Assert.notNull(bookingId, "The given bookingId must not be null!");
+		Assert.notNull(nights, "The given nights must not be null!");
+		if (nights.isEmpty())
+			return Mono.just(Boolean.TRUE);
+		List<Night> docs = nights.stream().map(date -> new Night(siteId, date, bookingId)).collect(Collectors.toList());
+		return mongo.insertAll(docs).then(Mono.just(Boolean.TRUE))
+				.onErrorResume(DuplicateKeyException.class,
+						ex -> releaseNights(bookingId, nights).then(Mono.just(Boolean.FALSE)));
+	}
+
+	@Override
+	public Mono<Void> releaseNights(String bookingId, List<LocalDate> nights) {
+		Assert.notNull(bookingId, "The given bookingId must not be null!");
+		Assert.notNull(nights, "The given nights must not be null!");
+		if (nights.isEmpty())
+			return Mono.empty();
+		return mongo.remove(query(where("bookingId").is(bookingId).and("date").in(nights)), Night.class).then();
+	}
+
+	@Override
+	public Flux<Night> findFrom(LocalDate date) {
+		Assert.notNull(date, "The given date must not be null!");
+		return mongo.find(query(where("date").gte(date)), Night.class);
+	}
+
+	@Override
+	public Mono<String> ensureIndexes() {
+		ReactiveIndexOperations indexOps = mongo.indexOps(Night.class);
+		return mongo
+				.updateMulti(query(where("siteId").exists(false)), new Update().set("siteId", Booking.DEFAULT_SITE),
+						Night.class)
+				.thenMany(indexOps.getIndexInfo()).filter(index -> "date_unique".equals(index.getName()))
+				.flatMap(index -> indexOps.dropIndex(index.getName()))
+				.then(indexOps.ensureIndex(new Index().on("siteId", Sort.Direction.ASC).on("date", Sort.Direction.ASC)
+						.unique().named("siteId_date_unique")));
+	}
+}
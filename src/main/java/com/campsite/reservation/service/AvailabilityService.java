@@ -3,11 +3,36 @@ package com.campsite.reservation.service;
 import com.campsite.reservation.model.AvailabilityVO;
 import com.campsite.reservation.model.DateRangeVO;
 
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 public interface AvailabilityService {
 
-	Mono<AvailabilityVO> calculateAvailability(DateRangeVO inThisDateRange);
+	Mono<AvailabilityVO> calculateAvailability(String siteId, DateRangeVO inThisDateRange);
 
-	Mono<AvailabilityVO> calculateAvailabilityExcluding(String bookingId, DateRangeVO inThisDateRange);
+	Mono<AvailabilityVO> calculateAvailabilityExcluding(String siteId, String bookingId, DateRangeVO inThisDateRange);
+
+	/**
+	 * Emits every free date range, sorted by 'from' date, as soon as it is known.
+	 */
+	Flux<DateRangeVO> streamAvailability(String siteId, DateRangeVO inThisDateRange);
+
+	/**
+	 * True if every night in the given date range is free, not counting the
+	 * booking with excludingBookingId (may be null). Engines able to stop at the
+	 * first night taken override this, by default availability is calculated.
+	 */
+	default Mono<Boolean> isAvailable(String siteId, DateRangeVO dateRange, String excludingBookingId) {
+		return (excludingBookingId != null ? calculateAvailabilityExcluding(siteId, excludingBookingId, dateRange)
+				: calculateAvailability(siteId, dateRange)).map(availability -> availability.covers(dateRange));
+	}
+
+	/**
+	 * True if nights held (see Hold) are taken into account as if they were
+	 * booked. Holds with a given id are excluded along with the booking with that
+	 * id.
+	 */
+	default boolean honoursHolds() {
+		return false;
+	}
 }
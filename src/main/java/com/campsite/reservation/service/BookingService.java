@@ -1,5 +1,7 @@
 package com.campsite.reservation.service;
 
+import java.util.List;
+
 import com.campsite.reservation.model.Booking;
 import com.campsite.reservation.model.DateRangeVO;
 
@@ -9,5 +11,27 @@ public interface BookingService {
 
 	Mono<Boolean> isBookingCreationAllowed(Booking booking);
 
-	Mono<Boolean> isBookingModificationAllowed(String bookingId, DateRangeVO newDateRange);
+	Mono<Boolean> isBookingModificationAllowed(String siteId, String bookingId, DateRangeVO newDateRange);
+
+	/**
+	 * Same as above for a booking as it was read, only the nights added by the new
+	 * date range are checked. Shrinking or keeping the date range needs no check.
+	 */
+	Mono<Boolean> isBookingModificationAllowed(Booking booking, DateRangeVO newDateRange);
+
+	/**
+	 * Checks the booking rules (length, days ahead) for the given date range,
+	 * without looking at availability. Throws IllegalArgumentException if not met.
+	 */
+	void checkPreconditions(DateRangeVO dateRange);
+
+	/**
+	 * Sites that can be booked, from reservation.sites
+	 */
+	List<String> getSites();
+
+	/**
+	 * Throws IllegalArgumentException if the given site cannot be booked.
+	 */
+	void checkSite(String siteId);
 }
@@ -0,0 +1,25 @@
+package com.campsite.reservation.service;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Race-free way to take nights for a booking: nights are claimed in one write
+ * that fails if any of them is already taken, so there is no need to check
+ * availability before saving a booking.
+ */
+public interface OccupancyService {
+
+	/**
+	 * Claims all the given nights of a site for bookingId, or none of them.
+	 * Returns false if any night was already taken.
+	 */
+	Mono<Boolean> claim(String siteId, String bookingId, List<LocalDate> nights);
+
+	/**
+	 * Releases the given nights of a site, only the ones taken by bookingId.
+	 */
+	Mono<Void> release(String siteId, String bookingId, List<LocalDate> nights);
+}
@@ -1,17 +1,52 @@
 package com.campsite.reservation.service;
 
+import java.util.List;
+
 import com.campsite.reservation.model.AvailabilityVO;
+import com.campsite.reservation.model.BatchItemResultVO;
+import com.campsite.reservation.model.BatchMode;
 import com.campsite.reservation.model.Booking;
 import com.campsite.reservation.model.DateRangeVO;
+import com.campsite.reservation.model.Hold;
 
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 public interface ReservationService {
 
-	Mono<AvailabilityVO> findAvailability(DateRangeVO dateRange);
+	Mono<AvailabilityVO> findAvailability(String siteId, DateRangeVO dateRange);
+
+	Flux<DateRangeVO> streamAvailability(String siteId, DateRangeVO dateRange);
+
+	Flux<AvailabilityVO> watchAvailability(String siteId, DateRangeVO dateRange);
+
+	Mono<List<String>> findFreeSites(DateRangeVO dateRange);
 
 	Mono<Booking> makeReservation(Booking booking);
 
+	/**
+	 * Same as above, only once per idempotencyKey: returns the id of the booking
+	 * made by the first call with that key.
+	 */
+	Mono<String> makeReservation(Booking booking, String idempotencyKey);
+
+	/**
+	 * Makes the given bookings at once, see BatchMode. Returns one result per
+	 * booking, in the same order.
+	 */
+	Mono<List<BatchItemResultVO>> makeReservations(List<Booking> bookings, BatchMode mode);
+
+	/**
+	 * Holds the nights of the booking for the given minutes, the booking is only
+	 * saved once the hold is confirmed.
+	 */
+	Mono<Hold> holdReservation(Booking booking, int minutes);
+
+	/**
+	 * Saves the booking for a hold not expired yet, and removes the hold.
+	 */
+	Mono<Booking> confirmHold(String holdId);
+
 	Mono<Booking> modifyReservation(String bookingId, DateRangeVO newDateRange);
 
 	Mono<Booking> getReservationInfo(String bookingId);
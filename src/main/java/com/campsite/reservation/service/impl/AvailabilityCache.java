@@ -0,0 +1,143 @@
+package com.campsite.reservation.service.impl;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.data.util.Pair;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+
+import com.campsite.reservation.event.BookingEvent;
+import com.campsite.reservation.model.AvailabilityVO;
+import com.campsite.reservation.model.DateRangeVO;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import reactor.core.publisher.Mono;
+
+/**
+ * Bounded cache of availability results keyed by site and requested date range.
+ * Entries expire after reservation.availability-cache.ttl-seconds or at
+ * midnight, whatever comes first, and are invalidated as soon as a booking
+ * overlapping them is created, modified or cancelled through this instance.
+ * Bookings made through other instances are only seen once the entries
+ * expire, so this is meant for single instance deployments and is off unless
+ * reservation.availability-cache.enabled=true
+ *
+ * Every caller gets its own copy of the result, the cached one is never handed
+ * out.
+ *
+ * Only meant for availability requests, booking checks always go to the
+ * availability service.
+ */
+@Component
+@ConditionalOnProperty(name = "reservation.availability-cache.enabled", havingValue = "true")
+public class AvailabilityCache {
+
+	private static final Logger LOG = LoggerFactory.getLogger(AvailabilityCache.class);
+
+	private final Cache<Pair<String, DateRangeVO>, AvailabilityVO> cache;
+
+	/**
+	 * Incremented on every booking event, so results calculated while a booking
+	 * was changing are not left in the cache.
+	 */
+	private final AtomicLong writes = new AtomicLong();
+
+	public AvailabilityCache(Environment env, MeterRegistry meterRegistry) {
+		long maximumSize = env.getProperty("reservation.availability-cache.maximum-size", Long.class, 1000L);
+		long ttlSeconds = env.getProperty("reservation.availability-cache.ttl-seconds", Long.class, 300L);
+		this.cache = Caffeine.newBuilder().maximumSize(maximumSize)
+				.expireAfter(new UntilMidnightExpiry(Duration.ofSeconds(ttlSeconds))).recordStats().build();
+		CaffeineCacheMetrics.monitor(meterRegistry, cache, "availability");
+	}
+
+	public Mono<AvailabilityVO> get(String siteId, DateRangeVO dateRange,
+			Supplier<Mono<AvailabilityVO>> calculation) {
+		Assert.notNull(siteId, "siteId needs to be set");
+		Assert.notNull(dateRange, "dateRange needs to be set");
+		Assert.isTrue(!dateRange.isOpen(), "dateRange cannot be open");
+		Pair<String, DateRangeVO> key = Pair.of(siteId, dateRange);
+		return Mono.defer(() -> {
+			AvailabilityVO cached = cache.getIfPresent(key);
+			if (cached != null)
+				return Mono.just(copy(cached));
+			long writesBefore = writes.get();
+			return calculation.get().doOnNext(availability -> put(key, copy(availability), writesBefore));
+		});
+	}
+
+	@EventListener
+	public void onBookingEvent(BookingEvent event) {
+		writes.incrementAndGet();
+		invalidateOverlapping(event.getBooking().getSiteId(), event.getChangedDateRanges());
+	}
+
+	public long size() {
+		return cache.estimatedSize();
+	}
+
+	private void put(Pair<String, DateRangeVO> key, AvailabilityVO availability, long writesBefore) {
+		if (writes.get() != writesBefore)
+			return;
+		cache.put(key, availability);
+		// A booking event may have been handled between the check and the put
+		if (writes.get() != writesBefore)
+			cache.invalidate(key);
+	}
+
+	private static AvailabilityVO copy(AvailabilityVO availability) {
+		return new AvailabilityVO(availability.getDatesAvailable(), availability.getInThisDateRange());
+	}
+
+	private void invalidateOverlapping(String siteId, List<DateRangeVO> changedDateRanges) {
+		cache.asMap().keySet().removeIf(key -> key.getFirst().equals(siteId) && changedDateRanges.stream()
+				.anyMatch(changed -> key.getSecond().getFrom().isBefore(changed.getTo())
+						&& changed.getFrom().isBefore(key.getSecond().getTo())));
+		LOG.debug("invalidateOverlapping siteId: {}, changedDateRanges: {}, size: {}", siteId, changedDateRanges,
+				cache.estimatedSize());
+	}
+
+	/**
+	 * Availability requests default to start today, so nothing cached survives a
+	 * day rollover.
+	 */
+	static class UntilMidnightExpiry implements Expiry<Pair<String, DateRangeVO>, AvailabilityVO> {
+
+		private final long ttlNanos;
+
+		UntilMidnightExpiry(Duration ttl) {
+			this.ttlNanos = ttl.toNanos();
+		}
+
+		@Override
+		public long expireAfterCreate(Pair<String, DateRangeVO> key, AvailabilityVO value, long currentTime) {
+			LocalDateTime now = LocalDateTime.now();
+			long untilMidnight = Duration.between(now, now.toLocalDate().plusDays(1).atStartOfDay()).toNanos();
+			return Math.max(0, Math.min(ttlNanos, untilMidnight));
+		}
+
+		@Override
+		public long expireAfterUpdate(Pair<String, DateRangeVO> key, AvailabilityVO value, long currentTime,
+				long currentDuration) {
+			return expireAfterCreate(key, value, currentTime);
+		}
+
+		@Override
+		public long expireAfterRead(Pair<String, DateRangeVO> key, AvailabilityVO value, long currentTime,
+				long currentDuration) {
+			return currentDuration;
+		}
+	}
+}
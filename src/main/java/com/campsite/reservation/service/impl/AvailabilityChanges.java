@@ -0,0 +1,113 @@
+package com.campsite.reservation.service.impl;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.data.util.Pair;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+
+import com.campsite.reservation.event.BookingEvent;
+import com.campsite.reservation.model.AvailabilityVO;
+import com.campsite.reservation.model.DateRangeVO;
+import com.campsite.reservation.service.AvailabilityService;
+
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.DirectProcessor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Mono;
+
+/**
+ * Multicasts the availability changed by every BookingEvent. Availability is
+ * calculated once per event for the changed date ranges, and then clipped to
+ * the date range each subscriber is watching.
+ *
+ * Every subscriber gets its own bounded buffer (see
+ * reservation.availability-changes.buffer-size), so a slow subscriber only
+ * loses its oldest changes and never slows down the others.
+ */
+@Component
+public class AvailabilityChanges {
+
+	private static final Logger LOG = LoggerFactory.getLogger(AvailabilityChanges.class);
+
+	private final DirectProcessor<BookingEvent> events = DirectProcessor.create();
+
+	private final FluxSink<BookingEvent> sink = events.sink();
+
+	/**
+	 * Availability changed, by site.
+	 */
+	private final Flux<Pair<String, AvailabilityVO>> changes;
+
+	private final int bufferSize;
+
+	public AvailabilityChanges(Environment env, AvailabilityService availabilityService) {
+		this.bufferSize = env.getProperty("reservation.availability-changes.buffer-size", Integer.class, 256);
+		this.changes = events
+				.onBackpressureBuffer(bufferSize,
+						dropped -> LOG.warn("availability change dropped for event: {}", dropped),
+						BufferOverflowStrategy.DROP_OLDEST)
+				.concatMap(event -> {
+					String siteId = event.getBooking().getSiteId();
+					DateRangeVO changed = span(event.getChangedDateRanges());
+					return availabilityService.calculateAvailability(siteId, changed)
+							.map(availability -> Pair.of(siteId, availability)).onErrorResume(ex -> {
+								LOG.error("cannot calculate availability changed by event: {}", event, ex);
+								return Mono.empty();
+							});
+				}).share();
+	}
+
+	/**
+	 * Emits the availability changed inside the given date range of a site, every
+	 * time a booking overlapping it is created, modified or cancelled.
+	 */
+	public Flux<AvailabilityVO> watch(String siteId, DateRangeVO inThisDateRange) {
+		Assert.notNull(siteId, "siteId needs to be set");
+		Assert.notNull(inThisDateRange, "inThisDateRange needs to be set");
+		Assert.isTrue(!inThisDateRange.isOpen(), "inThisDateRange cannot be open");
+		return changes.filter(change -> change.getFirst().equals(siteId))
+				.flatMap(change -> Mono.justOrEmpty(clip(change.getSecond(), inThisDateRange)))
+				.onBackpressureBuffer(bufferSize,
+						dropped -> LOG.debug("availability change dropped for slow subscriber: {}", dropped),
+						BufferOverflowStrategy.DROP_OLDEST);
+	}
+
+	@EventListener
+	public void onBookingEvent(BookingEvent event) {
+		sink.next(event);
+	}
+
+	private static DateRangeVO span(List<DateRangeVO> dateRanges) {
+		LocalDate from = dateRanges.get(0).getFrom();
+		LocalDate to = dateRanges.get(0).getTo();
+		for (DateRangeVO dateRange : dateRanges) {
+			from = dateRange.getFrom().isBefore(from) ? dateRange.getFrom() : from;
+			to = dateRange.getTo().isAfter(to) ? dateRange.getTo() : to;
+		}
+		return new DateRangeVO(from, to);
+	}
+
+	private static Optional<AvailabilityVO> clip(AvailabilityVO availability, DateRangeVO inThisDateRange) {
+		Optional<DateRangeVO> changed = intersection(availability.getInThisDateRange(), inThisDateRange);
+		if (!changed.isPresent())
+			return Optional.empty();
+		AvailabilityVO.Builder builder = AvailabilityVO.builder(changed.get());
+		for (DateRangeVO available : availability.getDatesAvailable())
+			intersection(available, changed.get()).ifPresent(builder::addRange);
+		return Optional.of(builder.build());
+	}
+
+	private static Optional<DateRangeVO> intersection(DateRangeVO a, DateRangeVO b) {
+		LocalDate from = a.getFrom().isAfter(b.getFrom()) ? a.getFrom() : b.getFrom();
+		LocalDate to = a.getTo().isBefore(b.getTo()) ? a.getTo() : b.getTo();
+		return from.isBefore(to) ? Optional.of(new DateRangeVO(from, to)) : Optional.empty();
+	}
+}
@@ -0,0 +1,103 @@
+package com.campsite.reservation.service.impl;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import com.campsite.reservation.model.AvailabilityVO;
+import com.campsite.reservation.model.BookingSlot;
+import com.campsite.reservation.model.DateRangeVO;
+
+import reactor.core.publisher.Flux;
+
+/**
+ * Folds booking slots, sorted by dateRange.from, into the free date ranges left
+ * inside a given date range. Every free date range is known as soon as the
+ * next slot starting after it arrives, so only the current position is kept
+ * while slots stream in.
+ */
+final class AvailabilityGaps {
+
+	private final LocalDate to;
+
+	private LocalDate cursor;
+
+	private long slots;
+
+	private long kernelNanos;
+
+	private AvailabilityGaps(DateRangeVO inThisDateRange) {
+		this.cursor = inThisDateRange.getFrom();
+		this.to = inThisDateRange.getTo();
+	}
+
+	/**
+	 * Free date ranges are emitted as slots arrive, with no slot kept after being
+	 * processed.
+	 */
+	static Flux<DateRangeVO> fold(DateRangeVO inThisDateRange, Flux<BookingSlot> slots) {
+		return fold(inThisDateRange, slots, null);
+	}
+
+	/**
+	 * Same as above, time spent folding and slots folded are recorded once all
+	 * slots were processed, if metrics is set.
+	 */
+	static Flux<DateRangeVO> fold(DateRangeVO inThisDateRange, Flux<BookingSlot> slots, ReservationMetrics metrics) {
+		return Flux.defer(() -> {
+			AvailabilityGaps gaps = new AvailabilityGaps(inThisDateRange);
+			return slots.<DateRangeVO>handle((slot, sink) -> {
+				long start = System.nanoTime();
+				DateRangeVO gap = gaps.next(slot);
+				gaps.slots++;
+				gaps.kernelNanos += System.nanoTime() - start;
+				if (gap != null)
+					sink.next(gap);
+			}).concatWith(Flux.defer(() -> {
+				DateRangeVO gap = gaps.last();
+				if (metrics != null) {
+					metrics.record(ReservationMetrics.KERNEL, gaps.kernelNanos);
+					// Every slot read overlaps the date range, see BookingRepositoryCustom
+					metrics.recordBookings(gaps.slots, gaps.slots);
+				}
+				return gap != null ? Flux.just(gap) : Flux.empty();
+			}));
+		});
+	}
+
+	static AvailabilityVO fold(DateRangeVO inThisDateRange, List<BookingSlot> slots) {
+		AvailabilityVO.Builder builder = AvailabilityVO.builder(inThisDateRange);
+		AvailabilityGaps gaps = new AvailabilityGaps(inThisDateRange);
+		for (BookingSlot slot : slots) {
+			DateRangeVO gap = gaps.next(slot);
+			if (gap != null)
+				builder.addRange(gap);
+		}
+		DateRangeVO gap = gaps.last();
+		if (gap != null)
+			builder.addRange(gap);
+		return builder.build();
+	}
+
+	/**
+	 * Returns the free date range before the given slot, if any.
+	 */
+	private DateRangeVO next(BookingSlot slot) {
+		if (!cursor.isBefore(to))
+			return null;
+		LocalDate slotFrom = slot.getDateRange().getFrom();
+		LocalDate slotTo = slot.getDateRange().getTo();
+		DateRangeVO gap = null;
+		if (slotFrom.isAfter(cursor))
+			gap = new DateRangeVO(cursor, slotFrom.isBefore(to) ? slotFrom : to);
+		if (slotTo.isAfter(cursor))
+			cursor = slotTo;
+		return gap;
+	}
+
+	/**
+	 * Returns the free date range after the last slot, if any.
+	 */
+	private DateRangeVO last() {
+		return cursor.isBefore(to) ? new DateRangeVO(cursor, to) : null;
+	}
+}
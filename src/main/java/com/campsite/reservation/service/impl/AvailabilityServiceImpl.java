@@ -1,59 +1,161 @@
 package com.campsite.reservation.service.impl;
 
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.util.Pair;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 import org.springframework.util.Assert;
 
+import com.campsite.reservation.event.BookingEvent;
 import com.campsite.reservation.model.AvailabilityVO;
-import com.campsite.reservation.model.Booking;
+import com.campsite.reservation.model.BookingSlot;
 import com.campsite.reservation.model.DateRangeVO;
 import com.campsite.reservation.repository.BookingRepository;
+import com.campsite.reservation.repository.HoldRepository;
 import com.campsite.reservation.service.AvailabilityService;
 
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+/**
+ * Calculates availability from the bookings and the holds not expired yet
+ * overlapping the requested date range, read from the database.
+ * 
+ * Identical calculations requested while one is in flight (same site, date
+ * range and excluded booking) wait for it instead of querying again, each of
+ * them getting its own copy of the result. In flight calculations overlapping a
+ * booking that changed are not joined by later requests.
+ */
 @Service
+@ConditionalOnProperty(name = "reservation.availability-engine", havingValue = "mongo", matchIfMissing = true)
 public class AvailabilityServiceImpl implements AvailabilityService {
 
+	private static final Comparator<BookingSlot> BY_FROM = Comparator.comparing(slot -> slot.getDateRange().getFrom());
+
 	@Autowired
 	BookingRepository bookingRepository;
 
+	@Autowired
+	HoldRepository holdRepository;
+
+	@Autowired
+	ReservationMetrics metrics;
+
+	/**
+	 * Calculations in flight, keyed by siteId, excluded bookingId (may be null)
+	 * and date range.
+	 */
+	private final Map<List<Object>, Mono<AvailabilityVO>> inFlight = new ConcurrentHashMap<List<Object>, Mono<AvailabilityVO>>(
+			64);
+
 	@Override
-	public Mono<AvailabilityVO> calculateAvailability(DateRangeVO inThisDateRange) {
+	public Mono<AvailabilityVO> calculateAvailability(String siteId, DateRangeVO inThisDateRange) {
+		Assert.notNull(siteId, "siteId needs to be set");
 		Assert.notNull(inThisDateRange, "inThisDateRange needs to be set");
-		return bookingRepository.findByDateRange(inThisDateRange).collectList().map(bookings -> {
-			return calculateFor(inThisDateRange, bookings);
-		});
+		return coalesced(Arrays.<Object>asList(siteId, null, inThisDateRange),
+				() -> collect(inThisDateRange, streamAvailability(siteId, inThisDateRange)));
 	}
 
 	@Override
-	public Mono<AvailabilityVO> calculateAvailabilityExcluding(String bookingId, DateRangeVO inThisDateRange) {
+	public Mono<AvailabilityVO> calculateAvailabilityExcluding(String siteId, String bookingId,
+			DateRangeVO inThisDateRange) {
+		Assert.notNull(siteId, "siteId needs to be set");
 		Assert.notNull(bookingId, "bookingId needs to be set");
 		Assert.notNull(inThisDateRange, "inThisDateRange needs to be set");
-		return bookingRepository.findByDateRangeExcluding(inThisDateRange, bookingId).collectList().map(bookings -> {
-			return calculateFor(inThisDateRange, bookings);
+		return coalesced(Arrays.<Object>asList(siteId, bookingId, inThisDateRange),
+				() -> collect(inThisDateRange, AvailabilityGaps.fold(inThisDateRange,
+						metrics.time(ReservationMetrics.QUERY, byFrom(
+								bookingRepository.findSlotsByDateRangeExcluding(siteId, inThisDateRange, bookingId),
+								holdRepository.findSlotsByDateRangeExcluding(siteId, inThisDateRange, bookingId))),
+						metrics)));
+	}
+
+	@Override
+	public Flux<DateRangeVO> streamAvailability(String siteId, DateRangeVO inThisDateRange) {
+		Assert.notNull(siteId, "siteId needs to be set");
+		Assert.notNull(inThisDateRange, "inThisDateRange needs to be set");
+		return AvailabilityGaps.fold(inThisDateRange,
+				metrics.time(ReservationMetrics.QUERY,
+						byFrom(bookingRepository.findSlotsByDateRange(siteId, inThisDateRange),
+								holdRepository.findSlotsByDateRange(siteId, inThisDateRange))),
+				metrics);
+	}
+
+	/**
+	 * Looks for one booking overlapping the date range, and only if there is none
+	 * for one hold, no availability is calculated.
+	 */
+	@Override
+	public Mono<Boolean> isAvailable(String siteId, DateRangeVO dateRange, String excludingBookingId) {
+		Assert.notNull(siteId, "siteId needs to be set");
+		Assert.notNull(dateRange, "dateRange needs to be set");
+		Mono<Boolean> booked = excludingBookingId != null
+				? bookingRepository.existsByDateRangeExcluding(siteId, dateRange, excludingBookingId)
+				: bookingRepository.existsByDateRange(siteId, dateRange);
+		Mono<Boolean> held = excludingBookingId != null
+				? holdRepository.existsByDateRangeExcluding(siteId, dateRange, excludingBookingId)
+				: holdRepository.existsByDateRange(siteId, dateRange);
+		return metrics.time(ReservationMetrics.QUERY,
+				booked.flatMap(taken -> taken ? Mono.just(Boolean.TRUE) : held).map(taken -> !taken));
+	}
+
+	@Override
+	public boolean honoursHolds() {
+		return true;
+	}
+
+	@EventListener
+	public void onBookingEvent(BookingEvent event) {
+		String siteId = event.getBooking().getSiteId();
+		inFlight.keySet().removeIf(key -> key.get(0).equals(siteId) && event.getChangedDateRanges().stream()
+				.anyMatch(changed -> overlap((DateRangeVO) key.get(2), changed)));
+	}
+
+	private Mono<AvailabilityVO> coalesced(List<Object> key, Supplier<Mono<AvailabilityVO>> calculation) {
+		return Mono.defer(() -> {
+			boolean[] joined = { true };
+			Mono<AvailabilityVO> flight = inFlight.computeIfAbsent(key, k -> {
+				joined[0] = false;
+				return newFlight(k, calculation);
+			});
+			metrics.recordCoalescing(joined[0]);
+			return flight.map(availability -> new AvailabilityVO(availability.getDatesAvailable(),
+					availability.getInThisDateRange()));
 		});
 	}
 
-	private AvailabilityVO calculateFor(DateRangeVO inThisDateRange, List<Booking> bookings) {
-		AvailabilityVO.Builder builder = AvailabilityVO.builder(inThisDateRange);
-		Optional<DateRangeVO> dateRangeToProcess = Optional.of(inThisDateRange);
-		for (Booking b : bookings) {
-			if (dateRangeToProcess.isPresent()) {
-				Pair<Optional<DateRangeVO>, Optional<DateRangeVO>> pair = dateRangeToProcess.get()
-						.minus(b.getDateRange());
-				if (pair.getFirst().isPresent())
-					builder.addRange(pair.getFirst().get());
-				dateRangeToProcess = pair.getSecond();
-			}
-		}
-		if (dateRangeToProcess.isPresent())
-			builder.addRange(dateRangeToProcess.get());
-		return builder.build();
+	/**
+	 * Runs the calculation once for all its subscribers, and is removed as soon as
+	 * it is done (if it was not removed already).
+	 */
+	private Mono<AvailabilityVO> newFlight(List<Object> key, Supplier<Mono<AvailabilityVO>> calculation) {
+		AtomicReference<Mono<AvailabilityVO>> flight = new AtomicReference<Mono<AvailabilityVO>>();
+		flight.set(Mono.defer(calculation).doFinally(signal -> inFlight.remove(key, flight.get())).cache());
+		return flight.get();
+	}
+
+	/**
+	 * Bookings and holds are both sorted by dateRange.from, merged as they arrive.
+	 */
+	private static Flux<BookingSlot> byFrom(Flux<BookingSlot> bookings, Flux<BookingSlot> holds) {
+		return Flux.mergeOrdered(BY_FROM, bookings, holds);
+	}
+
+	private static boolean overlap(DateRangeVO a, DateRangeVO b) {
+		return a.getFrom().isBefore(b.getTo()) && b.getFrom().isBefore(a.getTo());
+	}
+
+	private Mono<AvailabilityVO> collect(DateRangeVO inThisDateRange, Flux<DateRangeVO> datesAvailable) {
+		return datesAvailable.collect(() -> AvailabilityVO.builder(inThisDateRange), AvailabilityVO.Builder::addRange)
+				.map(AvailabilityVO.Builder::build);
 	}
 
 }
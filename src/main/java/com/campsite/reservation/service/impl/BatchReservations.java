@@ -0,0 +1,208 @@
+package com.campsite.reservation.service.impl;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+
+import com.campsite.reservation.event.BookingEvent;
+import com.campsite.reservation.model.BatchItemResultVO;
+import com.campsite.reservation.model.BatchMode;
+import com.campsite.reservation.model.Booking;
+import com.campsite.reservation.model.BookingSlot;
+import com.campsite.reservation.model.BookingWrite;
+import com.campsite.reservation.model.DateRangeVO;
+import com.campsite.reservation.repository.BookingRepository;
+import com.campsite.reservation.repository.HoldRepository;
+import com.campsite.reservation.service.AvailabilityService;
+import com.campsite.reservation.service.BookingService;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Makes several bookings at once. Bookings of each site are checked in the
+ * order given, against the ones accepted before them and against the bookings
+ * (and holds, if honoured) overlapping the union of their date ranges, read in
+ * one query per site. The accepted ones are inserted in one bulkWrite.
+ *
+ * Same as for one booking, bookings made by other requests between the query
+ * and the bulkWrite are not seen.
+ */
+@Component
+public class BatchReservations {
+
+	private static final Logger LOG = LoggerFactory.getLogger(BatchReservations.class);
+
+	@Autowired
+	BookingService bookingService;
+
+	@Autowired
+	AvailabilityService availabilityService;
+
+	@Autowired
+	BookingRepository bookingRepository;
+
+	@Autowired
+	HoldRepository holdRepository;
+
+	@Autowired
+	ApplicationEventPublisher eventPublisher;
+
+	@Autowired
+	ReservationMetrics metrics;
+
+	private final int maxSize;
+
+	private final Counter bookingsNotAllowedCounter;
+
+	public BatchReservations(Environment env, MeterRegistry meterRegistry) {
+		this.maxSize = env.getProperty("reservation.batch.max-size", Integer.class, 100);
+		Assert.isTrue(maxSize > 0, "reservation.batch.max-size needs to be greater than 0");
+		this.bookingsNotAllowedCounter = meterRegistry.counter("reservation.bookings-not-allowed");
+	}
+
+	/**
+	 * Returns one result per booking, in the same order.
+	 */
+	public Mono<List<BatchItemResultVO>> make(List<Booking> bookings, BatchMode mode) {
+		Assert.notNull(bookings, "bookings needs to be set");
+		Assert.notNull(mode, "mode needs to be set");
+		Assert.isTrue(!bookings.isEmpty() && bookings.size() <= maxSize,
+				String.format("Batches can have 1 up to %s bookings", maxSize));
+		return Mono.defer(() -> {
+			BatchItemResultVO[] results = new BatchItemResultVO[bookings.size()];
+			Booking[] accepted = new Booking[bookings.size()];
+			Map<String, List<Integer>> bySite = validate(bookings, results);
+			return Flux.fromIterable(bySite.entrySet())
+					.concatMap(site -> booked(site.getKey(), union(bookings, site.getValue()))
+							.doOnNext(booked -> check(bookings, site.getValue(), booked, accepted, results)))
+					.then(Mono.defer(() -> save(accepted, mode, results))).then(Mono.fromSupplier(() -> {
+						LOG.info("make batch size: {}, mode: {}, created: {}", bookings.size(), mode,
+								Arrays.stream(results)
+										.filter(result -> result.getStatus() == BatchItemResultVO.Status.CREATED)
+										.count());
+						return Arrays.asList(results);
+					}));
+		});
+	}
+
+	/**
+	 * Bookings breaking the booking rules are rejected, the others are returned
+	 * by site (as positions in the batch).
+	 */
+	private Map<String, List<Integer>> validate(List<Booking> bookings, BatchItemResultVO[] results) {
+		Map<String, List<Integer>> bySite = new LinkedHashMap<String, List<Integer>>();
+		for (int i = 0; i < bookings.size(); i++) {
+			Booking booking = bookings.get(i);
+			try {
+				Assert.notNull(booking, "booking needs to be set");
+				Assert.notNull(booking.getDateRange(), "dateRange needs to be set");
+				Assert.isTrue(!booking.getDateRange().isOpen(), "Cannot set open date range for a booking.");
+				bookingService.checkSite(booking.getSiteId());
+				bookingService.checkPreconditions(booking.getDateRange());
+				bySite.computeIfAbsent(booking.getSiteId(), site -> new ArrayList<Integer>()).add(i);
+			} catch (IllegalArgumentException ex) {
+				results[i] = BatchItemResultVO.rejected(i, ex.getMessage());
+			}
+		}
+		return bySite;
+	}
+
+	private static DateRangeVO union(List<Booking> bookings, List<Integer> positions) {
+		LocalDate from = positions.stream().map(i -> bookings.get(i).getDateRange().getFrom())
+				.min(LocalDate::compareTo).get();
+		LocalDate to = positions.stream().map(i -> bookings.get(i).getDateRange().getTo())
+				.max(LocalDate::compareTo).get();
+		return new DateRangeVO(from, to);
+	}
+
+	private Mono<BookingIntervalIndex> booked(String siteId, DateRangeVO union) {
+		Flux<BookingSlot> slots = bookingRepository.findSlotsByDateRange(siteId, union);
+		if (availabilityService.honoursHolds())
+			slots = slots.mergeWith(holdRepository.findSlotsByDateRange(siteId, union));
+		return metrics.time(ReservationMetrics.QUERY, slots)
+				.collect(BookingIntervalIndex::new, BookingIntervalIndex::put);
+	}
+
+	/**
+	 * Each booking accepted takes its nights for the ones after it. Ids are set
+	 * upfront so accepted bookings can be told apart.
+	 */
+	private void check(List<Booking> bookings, List<Integer> positions, BookingIntervalIndex booked,
+			Booking[] accepted, BatchItemResultVO[] results) {
+		for (int i : positions) {
+			Booking booking = bookings.get(i);
+			if (booked.anyOverlapping(booking.getDateRange(), null)) {
+				bookingsNotAllowedCounter.increment();
+				results[i] = BatchItemResultVO.rejected(i, "No availability");
+				continue;
+			}
+			accepted[i] = new Booking(new ObjectId().toHexString(), booking.getSiteId(), booking.getEmail(),
+					booking.getFullName(), booking.getDateRange());
+			booked.put(BookingSlot.from(accepted[i]));
+		}
+	}
+
+	private Mono<Void> save(Booking[] accepted, BatchMode mode, BatchItemResultVO[] results) {
+		List<Integer> positions = new ArrayList<Integer>();
+		for (int i = 0; i < accepted.length; i++)
+			if (accepted[i] != null)
+				positions.add(i);
+		if (positions.isEmpty())
+			return Mono.empty();
+		if (mode == BatchMode.ALL_OR_NOTHING && positions.size() < accepted.length) {
+			positions.forEach(
+					i -> results[i] = BatchItemResultVO.notSaved(i, "Other bookings in the batch were rejected"));
+			return Mono.empty();
+		}
+		List<BookingWrite> inserts = positions.stream()
+				.map(i -> new BookingWrite(BookingWrite.Type.INSERT, accepted[i])).collect(Collectors.toList());
+		return metrics.time(ReservationMetrics.SAVE, bookingRepository.bulkWrite(inserts)).flatMap(applied -> {
+			Mono<Integer> undone = mode == BatchMode.ALL_OR_NOTHING && applied < inserts.size()
+					? undo(inserts.subList(0, applied))
+					: Mono.just(0);
+			return undone.doOnNext(undoneCount -> {
+				for (int k = 0; k < positions.size(); k++) {
+					int i = positions.get(k);
+					if (k < undoneCount)
+						results[i] = BatchItemResultVO.notSaved(i, "Other bookings in the batch could not be saved");
+					else if (k >= applied)
+						results[i] = BatchItemResultVO.notSaved(i, "Reservation could not be saved, please retry!");
+					else {
+						results[i] = BatchItemResultVO.created(i, accepted[i].getId());
+						eventPublisher.publishEvent(BookingEvent.created(accepted[i].withVersion(0L)));
+					}
+				}
+			});
+		}).then();
+	}
+
+	/**
+	 * Deletes the bookings inserted before the bulkWrite failed, returns how many
+	 * were deleted (in order). Bookings not deleted are kept as created.
+	 */
+	private Mono<Integer> undo(List<BookingWrite> inserted) {
+		List<BookingWrite> deletes = inserted.stream()
+				.map(insert -> new BookingWrite(BookingWrite.Type.DELETE, insert.getBooking()))
+				.collect(Collectors.toList());
+		return bookingRepository.bulkWrite(deletes).onErrorResume(ex -> {
+			LOG.error("undo bulkWrite failed, bookings kept: {}", deletes.size(), ex);
+			return Mono.just(0);
+		});
+	}
+}
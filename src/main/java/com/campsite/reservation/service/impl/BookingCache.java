@@ -0,0 +1,87 @@
+package com.campsite.reservation.service.impl;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+
+import com.campsite.reservation.event.BookingEvent;
+import com.campsite.reservation.model.Booking;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import reactor.core.publisher.Mono;
+
+/**
+ * Bounded cache of bookings by id, for reservation info requests. Entries
+ * expire after reservation.booking-cache.ttl-seconds, and are invalidated as
+ * soon as the booking is modified or cancelled through this instance
+ * (BookingEvent is published synchronously, before the change is answered).
+ * Changes made through other instances are only seen once the entry expires,
+ * so this is meant for single instance deployments and is off unless
+ * reservation.booking-cache.enabled=true
+ *
+ * Modifications and cancellations always read the booking from the database,
+ * they need its current version.
+ */
+@Component
+@ConditionalOnProperty(name = "reservation.booking-cache.enabled", havingValue = "true")
+public class BookingCache {
+
+	private final Cache<String, Booking> cache;
+
+	/**
+	 * Incremented on every booking event, so bookings read while one was changing
+	 * are not left in the cache.
+	 */
+	private final AtomicLong writes = new AtomicLong();
+
+	public BookingCache(Environment env, MeterRegistry meterRegistry) {
+		long maximumSize = env.getProperty("reservation.booking-cache.maximum-size", Long.class, 10000L);
+		long ttlSeconds = env.getProperty("reservation.booking-cache.ttl-seconds", Long.class, 60L);
+		this.cache = Caffeine.newBuilder().maximumSize(maximumSize).expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+				.recordStats().build();
+		CaffeineCacheMetrics.monitor(meterRegistry, cache, "booking");
+		Gauge.builder("reservation.booking-cache.hit-ratio", cache, c -> c.stats().hitRate())
+				.description("Share of reservation info requests answered from the booking cache")
+				.register(meterRegistry);
+	}
+
+	public Mono<Booking> get(String bookingId, Supplier<Mono<Booking>> lookup) {
+		Assert.notNull(bookingId, "bookingId needs to be set");
+		return Mono.defer(() -> {
+			Booking cached = cache.getIfPresent(bookingId);
+			if (cached != null)
+				return Mono.just(cached);
+			long writesBefore = writes.get();
+			return lookup.get().doOnNext(booking -> put(bookingId, booking, writesBefore));
+		});
+	}
+
+	@EventListener
+	public void onBookingEvent(BookingEvent event) {
+		writes.incrementAndGet();
+		cache.invalidate(event.getBooking().getId());
+	}
+
+	public long size() {
+		return cache.estimatedSize();
+	}
+
+	private void put(String bookingId, Booking booking, long writesBefore) {
+		if (writes.get() != writesBefore)
+			return;
+		cache.put(bookingId, booking);
+		// A booking event may have been handled between the check and the put
+		if (writes.get() != writesBefore)
+			cache.invalidate(bookingId);
+	}
+}
@@ -0,0 +1,82 @@
+package com.campsite.reservation.service.impl;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+
+import com.campsite.reservation.event.BookingEvent;
+import com.campsite.reservation.repository.BookingRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Ids of all bookings in a counting Bloom filter, so requests for ids that do
+ * not exist (never booked or cancelled) are answered without going to the
+ * database. Enabled with reservation.booking-id-filter.enabled=true
+ *
+ * Ids are loaded at startup and kept up to date with every BookingEvent. Only
+ * bookings made through this instance are seen after startup, so this is meant
+ * for single instance deployments.
+ */
+@Component
+@ConditionalOnProperty(name = "reservation.booking-id-filter.enabled", havingValue = "true")
+public class BookingIdFilter {
+
+	private static final Logger LOG = LoggerFactory.getLogger(BookingIdFilter.class);
+
+	@Autowired
+	BookingRepository bookingRepository;
+
+	private final CountingBloomFilter ids;
+
+	private final Counter skipped;
+
+	public BookingIdFilter(Environment env, MeterRegistry meterRegistry) {
+		long expectedIds = env.getProperty("reservation.booking-id-filter.expected-ids", Long.class, 1000000L);
+		double fpp = env.getProperty("reservation.booking-id-filter.fpp", Double.class, 0.01);
+		this.ids = new CountingBloomFilter(expectedIds, fpp);
+		Gauge.builder("reservation.booking-id-filter.ids", ids, CountingBloomFilter::size)
+				.description("Booking ids kept in the filter").register(meterRegistry);
+		Gauge.builder("reservation.booking-id-filter.fpp", ids, CountingBloomFilter::falsePositiveProbability)
+				.description("Probability of an unknown booking id still being looked up").register(meterRegistry);
+		Gauge.builder("reservation.booking-id-filter.memory", ids, CountingBloomFilter::sizeInBytes)
+				.baseUnit("bytes").description("Memory taken by the filter counters").register(meterRegistry);
+		this.skipped = meterRegistry.counter("reservation.booking-id-filter.lookups-skipped");
+	}
+
+	@PostConstruct
+	public void load() {
+		bookingRepository.findAllIds().doOnNext(ids::add).then().block();
+		LOG.info("load booking ids: {}, bytes: {}, hashes: {}, fpp: {}", ids.size(), ids.sizeInBytes(), ids.hashes(),
+				ids.falsePositiveProbability());
+	}
+
+	/**
+	 * False only if there is no booking with the given id.
+	 */
+	public boolean mightExist(String bookingId) {
+		Assert.notNull(bookingId, "bookingId needs to be set");
+		boolean mightExist = ids.mightContain(bookingId);
+		if (!mightExist)
+			skipped.increment();
+		return mightExist;
+	}
+
+	@EventListener
+	public void onBookingEvent(BookingEvent event) {
+		LOG.debug("onBookingEvent event: {}", event);
+		if (event.getType() == BookingEvent.Type.CREATED)
+			ids.add(event.getBooking().getId());
+		else if (event.getType() == BookingEvent.Type.CANCELLED)
+			ids.remove(event.getBooking().getId());
+	}
+}
@@ -0,0 +1,128 @@
+package com.campsite.reservation.service.impl;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.LongConsumer;
+
+import org.springframework.util.Assert;
+
+import com.campsite.reservation.model.BookingSlot;
+import com.campsite.reservation.model.DateRangeVO;
+
+/**
+ * In-memory index of booking slots, sorted by 'from' (as epoch day) so the
+ * bookings overlapping a date range are found in O(log n + overlapping).
+ * 
+ * Not thread safe, callers need to synchronize access.
+ */
+public class BookingIntervalIndex {
+
+	private final NavigableMap<Integer, List<BookingSlot>> byFrom = new TreeMap<Integer, List<BookingSlot>>();
+
+	private final Map<String, BookingSlot> byId = new HashMap<String, BookingSlot>();
+
+	/**
+	 * Longest booking in the index (in nights), bounds how far before a date range
+	 * an overlapping booking can start.
+	 */
+	private int maxNights = 0;
+
+	/**
+	 * Adds the slot, replacing the previous one with the same id if any.
+	 */
+	public void put(BookingSlot slot) {
+		Assert.notNull(slot, "slot needs to be set");
+		Assert.notNull(slot.getId(), "slot id needs to be set");
+		remove(slot.getId());
+		byFrom.computeIfAbsent(slot.getDateRange().fromEpochDay(), from -> new ArrayList<BookingSlot>(1))
+				.add(slot);
+		byId.put(slot.getId(), slot);
+		maxNights = Math.max(maxNights, slot.getDateRange().toEpochDay() - slot.getDateRange().fromEpochDay());
+	}
+
+	public BookingSlot remove(String id) {
+		BookingSlot slot = byId.remove(id);
+		if (slot != null) {
+			int from = slot.getDateRange().fromEpochDay();
+			List<BookingSlot> slots = byFrom.get(from);
+			slots.removeIf(s -> s.getId().equals(id));
+			if (slots.isEmpty())
+				byFrom.remove(from);
+		}
+		return slot;
+	}
+
+	public BookingSlot get(String id) {
+		return byId.get(id);
+	}
+
+	/**
+	 * Slots overlapping the given date range (closed), sorted by 'from'. If
+	 * excludingId is set that slot is left out.
+	 */
+	public List<BookingSlot> overlapping(DateRangeVO dateRange, String excludingId) {
+		return overlapping(dateRange, excludingId, scanned -> {
+		});
+	}
+
+	/**
+	 * Same as above, the number of slots looked at (starting up to maxNights
+	 * before the date range) is given to scannedCount.
+	 */
+	public List<BookingSlot> overlapping(DateRangeVO dateRange, String excludingId, LongConsumer scannedCount) {
+		Assert.notNull(dateRange, "dateRange needs to be set");
+		Assert.isTrue(!dateRange.isOpen(), "dateRange cannot be open");
+		int from = dateRange.fromEpochDay();
+		int to = dateRange.toEpochDay();
+		List<BookingSlot> overlapping = new ArrayList<BookingSlot>();
+		long scanned = 0;
+		for (List<BookingSlot> slots : byFrom.subMap(from - maxNights, true, to, false).values())
+			for (BookingSlot slot : slots) {
+				scanned++;
+				if (slot.getDateRange().toEpochDay() > from && !slot.getId().equals(excludingId))
+					overlapping.add(slot);
+			}
+		scannedCount.accept(scanned);
+		return overlapping;
+	}
+
+	/**
+	 * True if any slot but excludingId overlaps the given date range, stopping at
+	 * the first one found.
+	 */
+	public boolean anyOverlapping(DateRangeVO dateRange, String excludingId) {
+		Assert.notNull(dateRange, "dateRange needs to be set");
+		Assert.isTrue(!dateRange.isOpen(), "dateRange cannot be open");
+		int from = dateRange.fromEpochDay();
+		int to = dateRange.toEpochDay();
+		for (List<BookingSlot> slots : byFrom.subMap(from - maxNights, true, to, false).values())
+			for (BookingSlot slot : slots)
+				if (slot.getDateRange().toEpochDay() > from && !slot.getId().equals(excludingId))
+					return true;
+		return false;
+	}
+
+	/**
+	 * Drops all slots with no nights left from the given date on, they can no
+	 * longer overlap any bookable date range.
+	 */
+	public void removeEndedBefore(LocalDate date) {
+		int day = (int) date.toEpochDay();
+		NavigableMap<Integer, List<BookingSlot>> candidates = byFrom.headMap(day, false);
+		List<String> ended = new ArrayList<String>();
+		for (List<BookingSlot> slots : candidates.values())
+			for (BookingSlot slot : slots)
+				if (slot.getDateRange().toEpochDay() <= day)
+					ended.add(slot.getId());
+		ended.forEach(this::remove);
+	}
+
+	public int size() {
+		return byId.size();
+	}
+}
@@ -2,19 +2,23 @@ package com.campsite.reservation.service.impl;
 
 import java.time.LocalDate;
 import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.PropertySource;
 import org.springframework.core.env.Environment;
+import org.springframework.data.util.Pair;
 import org.springframework.stereotype.Service;
 import org.springframework.util.Assert;
 
-import com.campsite.reservation.model.AvailabilityVO;
 import com.campsite.reservation.model.Booking;
 import com.campsite.reservation.model.DateRangeVO;
 import com.campsite.reservation.service.AvailabilityService;
 import com.campsite.reservation.service.BookingService;
 
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @Service
@@ -27,25 +31,59 @@ public class BookingServiceImpl implements BookingService {
 	@Autowired
 	Environment env;
 
+	@Autowired
+	ReservationMetrics metrics;
+
 	@Override
 	public Mono<Boolean> isBookingCreationAllowed(Booking booking) {
 		Assert.notNull(booking, "booking needs to be set");
 		DateRangeVO dateRange = booking.getDateRange();
+		checkSite(booking.getSiteId());
 		checkPreconditions(dateRange);
-		return availabilityService.calculateAvailability(dateRange)
-				.flatMap(availability -> isDateRangeInsideAvailability(dateRange, availability));
+		return availabilityService.isAvailable(booking.getSiteId(), dateRange, null);
 	}
 
 	@Override
-	public Mono<Boolean> isBookingModificationAllowed(String bookingId, DateRangeVO newDateRange) {
+	public Mono<Boolean> isBookingModificationAllowed(String siteId, String bookingId, DateRangeVO newDateRange) {
+		Assert.notNull(siteId, "siteId needs to be set");
 		Assert.notNull(bookingId, "bookingId needs to be set");
 		Assert.notNull(newDateRange, "newDateRange needs to be set");
 		checkPreconditions(newDateRange);
-		return availabilityService.calculateAvailabilityExcluding(bookingId, newDateRange)
-				.flatMap(availability -> isDateRangeInsideAvailability(newDateRange, availability));
+		return availabilityService.isAvailable(siteId, newDateRange, bookingId);
+	}
+
+	/**
+	 * Nights added lie outside the booking, so they are checked without excluding
+	 * it, before and after it one at a time.
+	 */
+	@Override
+	public Mono<Boolean> isBookingModificationAllowed(Booking booking, DateRangeVO newDateRange) {
+		Assert.notNull(booking, "booking needs to be set");
+		Assert.notNull(newDateRange, "newDateRange needs to be set");
+		checkPreconditions(newDateRange);
+		Pair<Optional<DateRangeVO>, Optional<DateRangeVO>> added = newDateRange.minus(booking.getDateRange());
+		return Flux.concat(Mono.justOrEmpty(added.getFirst()), Mono.justOrEmpty(added.getSecond()))
+				.concatMap(nights -> availabilityService.isAvailable(booking.getSiteId(), nights, null))
+				.all(available -> available);
 	}
 
-	private void checkPreconditions(DateRangeVO dateRange) {
+	@Override
+	public void checkPreconditions(DateRangeVO dateRange) {
+		metrics.time(ReservationMetrics.PRECONDITIONS, () -> checkPreconditionsFor(dateRange));
+	}
+
+	@Override
+	public List<String> getSites() {
+		return Arrays.asList(env.getProperty("reservation.sites", String[].class, new String[] { Booking.DEFAULT_SITE }));
+	}
+
+	@Override
+	public void checkSite(String siteId) {
+		if (!getSites().contains(siteId))
+			throw new IllegalArgumentException(String.format("Unknown site: %s", siteId));
+	}
+
+	private void checkPreconditionsFor(DateRangeVO dateRange) {
 		Integer maxBookingDays = env.getProperty("reservation.max-booking-days", Integer.class);
 		Integer minDaysAhead = env.getProperty("reservation.min-days-ahead", Integer.class);
 		Integer maxDaysAhead = env.getProperty("reservation.max-days-ahead", Integer.class);
@@ -61,13 +99,4 @@ public class BookingServiceImpl implements BookingService {
 					String.format("Minimum %d day(s) ahead of arrival and up to %d days in advance, for %s",
 							minDaysAhead, maxDaysAhead, dateRange));
 	}
-
-	private Mono<Boolean> isDateRangeInsideAvailability(DateRangeVO dateRange, AvailabilityVO availability) {
-		if (availability.getDatesAvailable() != null)
-			for (DateRangeVO dr : availability.getDatesAvailable()) {
-				if (dateRange.isInsideRange(dr))
-					return Mono.just(Boolean.TRUE);
-			}
-		return Mono.just(Boolean.FALSE);
-	}
 }
@@ -0,0 +1,132 @@
+package com.campsite.reservation.service.impl;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+import org.springframework.util.Assert;
+
+import com.campsite.reservation.exception.BookingNotFoundException;
+import com.campsite.reservation.model.AvailabilityVO;
+import com.campsite.reservation.model.DateRangeVO;
+import com.campsite.reservation.repository.BookingRepository;
+import com.campsite.reservation.service.AvailabilityService;
+import com.campsite.reservation.service.OccupancyService;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Lets up to reservation.capacity-per-night bookings share the same night of a
+ * site. Remaining capacity is kept in memory, one counter per night (see
+ * CapacityCounters), so availability is O(nights) no matter how many bookings
+ * there are, and nights are claimed for a booking by decrementing its counters.
+ * Enabled with reservation.availability-engine=capacity
+ * 
+ * Counters are loaded at startup and only changed by bookings made through this
+ * instance, so this is meant for single instance deployments.
+ */
+@Service
+@Primary
+@ConditionalOnProperty(name = "reservation.availability-engine", havingValue = "capacity")
+public class CapacityAvailabilityServiceImpl implements AvailabilityService, OccupancyService {
+
+	private static final Logger LOG = LoggerFactory.getLogger(CapacityAvailabilityServiceImpl.class);
+
+	/**
+	 * Used when reservation.max-days-ahead is -1 (no limit).
+	 */
+	private static final int DEFAULT_HORIZON_DAYS = 366;
+
+	@Autowired
+	Environment env;
+
+	@Autowired
+	BookingRepository bookingRepository;
+
+	@Autowired
+	ReservationMetrics metrics;
+
+	/**
+	 * Counters by site.
+	 */
+	private final Map<String, CapacityCounters> counters = new ConcurrentHashMap<String, CapacityCounters>();
+
+	private int capacity;
+
+	private int horizonDays;
+
+	@PostConstruct
+	public void load() {
+		capacity = env.getProperty("reservation.capacity-per-night", Integer.class, 1);
+		Integer maxDaysAhead = env.getProperty("reservation.max-days-ahead", Integer.class, -1);
+		Integer maxBookingDays = env.getProperty("reservation.max-booking-days", Integer.class, 0);
+		horizonDays = maxDaysAhead == -1 ? DEFAULT_HORIZON_DAYS : maxDaysAhead + maxBookingDays + 1;
+		LocalDate today = LocalDate.now();
+		bookingRepository.findSlotsEndingAfter(today)
+				.doOnNext(slot -> countersFor(slot.getSiteId()).take(slot.getDateRange(), today)).then().block();
+		LOG.info("load capacity counters capacity: {}, horizonDays: {}, sites: {}", capacity, horizonDays,
+				counters.size());
+	}
+
+	@Override
+	public Mono<AvailabilityVO> calculateAvailability(String siteId, DateRangeVO inThisDateRange) {
+		Assert.notNull(siteId, "siteId needs to be set");
+		Assert.notNull(inThisDateRange, "inThisDateRange needs to be set");
+		return Mono.fromSupplier(() -> metrics.time(ReservationMetrics.KERNEL,
+				() -> countersFor(siteId).availability(inThisDateRange, null, LocalDate.now())));
+	}
+
+	@Override
+	public Mono<AvailabilityVO> calculateAvailabilityExcluding(String siteId, String bookingId,
+			DateRangeVO inThisDateRange) {
+		Assert.notNull(siteId, "siteId needs to be set");
+		Assert.notNull(bookingId, "bookingId needs to be set");
+		Assert.notNull(inThisDateRange, "inThisDateRange needs to be set");
+		return bookingRepository.customFindById(bookingId)
+				.map(booking -> metrics.time(ReservationMetrics.KERNEL,
+						() -> countersFor(siteId).availability(inThisDateRange,
+								siteId.equals(booking.getSiteId()) ? booking.getDateRange() : null, LocalDate.now())))
+				// Cancelled meanwhile, it takes no capacity anymore
+				.onErrorResume(BookingNotFoundException.class, ex -> calculateAvailability(siteId, inThisDateRange));
+	}
+
+	@Override
+	public Flux<DateRangeVO> streamAvailability(String siteId, DateRangeVO inThisDateRange) {
+		Assert.notNull(siteId, "siteId needs to be set");
+		Assert.notNull(inThisDateRange, "inThisDateRange needs to be set");
+		return calculateAvailability(siteId, inThisDateRange)
+				.flatMapIterable(availability -> availability.getDatesAvailable());
+	}
+
+	@Override
+	public Mono<Boolean> claim(String siteId, String bookingId, List<LocalDate> nights) {
+		Assert.notNull(siteId, "siteId needs to be set");
+		Assert.notNull(bookingId, "bookingId needs to be set");
+		Assert.notNull(nights, "nights needs to be set");
+		return Mono.fromSupplier(() -> countersFor(siteId).claim(nights, LocalDate.now()));
+	}
+
+	@Override
+	public Mono<Void> release(String siteId, String bookingId, List<LocalDate> nights) {
+		Assert.notNull(siteId, "siteId needs to be set");
+		Assert.notNull(bookingId, "bookingId needs to be set");
+		Assert.notNull(nights, "nights needs to be set");
+		return Mono.fromRunnable(() -> countersFor(siteId).release(nights, LocalDate.now()));
+	}
+
+	private CapacityCounters countersFor(String siteId) {
+		return counters.computeIfAbsent(siteId,
+				site -> new CapacityCounters(capacity, horizonDays, LocalDate.now()));
+	}
+}
@@ -0,0 +1,146 @@
+package com.campsite.reservation.service.impl;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+import org.springframework.util.Assert;
+
+import com.campsite.reservation.model.AvailabilityVO;
+import com.campsite.reservation.model.CapacityRangeVO;
+import com.campsite.reservation.model.DateRangeVO;
+
+/**
+ * Remaining capacity for every night of a site, from today up to a fixed
+ * horizon, in one int per night indexed by days from today. Queries and claims
+ * are O(nights) no matter how many bookings there are.
+ * 
+ * Nights before today cannot be booked (no capacity), nights past the horizon
+ * cannot be booked yet (full capacity). Thread safe.
+ */
+public class CapacityCounters {
+
+	private final int capacity;
+
+	private final int[] remaining;
+
+	/**
+	 * Epoch day for remaining[0], moved forward as days go by.
+	 */
+	private long firstDay;
+
+	public CapacityCounters(int capacity, int horizonDays, LocalDate today) {
+		Assert.isTrue(capacity > 0, "capacity needs to be greater than 0");
+		Assert.isTrue(horizonDays > 0, "horizonDays needs to be greater than 0");
+		this.capacity = capacity;
+		this.remaining = new int[horizonDays];
+		this.firstDay = today.toEpochDay();
+		Arrays.fill(remaining, capacity);
+	}
+
+	/**
+	 * Takes one unit of capacity for every given night, or for none of them if any
+	 * night has no capacity left (or is out of the horizon).
+	 */
+	public synchronized boolean claim(List<LocalDate> nights, LocalDate today) {
+		rollTo(today);
+		for (LocalDate night : nights) {
+			int index = indexOf(night);
+			if (index < 0 || index >= remaining.length || remaining[index] <= 0)
+				return false;
+		}
+		for (LocalDate night : nights)
+			remaining[indexOf(night)]--;
+		return true;
+	}
+
+	/**
+	 * Gives back one unit of capacity for every given night inside the horizon.
+	 */
+	public synchronized void release(List<LocalDate> nights, LocalDate today) {
+		rollTo(today);
+		for (LocalDate night : nights) {
+			int index = indexOf(night);
+			if (index >= 0 && index < remaining.length && remaining[index] < capacity)
+				remaining[index]++;
+		}
+	}
+
+	/**
+	 * Takes one unit of capacity for every night of an existing booking, with no
+	 * checks, used to load bookings at startup.
+	 */
+	public synchronized void take(DateRangeVO dateRange, LocalDate today) {
+		rollTo(today);
+		int from = Math.max(0, indexOf(dateRange.getFrom()));
+		int to = Math.min(remaining.length, indexOf(dateRange.getTo()));
+		for (int index = from; index < to; index++)
+			remaining[index]--;
+	}
+
+	/**
+	 * Runs of nights with the same remaining capacity (greater than 0) inside the
+	 * given date range. Nights in excludedDateRange get one unit back, as if that
+	 * booking was not there.
+	 */
+	public AvailabilityVO availability(DateRangeVO inThisDateRange, DateRangeVO excludedDateRange, LocalDate today) {
+		AvailabilityVO.Builder builder = AvailabilityVO.builder(inThisDateRange);
+		long first = inThisDateRange.fromEpochDay();
+		long last = inThisDateRange.toEpochDay();
+		long excludedFrom = excludedDateRange != null ? excludedDateRange.fromEpochDay() : 0;
+		long excludedTo = excludedDateRange != null ? excludedDateRange.toEpochDay() : 0;
+		synchronized (this) {
+			rollTo(today);
+			long runStart = first;
+			int runRemaining = remainingAt(first, excludedFrom, excludedTo);
+			for (long day = first + 1; day <= last; day++) {
+				int dayRemaining = day < last ? remainingAt(day, excludedFrom, excludedTo) : -1;
+				if (dayRemaining != runRemaining) {
+					if (runRemaining > 0)
+						builder.addRange(new CapacityRangeVO(LocalDate.ofEpochDay(runStart), LocalDate.ofEpochDay(day),
+								runRemaining));
+					runStart = day;
+					runRemaining = dayRemaining;
+				}
+			}
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Nights in [excludedFrom, excludedTo) get one unit back.
+	 */
+	private int remainingAt(long day, long excludedFrom, long excludedTo) {
+		int remaining = remainingAt(day);
+		if (day >= firstDay && day >= excludedFrom && day < excludedTo)
+			return Math.min(capacity, remaining + 1);
+		return remaining;
+	}
+
+	private int remainingAt(long day) {
+		long index = day - firstDay;
+		if (index < 0)
+			return 0;
+		if (index >= remaining.length)
+			return capacity;
+		return Math.max(0, remaining[(int) index]);
+	}
+
+	private int indexOf(LocalDate date) {
+		return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, date.toEpochDay() - firstDay));
+	}
+
+	/**
+	 * Moves the first day forward to today, past nights are dropped and the new
+	 * ones at the end start with full capacity.
+	 */
+	private void rollTo(LocalDate today) {
+		long days = today.toEpochDay() - firstDay;
+		if (days <= 0)
+			return;
+		int shift = (int) Math.min(days, remaining.length);
+		System.arraycopy(remaining, shift, remaining, 0, remaining.length - shift);
+		Arrays.fill(remaining, remaining.length - shift, remaining.length, capacity);
+		firstDay = today.toEpochDay();
+	}
+}
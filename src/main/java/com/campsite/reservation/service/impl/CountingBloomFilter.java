@@ -0,0 +1,115 @@
+package com.campsite.reservation.service.impl;
+
+import org.springframework.util.Assert;
+
+/**
+ * Counting Bloom filter of strings: mightContain never returns false for a
+ * string added (and not removed since), and returns true for a string never
+ * added with about the false positive probability it was sized for, as long as
+ * no more strings than expected are kept.
+ *
+ * One byte counter per slot instead of one bit, so strings can be removed.
+ * Counters reaching the maximum are never decremented again (only false
+ * positives can come out of it, never a false negative). Only strings added can
+ * be removed, otherwise other strings could be reported as missing. Thread
+ * safe.
+ */
+public class CountingBloomFilter {
+
+	private static final int MAX_COUNT = 0xFF;
+
+	private final byte[] counters;
+
+	private final int hashes;
+
+	private long size;
+
+	public CountingBloomFilter(long expectedStrings, double falsePositiveProbability) {
+		Assert.isTrue(expectedStrings > 0, "expectedStrings needs to be greater than 0");
+		Assert.isTrue(falsePositiveProbability > 0 && falsePositiveProbability < 1,
+				"falsePositiveProbability needs to be between 0 and 1");
+		long slots = (long) Math
+				.ceil(-expectedStrings * Math.log(falsePositiveProbability) / (Math.log(2) * Math.log(2)));
+		Assert.isTrue(slots <= Integer.MAX_VALUE, "Too many expectedStrings for the falsePositiveProbability");
+		this.counters = new byte[(int) slots];
+		this.hashes = Math.max(1, (int) Math.round((double) slots / expectedStrings * Math.log(2)));
+	}
+
+	public synchronized void add(String value) {
+		long hash = hash(value);
+		for (int i = 0; i < hashes; i++) {
+			int slot = slot(hash, i);
+			int count = counters[slot] & MAX_COUNT;
+			if (count < MAX_COUNT)
+				counters[slot] = (byte) (count + 1);
+		}
+		size++;
+	}
+
+	public synchronized void remove(String value) {
+		long hash = hash(value);
+		for (int i = 0; i < hashes; i++) {
+			int slot = slot(hash, i);
+			int count = counters[slot] & MAX_COUNT;
+			if (count > 0 && count < MAX_COUNT)
+				counters[slot] = (byte) (count - 1);
+		}
+		size--;
+	}
+
+	public synchronized boolean mightContain(String value) {
+		long hash = hash(value);
+		for (int i = 0; i < hashes; i++)
+			if (counters[slot(hash, i)] == 0)
+				return false;
+		return true;
+	}
+
+	/**
+	 * Strings kept, this is: added and not removed.
+	 */
+	public synchronized long size() {
+		return size;
+	}
+
+	/**
+	 * Probability of mightContain returning true for a string never added, given
+	 * the number of strings kept: (1 - e^(-hashes * size / slots))^hashes
+	 */
+	public synchronized double falsePositiveProbability() {
+		return Math.pow(1 - Math.exp(-(double) hashes * size / counters.length), hashes);
+	}
+
+	public long sizeInBytes() {
+		return counters.length;
+	}
+
+	public int hashes() {
+		return hashes;
+	}
+
+	/**
+	 * Slot for the i-th hash, derived from the two halves of one 64 bit hash
+	 * (Kirsch-Mitzenmacher).
+	 */
+	private int slot(long hash, int i) {
+		int h1 = (int) hash;
+		int h2 = (int) (hash >>> 32);
+		return Math.floorMod(h1 + i * h2, counters.length);
+	}
+
+	/**
+	 * 64 bit FNV-1a over the chars, with a final mix so both halves are spread.
+	 */
+	private static long hash(String value) {
+		long hash = 0xcbf29ce484222325L;
+		for (int i = 0; i < value.length(); i++) {
+			hash ^= value.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+}
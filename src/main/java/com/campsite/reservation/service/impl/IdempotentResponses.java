@@ -0,0 +1,167 @@
+package com.campsite.reservation.service.impl;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.Environment;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+import org.springframework.util.DigestUtils;
+
+import com.campsite.reservation.exception.IdempotencyKeyInUseException;
+import com.campsite.reservation.model.IdempotentResponse;
+import com.campsite.reservation.repository.IdempotentResponseRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import reactor.core.publisher.Mono;
+
+/**
+ * Booking ids made for each Idempotency-Key, kept in the 'idempotent_response'
+ * collection for reservation.idempotency.ttl-seconds, with the most recently
+ * used ones also kept in memory (see reservation.idempotency.maximum-size).
+ *
+ * The key is claimed in the collection (stored as pending) before the booking
+ * is made, so only one request makes it even across instances. Requests with a
+ * key being processed by this instance wait for the first one and get its
+ * result, the ones with a key being processed elsewhere get
+ * IdempotencyKeyInUseException. Keys are only replayed for the same request,
+ * and failed requests are not stored, they can be retried with the same key.
+ * Keys left pending (ie: the instance stopped) are taken over after
+ * reservation.idempotency.pending-timeout-seconds.
+ */
+@Component
+public class IdempotentResponses {
+
+	private static final Logger LOG = LoggerFactory.getLogger(IdempotentResponses.class);
+
+	private final IdempotentResponseRepository repository;
+
+	private final Duration ttl;
+
+	private final Duration pendingTimeout;
+
+	private final Cache<String, IdempotentResponse> recent;
+
+	private final Map<String, Mono<IdempotentResponse>> inFlight = new ConcurrentHashMap<String, Mono<IdempotentResponse>>(
+			64);
+
+	public IdempotentResponses(Environment env, MeterRegistry meterRegistry,
+			IdempotentResponseRepository repository) {
+		this.repository = repository;
+		this.ttl = Duration
+				.ofSeconds(env.getProperty("reservation.idempotency.ttl-seconds", Long.class, 86400L));
+		this.pendingTimeout = Duration
+				.ofSeconds(env.getProperty("reservation.idempotency.pending-timeout-seconds", Long.class, 60L));
+		long maximumSize = env.getProperty("reservation.idempotency.maximum-size", Long.class, 10000L);
+		this.recent = Caffeine.newBuilder().maximumSize(maximumSize).expireAfterWrite(ttl).recordStats().build();
+		CaffeineCacheMetrics.monitor(meterRegistry, recent, "idempotency");
+	}
+
+	@PostConstruct
+	public void ensureIndexes() {
+		LOG.info("ensureIndexes idempotent_response: {}", repository.ensureIndexes(ttl).block());
+	}
+
+	/**
+	 * Returns the booking id stored for the given key, or the one made by
+	 * reservation if there is none (stored for the next requests with that key).
+	 *
+	 * @param request the request body, a key used for a different one is rejected
+	 */
+	public Mono<String> bookingIdFor(String key, String request, Supplier<Mono<String>> reservation) {
+		Assert.hasText(key, "key needs to be set");
+		Assert.notNull(request, "request needs to be set");
+		Assert.notNull(reservation, "reservation needs to be set");
+		String requestHash = DigestUtils.md5DigestAsHex(request.getBytes(StandardCharsets.UTF_8));
+		return Mono.defer(() -> {
+			IdempotentResponse stored = recent.getIfPresent(key);
+			if (stored != null)
+				return Mono.just(replay(stored, requestHash));
+			return inFlight.computeIfAbsent(key, k -> newFlight(k, requestHash, reservation))
+					.map(response -> replay(response, requestHash));
+		});
+	}
+
+	/**
+	 * Claims the key, and only makes the reservation if it was claimed. Removed as
+	 * soon as it is done (if it was not removed already).
+	 */
+	private Mono<IdempotentResponse> newFlight(String key, String requestHash,
+			Supplier<Mono<String>> reservation) {
+		AtomicReference<Mono<IdempotentResponse>> flight = new AtomicReference<Mono<IdempotentResponse>>();
+		flight.set(claim(key, requestHash)
+				.flatMap(claimed -> claimed.isPending() ? reserve(claimed, reservation) : Mono.just(claimed))
+				.doOnNext(response -> recent.put(key, response))
+				.doFinally(signal -> inFlight.remove(key, flight.get())).cache());
+		return flight.get();
+	}
+
+	/**
+	 * Returns the key as pending if this request claimed it, or as stored if it was
+	 * already completed.
+	 */
+	private Mono<IdempotentResponse> claim(String key, String requestHash) {
+		return repository.insert(new IdempotentResponse(key, requestHash, null))
+				.onErrorResume(DuplicateKeyException.class, ex -> repository
+						.takeOver(key, requestHash, Date.from(Instant.now().minus(pendingTimeout)))
+						.doOnNext(takenOver -> LOG.warn("claim key: {} taken over, left pending for more than: {}",
+								key, pendingTimeout))
+						.switchIfEmpty(Mono.defer(() -> stored(key, requestHash))));
+	}
+
+	/**
+	 * The key as completed by another request. Pending keys (or removed since,
+	 * the other request failed) can be retried later.
+	 */
+	private Mono<IdempotentResponse> stored(String key, String requestHash) {
+		return repository.findById(key).switchIfEmpty(Mono.error(() -> new IdempotencyKeyInUseException(key)))
+				.doOnNext(stored -> {
+					if (stored.isPending()) {
+						checkSameRequest(stored, requestHash);
+						throw new IdempotencyKeyInUseException(key);
+					}
+				});
+	}
+
+	/**
+	 * The key is released if the reservation fails, so it can be retried.
+	 */
+	private Mono<IdempotentResponse> reserve(IdempotentResponse claimed, Supplier<Mono<String>> reservation) {
+		String key = claimed.getKey();
+		return Mono.defer(reservation)
+				.onErrorResume(ex -> repository.deleteById(key).then(Mono.<String>error(ex)))
+				.flatMap(bookingId -> repository.complete(key, bookingId).switchIfEmpty(Mono.fromSupplier(() -> {
+					LOG.warn("reserve key: {} no longer pending, booking {} not stored", key, bookingId);
+					return new IdempotentResponse(key, claimed.getRequestHash(), bookingId);
+				})));
+	}
+
+	private static String replay(IdempotentResponse response, String requestHash) {
+		checkSameRequest(response, requestHash);
+		return response.getBookingId();
+	}
+
+	/**
+	 * Keys stored before request hashes were in place are taken as used for any
+	 * request.
+	 */
+	private static void checkSameRequest(IdempotentResponse response, String requestHash) {
+		if (response.getRequestHash() != null && !response.getRequestHash().equals(requestHash))
+			throw new IllegalArgumentException(
+					String.format("Idempotency-Key '%s' was already used for a different request", response.getKey()));
+	}
+}
@@ -0,0 +1,157 @@
+package com.campsite.reservation.service.impl;
+
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.util.Assert;
+
+import com.campsite.reservation.event.BookingEvent;
+import com.campsite.reservation.model.AvailabilityVO;
+import com.campsite.reservation.model.BookingSlot;
+import com.campsite.reservation.model.DateRangeVO;
+import com.campsite.reservation.repository.BookingRepository;
+import com.campsite.reservation.service.AvailabilityService;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Keeps all current and future bookings in memory, loaded at startup and kept
+ * up to date with every BookingEvent, so availability is calculated without
+ * going to the database. Enabled with reservation.availability-engine=in-memory
+ * 
+ * Only bookings made through this instance are seen after startup, so this is
+ * meant for single instance deployments.
+ */
+@Service
+@ConditionalOnProperty(name = "reservation.availability-engine", havingValue = "in-memory")
+public class InMemoryAvailabilityServiceImpl implements AvailabilityService {
+
+	private static final Logger LOG = LoggerFactory.getLogger(InMemoryAvailabilityServiceImpl.class);
+
+	@Autowired
+	BookingRepository bookingRepository;
+
+	@Autowired
+	ReservationMetrics metrics;
+
+	/**
+	 * One index per site.
+	 */
+	private final Map<String, BookingIntervalIndex> indexes = new HashMap<String, BookingIntervalIndex>();
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	@PostConstruct
+	public void load() {
+		bookingRepository.findSlotsEndingAfter(LocalDate.now()).doOnNext(this::put).then().block();
+		LOG.info("load bookings in memory: {}, sites: {}",
+				indexes.values().stream().mapToInt(BookingIntervalIndex::size).sum(), indexes.size());
+	}
+
+	@Override
+	public Mono<AvailabilityVO> calculateAvailability(String siteId, DateRangeVO inThisDateRange) {
+		Assert.notNull(siteId, "siteId needs to be set");
+		Assert.notNull(inThisDateRange, "inThisDateRange needs to be set");
+		return Mono.fromSupplier(
+				() -> metrics.time(ReservationMetrics.KERNEL, () -> calculateFor(siteId, inThisDateRange, null)));
+	}
+
+	@Override
+	public Mono<AvailabilityVO> calculateAvailabilityExcluding(String siteId, String bookingId,
+			DateRangeVO inThisDateRange) {
+		Assert.notNull(siteId, "siteId needs to be set");
+		Assert.notNull(bookingId, "bookingId needs to be set");
+		Assert.notNull(inThisDateRange, "inThisDateRange needs to be set");
+		return Mono.fromSupplier(
+				() -> metrics.time(ReservationMetrics.KERNEL, () -> calculateFor(siteId, inThisDateRange, bookingId)));
+	}
+
+	@Override
+	public Flux<DateRangeVO> streamAvailability(String siteId, DateRangeVO inThisDateRange) {
+		Assert.notNull(siteId, "siteId needs to be set");
+		Assert.notNull(inThisDateRange, "inThisDateRange needs to be set");
+		return calculateAvailability(siteId, inThisDateRange)
+				.flatMapIterable(availability -> availability.getDatesAvailable());
+	}
+
+	@Override
+	public Mono<Boolean> isAvailable(String siteId, DateRangeVO dateRange, String excludingBookingId) {
+		Assert.notNull(siteId, "siteId needs to be set");
+		Assert.notNull(dateRange, "dateRange needs to be set");
+		return Mono.fromSupplier(() -> metrics.time(ReservationMetrics.KERNEL,
+				() -> !anyOverlapping(siteId, dateRange, excludingBookingId)));
+	}
+
+	@EventListener
+	public void onBookingEvent(BookingEvent event) {
+		LOG.debug("onBookingEvent event: {}", event);
+		// Holds are not honoured by this engine
+		if (event.getType() == BookingEvent.Type.HELD)
+			return;
+		if (event.getType() == BookingEvent.Type.CANCELLED)
+			remove(event.getBooking().getSiteId(), event.getBooking().getId());
+		else
+			put(BookingSlot.from(event.getBooking()));
+	}
+
+	private AvailabilityVO calculateFor(String siteId, DateRangeVO inThisDateRange, String excludingBookingId) {
+		lock.readLock().lock();
+		try {
+			BookingIntervalIndex index = indexes.get(siteId);
+			long[] scanned = new long[1];
+			List<BookingSlot> overlapping = index != null
+					? index.overlapping(inThisDateRange, excludingBookingId, count -> scanned[0] = count)
+					: Collections.<BookingSlot>emptyList();
+			metrics.recordBookings(scanned[0], overlapping.size());
+			return AvailabilityGaps.fold(inThisDateRange, overlapping);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	private boolean anyOverlapping(String siteId, DateRangeVO dateRange, String excludingBookingId) {
+		lock.readLock().lock();
+		try {
+			BookingIntervalIndex index = indexes.get(siteId);
+			return index != null && index.anyOverlapping(dateRange, excludingBookingId);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	private void put(BookingSlot slot) {
+		lock.writeLock().lock();
+		try {
+			BookingIntervalIndex index = indexes.computeIfAbsent(slot.getSiteId(), site -> new BookingIntervalIndex());
+			index.put(slot);
+			index.removeEndedBefore(LocalDate.now());
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	private void remove(String siteId, String bookingId) {
+		lock.writeLock().lock();
+		try {
+			BookingIntervalIndex index = indexes.get(siteId);
+			if (index != null)
+				index.remove(bookingId);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+}
@@ -0,0 +1,139 @@
+package com.campsite.reservation.service.impl;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+import org.springframework.util.Assert;
+
+import com.campsite.reservation.model.AvailabilityVO;
+import com.campsite.reservation.model.DateRangeVO;
+import com.campsite.reservation.model.MonthOccupancy;
+import com.campsite.reservation.model.Night;
+import com.campsite.reservation.repository.BookingRepository;
+import com.campsite.reservation.repository.MonthOccupancyRepository;
+import com.campsite.reservation.service.AvailabilityService;
+import com.campsite.reservation.service.OccupancyService;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Keeps taken nights in one 'month_occupancy' document per site and calendar
+ * month (see MonthOccupancy), so availability reads one document per month in
+ * the requested date range, and nights are claimed for a booking with
+ * conditional $bit updates. Enabled with
+ * reservation.availability-engine=month
+ * 
+ * Months from the current one on are checked against the bookings at startup
+ * (see OccupancyReconciler), so this engine can be turned on or off at any
+ * time.
+ */
+@Service
+@Primary
+@ConditionalOnProperty(name = "reservation.availability-engine", havingValue = "month")
+public class MonthOccupancyServiceImpl implements AvailabilityService, OccupancyService {
+
+	private static final Logger LOG = LoggerFactory.getLogger(MonthOccupancyServiceImpl.class);
+
+	@Autowired
+	MonthOccupancyRepository monthOccupancyRepository;
+
+	@Autowired
+	BookingRepository bookingRepository;
+
+	@Autowired
+	ReservationMetrics metrics;
+
+	@PostConstruct
+	public void load() {
+		LOG.info("ensureIndexes month_occupancy: {}", monthOccupancyRepository.ensureIndexes().block());
+		new OccupancyReconciler(bookingRepository, this).reconcile(today -> monthOccupancyRepository
+				.findFrom(YearMonth.from(today))
+				.flatMapIterable(month -> month.nightsTaken().tailMap(today).entrySet().stream()
+						.map(night -> new Night(month.getSiteId(), night.getKey(), night.getValue()))
+						.collect(Collectors.toList())));
+	}
+
+	@Override
+	public Mono<AvailabilityVO> calculateAvailability(String siteId, DateRangeVO inThisDateRange) {
+		Assert.notNull(siteId, "siteId needs to be set");
+		Assert.notNull(inThisDateRange, "inThisDateRange needs to be set");
+		return calculateFor(siteId, inThisDateRange, null);
+	}
+
+	@Override
+	public Mono<AvailabilityVO> calculateAvailabilityExcluding(String siteId, String bookingId,
+			DateRangeVO inThisDateRange) {
+		Assert.notNull(siteId, "siteId needs to be set");
+		Assert.notNull(bookingId, "bookingId needs to be set");
+		Assert.notNull(inThisDateRange, "inThisDateRange needs to be set");
+		return calculateFor(siteId, inThisDateRange, bookingId);
+	}
+
+	@Override
+	public Flux<DateRangeVO> streamAvailability(String siteId, DateRangeVO inThisDateRange) {
+		Assert.notNull(siteId, "siteId needs to be set");
+		Assert.notNull(inThisDateRange, "inThisDateRange needs to be set");
+		return calculateAvailability(siteId, inThisDateRange)
+				.flatMapIterable(availability -> availability.getDatesAvailable());
+	}
+
+	@Override
+	public Mono<Boolean> claim(String siteId, String bookingId, List<LocalDate> nights) {
+		Assert.notNull(siteId, "siteId needs to be set");
+		Assert.notNull(bookingId, "bookingId needs to be set");
+		Assert.notNull(nights, "nights needs to be set");
+		return monthOccupancyRepository.claimNights(siteId, bookingId, nights);
+	}
+
+	@Override
+	public Mono<Void> release(String siteId, String bookingId, List<LocalDate> nights) {
+		Assert.notNull(siteId, "siteId needs to be set");
+		Assert.notNull(bookingId, "bookingId needs to be set");
+		Assert.notNull(nights, "nights needs to be set");
+		return monthOccupancyRepository.releaseNights(siteId, bookingId, nights);
+	}
+
+	private Mono<AvailabilityVO> calculateFor(String siteId, DateRangeVO inThisDateRange, String excludingBookingId) {
+		return metrics
+				.time(ReservationMetrics.QUERY, monthOccupancyRepository.findByDateRange(siteId, inThisDateRange)
+						.collectMap(month -> YearMonth.from(month.getMonth())))
+				.map(months -> metrics.time(ReservationMetrics.KERNEL,
+						() -> freeRuns(inThisDateRange, months, excludingBookingId)));
+	}
+
+	/**
+	 * Walks the nights of the date range once, months with no document have all
+	 * their nights free.
+	 */
+	private static AvailabilityVO freeRuns(DateRangeVO inThisDateRange, Map<YearMonth, MonthOccupancy> months,
+			String excludingBookingId) {
+		AvailabilityVO.Builder builder = AvailabilityVO.builder(inThisDateRange);
+		LocalDate runFrom = null;
+		for (LocalDate night = inThisDateRange.getFrom(); night.isBefore(inThisDateRange.getTo()); night = night
+				.plusDays(1)) {
+			MonthOccupancy month = months.get(YearMonth.from(night));
+			boolean taken = month != null && month.isTaken(night, excludingBookingId);
+			if (!taken && runFrom == null)
+				runFrom = night;
+			else if (taken && runFrom != null) {
+				builder.addRange(runFrom, night);
+				runFrom = null;
+			}
+		}
+		if (runFrom != null)
+			builder.addRange(runFrom, inThisDateRange.getTo());
+		return builder.build();
+	}
+}
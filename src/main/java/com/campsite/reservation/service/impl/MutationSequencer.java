@@ -0,0 +1,293 @@
+package com.campsite.reservation.service.impl;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.env.Environment;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+
+import com.campsite.reservation.exception.WriteQueueFullException;
+import com.campsite.reservation.model.Booking;
+import com.campsite.reservation.model.BookingSlot;
+import com.campsite.reservation.model.BookingWrite;
+import com.campsite.reservation.model.DateRangeVO;
+import com.campsite.reservation.repository.BookingRepository;
+import com.campsite.reservation.service.OccupancyService;
+
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+
+/**
+ * Single writer for bookings, enabled with reservation.write-mode=sequenced
+ *
+ * Reservations made, modified and cancelled go into a bounded queue per site
+ * (see reservation.sequencer.queue-capacity), drained by one sequencer at a
+ * time. The sequencer checks each one against the bookings it keeps in memory
+ * for that site, and saves the accepted ones in one bulkWrite. Everything queued
+ * while a bulkWrite is running goes into the next one (up to
+ * reservation.sequencer.batch-size), so the busier a site is the bigger the
+ * batches get.
+ *
+ * Only writes made through this instance are seen after startup, so this is
+ * meant for single instance deployments.
+ */
+@Component
+@ConditionalOnProperty(name = "reservation.write-mode", havingValue = "sequenced")
+public class MutationSequencer {
+
+	private static final Logger LOG = LoggerFactory.getLogger(MutationSequencer.class);
+
+	@Autowired
+	BookingRepository bookingRepository;
+
+	@Autowired
+	ReservationMetrics metrics;
+
+	/**
+	 * Must not be set, nights claimed elsewhere are not seen by the sequencer.
+	 */
+	@Autowired(required = false)
+	OccupancyService occupancyService;
+
+	private final int queueCapacity;
+
+	private final int batchSize;
+
+	private final Map<String, Partition> partitions = new ConcurrentHashMap<String, Partition>();
+
+	public MutationSequencer(Environment env) {
+		this.queueCapacity = env.getProperty("reservation.sequencer.queue-capacity", Integer.class, 1024);
+		this.batchSize = env.getProperty("reservation.sequencer.batch-size", Integer.class, 128);
+		Assert.isTrue(queueCapacity > 0, "reservation.sequencer.queue-capacity needs to be greater than 0");
+		Assert.isTrue(batchSize > 0, "reservation.sequencer.batch-size needs to be greater than 0");
+	}
+
+	@PostConstruct
+	public void load() {
+		Assert.state(occupancyService == null,
+				"reservation.write-mode=sequenced cannot be used with reservation.occupancy-mode or an availability engine claiming nights");
+		bookingRepository.findSlotsEndingAfter(LocalDate.now())
+				.doOnNext(slot -> partition(slot.getSiteId()).view.put(slot)).then().block();
+		LOG.info("load bookings in sequencer: {}, sites: {}",
+				partitions.values().stream().mapToInt(partition -> partition.view.size()).sum(), partitions.size());
+	}
+
+	/**
+	 * Saves the booking with a new id, if none of its nights is taken. Throws
+	 * IllegalArgumentException otherwise.
+	 */
+	public Mono<Booking> create(Booking booking) {
+		Assert.notNull(booking, "booking needs to be set");
+		Booking toSave = new Booking(new ObjectId().toHexString(), booking.getSiteId(), booking.getEmail(),
+				booking.getFullName(), booking.getDateRange());
+		return submit(new Mutation(new BookingWrite(BookingWrite.Type.INSERT, toSave), null));
+	}
+
+	/**
+	 * Saves the booking with the new date range, if none of its new nights is
+	 * taken by other bookings. Throws IllegalArgumentException otherwise, or
+	 * OptimisticLockingFailureException if the booking was modified or cancelled
+	 * since it was read.
+	 */
+	public Mono<Booking> modify(Booking booking, DateRangeVO newDateRange) {
+		Assert.notNull(booking, "booking needs to be set");
+		Assert.notNull(newDateRange, "newDateRange needs to be set");
+		return submit(new Mutation(new BookingWrite(BookingWrite.Type.UPDATE, Booking.from(booking, newDateRange)),
+				booking.getDateRange()));
+	}
+
+	/**
+	 * Deletes the booking. Throws OptimisticLockingFailureException if the booking
+	 * was modified or cancelled since it was read.
+	 */
+	public Mono<Booking> cancel(Booking booking) {
+		Assert.notNull(booking, "booking needs to be set");
+		return submit(new Mutation(new BookingWrite(BookingWrite.Type.DELETE, booking), booking.getDateRange()));
+	}
+
+	private Mono<Booking> submit(Mutation mutation) {
+		return Mono.defer(() -> {
+			String siteId = mutation.write.getBooking().getSiteId();
+			Partition partition = partition(siteId);
+			if (!partition.queue.offer(mutation))
+				return Mono.error(new WriteQueueFullException(siteId));
+			drain(partition);
+			return mutation.result;
+		});
+	}
+
+	private Partition partition(String siteId) {
+		return partitions.computeIfAbsent(siteId, site -> new Partition(site, queueCapacity));
+	}
+
+	/**
+	 * Takes the next batch, unless another batch of the same site is being saved.
+	 * Called again once the batch is saved.
+	 */
+	private void drain(Partition partition) {
+		if (!partition.draining.compareAndSet(false, true))
+			return;
+		List<Mutation> batch = new ArrayList<Mutation>(Math.min(batchSize, partition.queue.size()));
+		Mutation mutation;
+		while (batch.size() < batchSize && (mutation = partition.queue.poll()) != null)
+			batch.add(mutation);
+		if (batch.isEmpty()) {
+			partition.draining.set(false);
+			// Something may have been queued between the poll and the flag cleared
+			if (!partition.queue.isEmpty())
+				drain(partition);
+			return;
+		}
+		// Deferred so an exception thrown building the commit still clears 'draining'
+		Mono.defer(() -> commit(partition, batch)).onErrorResume(ex -> {
+			LOG.error("commit failed for site: {}, mutations: {}", partition.siteId, batch.size(), ex);
+			batch.stream().filter(pending -> !pending.result.isTerminated())
+					.forEach(pending -> pending.result.onError(notSaved()));
+			return reload(partition);
+		}).doFinally(signal -> {
+			partition.draining.set(false);
+			drain(partition);
+		}).subscribe();
+	}
+
+	/**
+	 * Mutations are checked in order, each one against the bookings left by the
+	 * ones accepted before it. If the bulkWrite fails the bookings kept for the
+	 * site are loaded again, since the accepted ones may not have been saved.
+	 */
+	private Mono<Void> commit(Partition partition, List<Mutation> batch) {
+		LocalDate today = LocalDate.now();
+		partition.view.removeEndedBefore(today);
+		List<Mutation> accepted = new ArrayList<Mutation>(batch.size());
+		for (Mutation mutation : batch) {
+			RuntimeException rejected = partition.apply(mutation, today);
+			if (rejected != null)
+				mutation.result.onError(rejected);
+			else
+				accepted.add(mutation);
+		}
+		if (accepted.isEmpty())
+			return Mono.empty();
+		List<BookingWrite> writes = accepted.stream().map(mutation -> mutation.write).collect(Collectors.toList());
+		return metrics.time(ReservationMetrics.SAVE, bookingRepository.bulkWrite(writes)).flatMap(applied -> {
+			for (int i = 0; i < accepted.size(); i++)
+				if (i < applied)
+					accepted.get(i).succeed();
+				else
+					accepted.get(i).result.onError(notSaved());
+			return applied < accepted.size() ? reload(partition) : Mono.<Void>empty();
+		}).onErrorResume(ex -> {
+			LOG.error("commit bulkWrite failed for site: {}, writes: {}", partition.siteId, writes.size(), ex);
+			accepted.forEach(mutation -> mutation.result.onError(notSaved()));
+			return reload(partition);
+		});
+	}
+
+	private Mono<Void> reload(Partition partition) {
+		BookingIntervalIndex view = new BookingIntervalIndex();
+		return bookingRepository.findSlotsEndingAfter(LocalDate.now())
+				.filter(slot -> slot.getSiteId().equals(partition.siteId)).doOnNext(view::put).then()
+				.doOnSuccess(done -> {
+					partition.view = view;
+					LOG.info("reload bookings in sequencer for site: {}, bookings: {}", partition.siteId,
+							view.size());
+				}).onErrorResume(ex -> {
+					LOG.error("reload failed for site: {}", partition.siteId, ex);
+					return Mono.empty();
+				});
+	}
+
+	private static IllegalStateException notSaved() {
+		return new IllegalStateException("Reservation could not be saved, please retry!");
+	}
+
+	/**
+	 * Bookings kept for one site and the mutations waiting for it. The view is
+	 * only used by whoever set 'draining'.
+	 */
+	private static final class Partition {
+
+		private final String siteId;
+
+		private final Queue<Mutation> queue;
+
+		private final AtomicBoolean draining = new AtomicBoolean();
+
+		private BookingIntervalIndex view = new BookingIntervalIndex();
+
+		private Partition(String siteId, int queueCapacity) {
+			this.siteId = siteId;
+			this.queue = new ArrayBlockingQueue<Mutation>(queueCapacity);
+		}
+
+		/**
+		 * Returns why the mutation was rejected, or null if it was accepted and applied
+		 * to the view.
+		 */
+		private RuntimeException apply(Mutation mutation, LocalDate today) {
+			Booking booking = mutation.write.getBooking();
+			BookingSlot current = view.get(booking.getId());
+			// Bookings still taking some night are all in the view, a missing one was
+			// cancelled
+			if (mutation.previous != null && (current != null ? !current.getDateRange().equals(mutation.previous)
+					: mutation.previous.getTo().isAfter(today)))
+				return new OptimisticLockingFailureException(String.format(
+						"Booking id '%s' was modified or cancelled concurrently, please retry!", booking.getId()));
+			if (mutation.write.getType() == BookingWrite.Type.DELETE) {
+				view.remove(booking.getId());
+				return null;
+			}
+			if (view.anyOverlapping(booking.getDateRange(), booking.getId()))
+				return new IllegalArgumentException("No availability");
+			view.put(BookingSlot.from(booking));
+			return null;
+		}
+	}
+
+	private static final class Mutation {
+
+		private final BookingWrite write;
+
+		/**
+		 * Date range of the booking when it was read, null for new bookings.
+		 */
+		private final DateRangeVO previous;
+
+		private final MonoProcessor<Booking> result = MonoProcessor.create();
+
+		private Mutation(BookingWrite write, DateRangeVO previous) {
+			this.write = write;
+			this.previous = previous;
+		}
+
+		private void succeed() {
+			Booking booking = write.getBooking();
+			switch (write.getType()) {
+			case INSERT:
+				result.onNext(booking.withVersion(0L));
+				break;
+			case UPDATE:
+				result.onNext(booking.withVersion(booking.getVersion() != null ? booking.getVersion() + 1 : 1L));
+				break;
+			default:
+				result.onNext(booking);
+			}
+		}
+	}
+}
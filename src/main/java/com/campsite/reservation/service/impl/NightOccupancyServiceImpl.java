@@ -0,0 +1,61 @@
+package com.campsite.reservation.service.impl;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.util.Assert;
+
+import com.campsite.reservation.repository.BookingRepository;
+import com.campsite.reservation.repository.NightRepository;
+import com.campsite.reservation.service.OccupancyService;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Keeps one document per booked night in the 'night' collection, enabled with
+ * reservation.occupancy-mode=night
+ *
+ * Nights from today on are checked against the bookings at startup (see
+ * OccupancyReconciler), so this mode can be turned on or off at any time.
+ */
+@Service
+@ConditionalOnProperty(name = "reservation.occupancy-mode", havingValue = "night")
+public class NightOccupancyServiceImpl implements OccupancyService {
+
+	private static final Logger LOG = LoggerFactory.getLogger(NightOccupancyServiceImpl.class);
+
+	@Autowired
+	NightRepository nightRepository;
+
+	@Autowired
+	BookingRepository bookingRepository;
+
+	@PostConstruct
+	public void load() {
+		LOG.info("ensureIndexes night: {}", nightRepository.ensureIndexes().block());
+		new OccupancyReconciler(bookingRepository, this).reconcile(nightRepository::findFrom);
+	}
+
+	@Override
+	public Mono<Boolean> claim(String siteId, String bookingId, List<LocalDate> nights) {
+		Assert.notNull(siteId, "siteId needs to be set");
+		Assert.notNull(bookingId, "bookingId needs to be set");
+		Assert.notNull(nights, "nights needs to be set");
+		return nightRepository.claimNights(siteId, bookingId, nights);
+	}
+
+	@Override
+	public Mono<Void> release(String siteId, String bookingId, List<LocalDate> nights) {
+		Assert.notNull(siteId, "siteId needs to be set");
+		Assert.notNull(bookingId, "bookingId needs to be set");
+		Assert.notNull(nights, "nights needs to be set");
+		return nightRepository.releaseNights(bookingId, nights);
+	}
+}
@@ -0,0 +1,131 @@
+package com.campsite.reservation.service.impl;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.util.Pair;
+import org.springframework.util.Assert;
+
+import com.campsite.reservation.exception.BookingNotFoundException;
+import com.campsite.reservation.model.Booking;
+import com.campsite.reservation.model.BookingSlot;
+import com.campsite.reservation.model.Night;
+import com.campsite.reservation.repository.BookingRepository;
+import com.campsite.reservation.service.OccupancyService;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Checks the nights taken from today on against the bookings when an engine
+ * claiming nights starts, so bookings made or cancelled while it was off are
+ * accounted for: nights of bookings no longer there are released, then missing
+ * nights are claimed.
+ */
+public class OccupancyReconciler {
+
+	private static final Logger LOG = LoggerFactory.getLogger(OccupancyReconciler.class);
+
+	/**
+	 * Nights of bookings not found are only released if claimed before this, so
+	 * bookings being made by other instances keep their nights.
+	 */
+	private static final Duration CLAIM_GRACE = Duration.ofMinutes(1);
+
+	private final BookingRepository bookingRepository;
+
+	private final OccupancyService occupancyService;
+
+	public OccupancyReconciler(BookingRepository bookingRepository, OccupancyService occupancyService) {
+		Assert.notNull(bookingRepository, "bookingRepository needs to be set");
+		Assert.notNull(occupancyService, "occupancyService needs to be set");
+		this.bookingRepository = bookingRepository;
+		this.occupancyService = occupancyService;
+	}
+
+	/**
+	 * @param nightsTakenFrom nights taken from the given date on, of all sites
+	 */
+	public void reconcile(Function<LocalDate, Flux<Night>> nightsTakenFrom) {
+		LocalDate today = LocalDate.now();
+		Instant claimedBefore = Instant.now().minus(CLAIM_GRACE);
+		Map<String, BookingSlot> bookings = bookingRepository.findSlotsEndingAfter(today)
+				.collectMap(BookingSlot::getId).block();
+		List<Night> nights = nightsTakenFrom.apply(today).collectList().block();
+		Map<String, String> takenBy = nights.stream()
+				.collect(Collectors.toMap(night -> key(night.getSiteId(), night.getDate()), Night::getBookingId));
+		Map<Pair<String, String>, List<LocalDate>> orphans = nights.stream()
+				.filter(night -> isOrphan(night.getBookingId(), bookings.keySet(), claimedBefore))
+				.collect(Collectors.groupingBy(night -> Pair.of(night.getSiteId(), night.getBookingId()),
+						LinkedHashMap::new, Collectors.mapping(Night::getDate, Collectors.toList())));
+		Flux.fromIterable(orphans.entrySet()).concatMap(orphan -> occupancyService
+				.release(orphan.getKey().getFirst(), orphan.getKey().getSecond(), orphan.getValue())).then().block();
+		Long backfilled = Flux.fromIterable(bookings.values())
+				.concatMap(slot -> backfill(slot, slot.getDateRange().nights().stream()
+						.filter(night -> !night.isBefore(today)
+								&& !slot.getId().equals(takenBy.get(key(slot.getSiteId(), night))))
+						.collect(Collectors.toList())))
+				.filter(claimed -> claimed).count().block();
+		LOG.info("reconcile bookings backfilled: {}, orphan bookings released: {}", backfilled, orphans.size());
+	}
+
+	/**
+	 * True for nights taken by a booking that is not in bookingIds and that was not
+	 * being made at the given instant. Booking ids are set just before their
+	 * nights are claimed, so their timestamp tells when the claim was made.
+	 */
+	private static boolean isOrphan(String bookingId, Set<String> bookingIds, Instant claimedBefore) {
+		if (bookingIds.contains(bookingId))
+			return false;
+		return !ObjectId.isValid(bookingId) || new ObjectId(bookingId).getDate().toInstant().isBefore(claimedBefore);
+	}
+
+	/**
+	 * Claims the missing nights of a booking read at startup. Another instance may
+	 * modify or cancel it meanwhile, so it is read again before the claim (that
+	 * instance claims the nights of a new date range itself) and after it:
+	 * nights no longer in its date range are released, since the release by that
+	 * instance may have come before this claim.
+	 */
+	private Mono<Boolean> backfill(BookingSlot slot, List<LocalDate> missing) {
+		if (missing.isEmpty())
+			return Mono.empty();
+		return current(slot.getId()).filter(booking -> booking.getDateRange().equals(slot.getDateRange()))
+				.flatMap(booking -> occupancyService.claim(slot.getSiteId(), slot.getId(), missing))
+				.flatMap(claimed -> {
+					if (!claimed) {
+						LOG.warn("reconcile booking: {} shares nights with other bookings, missing: {}", slot,
+								missing);
+						return Mono.just(Boolean.FALSE);
+					}
+					return current(slot.getId()).map(booking -> booking.getDateRange().nights())
+							.defaultIfEmpty(Collections.emptyList()).flatMap(nights -> {
+								List<LocalDate> stale = missing.stream().filter(night -> !nights.contains(night))
+										.collect(Collectors.toList());
+								return stale.isEmpty() ? Mono.just(Boolean.TRUE)
+										: occupancyService.release(slot.getSiteId(), slot.getId(), stale)
+												.then(Mono.just(Boolean.FALSE));
+							});
+				});
+	}
+
+	private Mono<Booking> current(String bookingId) {
+		return bookingRepository.customFindById(bookingId).onErrorResume(BookingNotFoundException.class,
+				ex -> Mono.empty());
+	}
+
+	private static String key(String siteId, LocalDate night) {
+		return siteId + "/" + night;
+	}
+}
@@ -0,0 +1,114 @@
+package com.campsite.reservation.service.impl;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Latency of every stage handling a reservation request, in the
+ * 'reservation.stage' timer tagged by stage, and how many bookings every
+ * availability calculation had to look at against how many overlapped the
+ * requested date range, in the 'reservation.availability.bookings' summary
+ * tagged by kind. Both publish percentile histograms. Availability requests
+ * that joined a calculation in flight are counted in
+ * 'reservation.availability.requests' tagged coalesced=true.
+ * 
+ * End to end latency per endpoint is in 'http.server.requests'.
+ */
+@Component
+public class ReservationMetrics {
+
+	public static final String QUERY = "query";
+
+	public static final String KERNEL = "kernel";
+
+	public static final String PRECONDITIONS = "preconditions";
+
+	public static final String SAVE = "save";
+
+	private final MeterRegistry meterRegistry;
+
+	private final Map<String, Timer> timers = new ConcurrentHashMap<String, Timer>();
+
+	private final Counter flights;
+
+	private final Counter coalesced;
+
+	private final DistributionSummary scanned;
+
+	private final DistributionSummary overlapping;
+
+	public ReservationMetrics(MeterRegistry meterRegistry) {
+		this.meterRegistry = meterRegistry;
+		this.scanned = bookingsSummary("scanned");
+		this.overlapping = bookingsSummary("overlapping");
+		this.flights = meterRegistry.counter("reservation.availability.requests", "coalesced", "false");
+		this.coalesced = meterRegistry.counter("reservation.availability.requests", "coalesced", "true");
+	}
+
+	/**
+	 * Times the given stage from subscription to completion, error or cancel.
+	 */
+	public <T> Mono<T> time(String stage, Mono<T> mono) {
+		return Mono.defer(() -> {
+			Timer.Sample sample = Timer.start(meterRegistry);
+			return mono.doFinally(signal -> sample.stop(timer(stage)));
+		});
+	}
+
+	public <T> Flux<T> time(String stage, Flux<T> flux) {
+		return Flux.defer(() -> {
+			Timer.Sample sample = Timer.start(meterRegistry);
+			return flux.doFinally(signal -> sample.stop(timer(stage)));
+		});
+	}
+
+	public <T> T time(String stage, Supplier<T> supplier) {
+		return timer(stage).record(supplier);
+	}
+
+	public void time(String stage, Runnable runnable) {
+		timer(stage).record(runnable);
+	}
+
+	public void record(String stage, long nanos) {
+		timer(stage).record(nanos, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Bookings looked at by one availability calculation, and the ones among them
+	 * overlapping the requested date range.
+	 */
+	public void recordBookings(long scannedBookings, long overlappingBookings) {
+		scanned.record(scannedBookings);
+		overlapping.record(overlappingBookings);
+	}
+
+	/**
+	 * Availability calculations requested, coalesced if they joined one already in
+	 * flight.
+	 */
+	public void recordCoalescing(boolean joined) {
+		(joined ? coalesced : flights).increment();
+	}
+
+	private Timer timer(String stage) {
+		return timers.computeIfAbsent(stage, key -> Timer.builder("reservation.stage").tag("stage", key)
+				.publishPercentileHistogram().register(meterRegistry));
+	}
+
+	private DistributionSummary bookingsSummary(String kind) {
+		return DistributionSummary.builder("reservation.availability.bookings").tag("kind", kind)
+				.publishPercentileHistogram().register(meterRegistry);
+	}
+}
@@ -1,21 +1,40 @@
 package com.campsite.reservation.service.impl;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.bson.types.ObjectId;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.PropertySource;
 import org.springframework.core.env.Environment;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
 import org.springframework.util.Assert;
 
+import com.campsite.reservation.event.BookingEvent;
+import com.campsite.reservation.exception.BookingNotFoundException;
+import com.campsite.reservation.exception.HoldNotFoundException;
+import com.campsite.reservation.exception.UnsupportedModeException;
 import com.campsite.reservation.model.AvailabilityVO;
+import com.campsite.reservation.model.BatchItemResultVO;
+import com.campsite.reservation.model.BatchMode;
 import com.campsite.reservation.model.Booking;
 import com.campsite.reservation.model.DateRangeVO;
+import com.campsite.reservation.model.Hold;
 import com.campsite.reservation.repository.BookingRepository;
+import com.campsite.reservation.repository.HoldRepository;
 import com.campsite.reservation.service.AvailabilityService;
 import com.campsite.reservation.service.BookingService;
+import com.campsite.reservation.service.OccupancyService;
 import com.campsite.reservation.service.ReservationService;
 
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @Service
@@ -34,54 +53,314 @@ public class ReservationServiceImpl implements ReservationService {
 	@Autowired
 	BookingRepository bookingRepository;
 
+	@Autowired
+	ApplicationEventPublisher eventPublisher;
+
+	@Autowired
+	AvailabilityChanges availabilityChanges;
+
+	@Autowired
+	ReservationMetrics metrics;
+
+	@Autowired
+	IdempotentResponses idempotentResponses;
+
+	@Autowired
+	HoldRepository holdRepository;
+
+	@Autowired
+	BatchReservations batchReservations;
+
+	/**
+	 * Only set when reservation.occupancy-mode is enabled, in that case nights are
+	 * claimed instead of checking availability before saving.
+	 */
+	@Autowired(required = false)
+	OccupancyService occupancyService;
+
+	/**
+	 * Only set when reservation.write-mode=sequenced, in that case all bookings are
+	 * checked and saved by the sequencer.
+	 */
+	@Autowired(required = false)
+	MutationSequencer sequencer;
+
+	/**
+	 * Not set when reservation.availability-cache.enabled is false.
+	 */
+	@Autowired(required = false)
+	AvailabilityCache availabilityCache;
+
+	/**
+	 * Not set when reservation.booking-cache.enabled is false.
+	 */
+	@Autowired(required = false)
+	BookingCache bookingCache;
+
+	/**
+	 * Only set when reservation.booking-id-filter.enabled is true.
+	 */
+	@Autowired(required = false)
+	BookingIdFilter bookingIdFilter;
+
 	Counter bookingsNotAllowedCounter;
 	
 	public ReservationServiceImpl(MeterRegistry meterRegistry) {
 		bookingsNotAllowedCounter = meterRegistry.counter("reservation.bookings-not-allowed");
 	}
 
-	public Mono<AvailabilityVO> findAvailability(DateRangeVO dateRange) {
+	public Mono<AvailabilityVO> findAvailability(String siteId, DateRangeVO dateRange) {
+		Assert.notNull(siteId, "siteId needs to be set");
 		Assert.notNull(dateRange, "dateRange needs to be set");
-		Integer defaultMonthsForAvailabilityRequest = env
-				.getProperty("reservation.default-months-for-availability-request", Integer.class);
-		return availabilityService.calculateAvailability(!dateRange.isOpen() ? dateRange
-				: new DateRangeVO(dateRange.getFrom(), dateRange.getFrom().plusMonths(defaultMonthsForAvailabilityRequest)));
+		bookingService.checkSite(siteId);
+		DateRangeVO inThisDateRange = closed(dateRange);
+		if (availabilityCache != null)
+			return availabilityCache.get(siteId, inThisDateRange,
+					() -> availabilityService.calculateAvailability(siteId, inThisDateRange));
+		return availabilityService.calculateAvailability(siteId, inThisDateRange);
+	}
+
+	public Flux<DateRangeVO> streamAvailability(String siteId, DateRangeVO dateRange) {
+		Assert.notNull(siteId, "siteId needs to be set");
+		Assert.notNull(dateRange, "dateRange needs to be set");
+		bookingService.checkSite(siteId);
+		return availabilityService.streamAvailability(siteId, closed(dateRange));
+	}
+
+	public Flux<AvailabilityVO> watchAvailability(String siteId, DateRangeVO dateRange) {
+		Assert.notNull(siteId, "siteId needs to be set");
+		Assert.notNull(dateRange, "dateRange needs to be set");
+		bookingService.checkSite(siteId);
+		return availabilityChanges.watch(siteId, closed(dateRange));
+	}
+
+	/**
+	 * Sites with no booking overlapping the given date range, found with one query
+	 * for all sites.
+	 */
+	public Mono<List<String>> findFreeSites(DateRangeVO dateRange) {
+		Assert.notNull(dateRange, "dateRange needs to be set");
+		Assert.isTrue(!dateRange.isOpen(), "dateRange cannot be open");
+		return bookingRepository.findSiteIdsByDateRange(dateRange).collect(Collectors.toSet())
+				.map(bookedSites -> bookingService.getSites().stream().filter(site -> !bookedSites.contains(site))
+						.collect(Collectors.toList()));
 	}
 
 	public Mono<Booking> makeReservation(Booking booking) {
 		Assert.notNull(booking, "booking needs to be set");
+		Mono<Booking> booked = sequencer != null ? makeReservationSequenced(booking)
+				: occupancyService != null ? makeReservationClaimingNights(booking)
+						: makeReservationCheckingAvailability(booking);
+		return booked.doOnNext(saved -> eventPublisher.publishEvent(BookingEvent.created(saved)));
+	}
+
+	public Mono<String> makeReservation(Booking booking, String idempotencyKey) {
+		Assert.notNull(booking, "booking needs to be set");
+		Assert.hasText(idempotencyKey, "idempotencyKey needs to be set");
+		String request = String.format("%s|%s|%s|%s", booking.getSiteId(), booking.getEmail(),
+				booking.getFullName(), booking.getDateRange());
+		return idempotentResponses.bookingIdFor(idempotencyKey, request,
+				() -> makeReservation(booking).map(Booking::getId));
+	}
+
+	/**
+	 * Bookings are checked against the bookings read for all of them at once, so
+	 * nights claimed or written by the sequencer would be missed.
+	 */
+	public Mono<List<BatchItemResultVO>> makeReservations(List<Booking> bookings, BatchMode mode) {
+		Assert.notNull(bookings, "bookings needs to be set");
+		Assert.notNull(mode, "mode needs to be set");
+		if (occupancyService != null || sequencer != null)
+			return Mono.error(new UnsupportedModeException(
+					"Batches need an availability engine not claiming nights, with no write mode set"));
+		return batchReservations.make(bookings, mode);
+	}
+
+	/**
+	 * Holds are only honoured when every booking is checked against availability
+	 * calculated with them.
+	 */
+	public Mono<Hold> holdReservation(Booking booking, int minutes) {
+		Assert.notNull(booking, "booking needs to be set");
+		Integer maxMinutes = env.getProperty("reservation.holds.max-minutes", Integer.class, 15);
+		Assert.isTrue(minutes > 0 && minutes <= maxMinutes,
+				String.format("Holds can be for 1 up to %s minutes", maxMinutes));
+		if (!availabilityService.honoursHolds() || occupancyService != null || sequencer != null)
+			return Mono.error(new UnsupportedModeException(
+					"Holds need the default availability engine, with no occupancy or write mode set"));
 		return bookingService.isBookingCreationAllowed(booking).flatMap(isAllowed -> {
-			if (isAllowed)
-				return bookingRepository.save(booking);
-			else {
-				bookingsNotAllowedCounter.increment();
+			if (!isAllowed)
 				throw new IllegalArgumentException("No availability");
-			}
-		});
+			return holdRepository.insert(new Hold(booking, Instant.now().plus(Duration.ofMinutes(minutes))));
+		}).doOnNext(hold -> eventPublisher.publishEvent(BookingEvent.held(new Booking(hold.getId(),
+				hold.getSiteId(), hold.getEmail(), hold.getFullName(), hold.getDateRange()))));
+	}
+
+	/**
+	 * The hold is checked while it still holds its nights (excluding it), then the
+	 * booking is inserted with the hold id and only then the hold is removed. If
+	 * anything fails before the insert the hold is kept, and since the id can only
+	 * be inserted once a hold is only confirmed once.
+	 */
+	public Mono<Booking> confirmHold(String holdId) {
+		Assert.notNull(holdId, "holdId needs to be set");
+		return holdRepository.findActiveById(holdId)
+				.flatMap(hold -> bookingService
+						.isBookingModificationAllowed(hold.getSiteId(), hold.getId(), hold.getDateRange())
+						.flatMap(isAllowed -> {
+							if (!isAllowed)
+								throw new IllegalArgumentException("No availability");
+							return metrics.time(ReservationMetrics.SAVE, bookingRepository.insert(hold.toBooking()))
+									.onErrorMap(DuplicateKeyException.class, ex -> new HoldNotFoundException(holdId));
+						}))
+				.flatMap(saved -> holdRepository.deleteById(holdId).then(Mono.just(saved)))
+				.doOnNext(saved -> eventPublisher.publishEvent(BookingEvent.created(saved)));
 	}
 
 	public Mono<Booking> modifyReservation(String bookingId, DateRangeVO newDateRange) {
 		Assert.notNull(bookingId, "bookingId needs to be set");
 		Assert.notNull(newDateRange, "newDateRange needs to be set");
 		Assert.isTrue(!newDateRange.isOpen(), "newDateRange cannot be open");
+		if (isUnknown(bookingId))
+			return Mono.error(new BookingNotFoundException(bookingId));
 		return bookingRepository.customFindById(bookingId).flatMap(booking -> {
-			return bookingService.isBookingModificationAllowed(booking.getId(), newDateRange).flatMap(isAllowed -> {
-				if (isAllowed)
-					return bookingRepository.save(Booking.from(booking, newDateRange));
-				else
-					throw new IllegalArgumentException("No availability");
-			});
+			Mono<Booking> modified = sequencer != null ? modifyReservationSequenced(booking, newDateRange)
+					: occupancyService != null ? modifyReservationClaimingNights(booking, newDateRange)
+							: modifyReservationCheckingAvailability(booking, newDateRange);
+			return modified.doOnNext(
+					saved -> eventPublisher.publishEvent(BookingEvent.modified(saved, booking.getDateRange())));
 		});
 	}
 
 	public Mono<Booking> getReservationInfo(String bookingId) {
 		Assert.notNull(bookingId, "bookingId needs to be set");
+		if (isUnknown(bookingId))
+			return Mono.error(new BookingNotFoundException(bookingId));
+		if (bookingCache != null)
+			return bookingCache.get(bookingId, () -> bookingRepository.customFindById(bookingId));
 		return bookingRepository.customFindById(bookingId);
 	}
 
 	public Mono<Boolean> cancelReservation(String bookingId) {
 		Assert.notNull(bookingId, "bookingId needs to be set");
-		return bookingRepository.customDeleteById(bookingId);
+		if (isUnknown(bookingId))
+			return Mono.error(new BookingNotFoundException(bookingId));
+		if (sequencer != null)
+			return bookingRepository.customFindById(bookingId).flatMap(sequencer::cancel)
+					.doOnNext(booking -> eventPublisher.publishEvent(BookingEvent.cancelled(booking)))
+					.map(booking -> Boolean.TRUE);
+		return bookingRepository.customDeleteById(bookingId).flatMap(booking -> {
+			if (occupancyService != null)
+				return occupancyService
+						.release(booking.getSiteId(), booking.getId(), booking.getDateRange().nights())
+						.then(Mono.just(booking));
+			return Mono.just(booking);
+		}).doOnNext(booking -> eventPublisher.publishEvent(BookingEvent.cancelled(booking)))
+				.map(booking -> Boolean.TRUE);
+	}
+
+	/**
+	 * True only if there is certainly no booking with the given id.
+	 */
+	private boolean isUnknown(String bookingId) {
+		return bookingIdFilter != null && !bookingIdFilter.mightExist(bookingId);
+	}
+
+	/**
+	 * Open date ranges are closed using
+	 * reservation.default-months-for-availability-request
+	 */
+	private DateRangeVO closed(DateRangeVO dateRange) {
+		if (!dateRange.isOpen())
+			return dateRange;
+		Integer defaultMonthsForAvailabilityRequest = env
+				.getProperty("reservation.default-months-for-availability-request", Integer.class);
+		return new DateRangeVO(dateRange.getFrom(), dateRange.getFrom().plusMonths(defaultMonthsForAvailabilityRequest));
+	}
+
+	private Mono<Booking> makeReservationCheckingAvailability(Booking booking) {
+		return bookingService.isBookingCreationAllowed(booking).flatMap(isAllowed -> {
+			if (isAllowed)
+				return metrics.time(ReservationMetrics.SAVE, bookingRepository.save(booking));
+			else {
+				bookingsNotAllowedCounter.increment();
+				throw new IllegalArgumentException("No availability");
+			}
+		});
+	}
+
+	/**
+	 * Only the nights added are checked, the update is applied only if the booking
+	 * was not modified or cancelled since it was read (see customUpdate).
+	 */
+	private Mono<Booking> modifyReservationCheckingAvailability(Booking booking, DateRangeVO newDateRange) {
+		return bookingService.isBookingModificationAllowed(booking, newDateRange)
+				.flatMap(isAllowed -> {
+					if (isAllowed)
+						return metrics.time(ReservationMetrics.SAVE,
+								bookingRepository.customUpdate(Booking.from(booking, newDateRange)));
+					else
+						throw new IllegalArgumentException("No availability");
+				});
+	}
+
+	private Mono<Booking> makeReservationSequenced(Booking booking) {
+		bookingService.checkSite(booking.getSiteId());
+		bookingService.checkPreconditions(booking.getDateRange());
+		return sequencer.create(booking).doOnError(IllegalArgumentException.class,
+				ex -> bookingsNotAllowedCounter.increment());
+	}
+
+	private Mono<Booking> modifyReservationSequenced(Booking booking, DateRangeVO newDateRange) {
+		bookingService.checkPreconditions(newDateRange);
+		return sequencer.modify(booking, newDateRange);
+	}
+
+	/**
+	 * The booking id is set upfront so nights can be claimed before the booking is
+	 * saved. If the booking cannot be saved then the nights are released.
+	 */
+	private Mono<Booking> makeReservationClaimingNights(Booking booking) {
+		bookingService.checkSite(booking.getSiteId());
+		bookingService.checkPreconditions(booking.getDateRange());
+		Booking toSave = new Booking(new ObjectId().toHexString(), booking.getSiteId(), booking.getEmail(),
+				booking.getFullName(), booking.getDateRange());
+		List<LocalDate> nights = toSave.getDateRange().nights();
+		return occupancyService.claim(toSave.getSiteId(), toSave.getId(), nights).flatMap(claimed -> {
+			if (!claimed) {
+				bookingsNotAllowedCounter.increment();
+				throw new IllegalArgumentException("No availability");
+			}
+			return metrics.time(ReservationMetrics.SAVE, bookingRepository.save(toSave))
+					.onErrorResume(ex -> occupancyService.release(toSave.getSiteId(), toSave.getId(), nights)
+							.then(Mono.<Booking>error(ex)));
+		});
+	}
+
+	/**
+	 * Only the nights not already taken by the booking are claimed, and the ones no
+	 * longer needed are released once the booking was saved.
+	 */
+	private Mono<Booking> modifyReservationClaimingNights(Booking booking, DateRangeVO newDateRange) {
+		bookingService.checkPreconditions(newDateRange);
+		List<LocalDate> currentNights = booking.getDateRange().nights();
+		List<LocalDate> newNights = newDateRange.nights();
+		List<LocalDate> nightsToClaim = newNights.stream().filter(night -> !currentNights.contains(night))
+				.collect(Collectors.toList());
+		List<LocalDate> nightsToRelease = currentNights.stream().filter(night -> !newNights.contains(night))
+				.collect(Collectors.toList());
+		return occupancyService.claim(booking.getSiteId(), booking.getId(), nightsToClaim).flatMap(claimed -> {
+			if (!claimed)
+				throw new IllegalArgumentException("No availability");
+			return metrics
+					.time(ReservationMetrics.SAVE, bookingRepository.customUpdate(Booking.from(booking, newDateRange)))
+					.onErrorResume(ex -> occupancyService
+							.release(booking.getSiteId(), booking.getId(), nightsToClaim)
+							.then(Mono.<Booking>error(ex)))
+					.flatMap(saved -> occupancyService
+							.release(booking.getSiteId(), booking.getId(), nightsToRelease)
+							.then(Mono.just(saved)));
+		});
 	}
 
 }
@@ -0,0 +1,94 @@
+package com.campsite.reservation.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import com.campsite.reservation.model.Booking;
+import com.campsite.reservation.model.DateRangeVO;
+
+public class DateRangeConvertersTests {
+
+	LocalDate now = LocalDate.now();
+
+	@Test
+	public void testWrite_epochDay() {
+
+		//
+		// Given
+		//
+		MappingMongoConverter converter = converter(true);
+		Booking booking = new Booking("id1", "email", "fullName", new DateRangeVO(now, now.plusDays(3)));
+
+		//
+		// When
+		//
+		Document document = new Document();
+		converter.write(booking, document);
+
+		//
+		// Then
+		//
+		Document dateRange = document.get("dateRange", Document.class);
+		assertEquals(dateRange.get("from"), (int) now.toEpochDay());
+		assertEquals(dateRange.get("to"), (int) now.plusDays(3).toEpochDay());
+	}
+
+	@Test
+	public void testRead_bothFormats() {
+
+		//
+		// Given
+		//
+		MappingMongoConverter converter = converter(false);
+		Document epochDays = new Document("_id", "id1").append("email", "email").append("fullName", "fullName")
+				.append("dateRange", new Document("from", (int) now.toEpochDay()).append("to",
+						(int) now.plusDays(3).toEpochDay()));
+		Document dates = new Document("_id", "id2").append("email", "email").append("fullName", "fullName")
+				.append("dateRange", new Document("from", date(now)).append("to", date(now.plusDays(3))));
+
+		//
+		// When
+		//
+		Booking fromEpochDays = converter.read(Booking.class, epochDays);
+		Booking fromDates = converter.read(Booking.class, dates);
+
+		//
+		// Then
+		//
+		assertEquals(fromEpochDays.getDateRange(), new DateRangeVO(now, now.plusDays(3)));
+		assertEquals(fromDates.getDateRange(), new DateRangeVO(now, now.plusDays(3)));
+	}
+
+	@Test
+	public void testToStored() {
+		assertEquals(DateRangeConverters.toStored(now, true), (int) now.toEpochDay());
+		assertTrue(DateRangeConverters.toStored(now, false) instanceof LocalDate);
+		assertEquals(DateRangeConverters.fromStored(DateRangeConverters.toStored(now, true)), now);
+	}
+
+	private MappingMongoConverter converter(boolean epochDay) {
+		MongoCustomConversions conversions = new MongoCustomConversions(DateRangeConverters.converters(epochDay));
+		MongoMappingContext context = new MongoMappingContext();
+		context.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+		context.afterPropertiesSet();
+		MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, context);
+		converter.setCustomConversions(conversions);
+		converter.afterPropertiesSet();
+		return converter;
+	}
+
+	private Date date(LocalDate date) {
+		return Date.from(date.atStartOfDay(ZoneId.systemDefault()).toInstant());
+	}
+}
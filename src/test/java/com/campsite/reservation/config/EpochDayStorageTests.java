@@ -0,0 +1,183 @@
+package com.campsite.reservation.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import com.campsite.reservation.model.Booking;
+import com.campsite.reservation.model.BookingSlot;
+import com.campsite.reservation.model.BookingWrite;
+import com.campsite.reservation.model.DateRangeVO;
+import com.campsite.reservation.model.Hold;
+import com.campsite.reservation.repository.BookingRepository;
+import com.campsite.reservation.repository.HoldRepository;
+
+/**
+ * Same queries as the repository tests, with date ranges stored as epoch days.
+ */
+@ExtendWith(SpringExtension.class)
+@DataMongoTest(properties = DateRangeConverters.STORAGE_PROPERTY + "=" + DateRangeConverters.EPOCH_DAY)
+@Import(MongoConfig.class)
+public class EpochDayStorageTests {
+
+	private static final int BSON_INT32 = 16;
+
+	@Autowired
+	MongoConfig mongoConfig;
+
+	@Autowired
+	BookingRepository bookingRepository;
+
+	@Autowired
+	HoldRepository holdRepository;
+
+	@Autowired
+	ReactiveMongoTemplate mongo;
+
+	LocalDate now = LocalDate.now();
+
+	@BeforeEach
+	public void cleanUp() {
+		bookingRepository.deleteAll().block();
+		holdRepository.deleteAll().block();
+	}
+
+	@Test
+	public void testEnsureIndexes_convertsBookingsAndHolds() {
+
+		//
+		// Given
+		//
+		// Stored as BSON dates, before the setting was switched
+		DateRangeVO dateRange = new DateRangeVO(now.plusDays(3), now.plusDays(5));
+		Document storedAsDates = new Document("from", DateRangeConverters.toStored(dateRange.getFrom(), false))
+				.append("to", DateRangeConverters.toStored(dateRange.getTo(), false));
+		mongo.insert(new Document("siteId", Booking.DEFAULT_SITE).append("email", "email")
+				.append("fullName", "fullName").append("dateRange", storedAsDates), "booking").block();
+		mongo.insert(new Document("siteId", Booking.DEFAULT_SITE).append("email", "email")
+				.append("fullName", "fullName").append("dateRange", storedAsDates)
+				.append("expiresAt", Date.from(Instant.now().plusSeconds(600))), "hold").block();
+
+		//
+		// When
+		//
+		mongoConfig.ensureIndexes();
+
+		//
+		// Then
+		//
+		assertEquals(storedAsEpochDays("booking"), 1);
+		assertEquals(storedAsEpochDays("hold"), 1);
+		DateRangeVO overlapping = new DateRangeVO(now.plusDays(4), now.plusDays(8));
+		assertTrue(bookingRepository.existsByDateRange(Booking.DEFAULT_SITE, overlapping).block());
+		assertTrue(holdRepository.existsByDateRange(Booking.DEFAULT_SITE, overlapping).block());
+	}
+
+	@Test
+	public void testFindSlotsByDateRange() {
+
+		//
+		// Given
+		//
+		Booking overlapping = bookingRepository.save(booking(3, 5)).block();
+		bookingRepository.save(booking(8, 10)).block();
+		holdRepository.insert(new Hold(booking(4, 6), Instant.now().plusSeconds(600))).block();
+
+		//
+		// When
+		//
+		DateRangeVO dateRange = new DateRangeVO(now.plusDays(1), now.plusDays(8));
+		List<BookingSlot> slots = bookingRepository.findSlotsByDateRange(Booking.DEFAULT_SITE, dateRange)
+				.collectList().block();
+
+		//
+		// Then
+		//
+		assertEquals(storedAsEpochDays("booking"), 2);
+		assertEquals(slots.size(), 1);
+		assertEquals(slots.get(0).getId(), overlapping.getId());
+		assertEquals(slots.get(0).getDateRange(), overlapping.getDateRange());
+		assertEquals(holdRepository.findSlotsByDateRange(Booking.DEFAULT_SITE, dateRange).count().block(), 1);
+	}
+
+	@Test
+	public void testCustomUpdate() {
+
+		//
+		// Given
+		//
+		Booking booking = bookingRepository.save(booking(3, 5)).block();
+		DateRangeVO newDateRange = new DateRangeVO(now.plusDays(4), now.plusDays(7));
+
+		//
+		// When
+		//
+		bookingRepository.customUpdate(Booking.from(booking, newDateRange)).block();
+
+		//
+		// Then
+		//
+		assertEquals(bookingRepository.customFindById(booking.getId()).block().getDateRange(), newDateRange);
+		assertEquals(storedAsEpochDays("booking"), 1);
+		assertTrue(bookingRepository.existsByDateRange(Booking.DEFAULT_SITE,
+				new DateRangeVO(now.plusDays(6), now.plusDays(7))).block());
+	}
+
+	@Test
+	public void testBulkWrite() {
+
+		//
+		// Given
+		//
+		Booking toModify = bookingRepository.save(booking(3, 5)).block();
+		Booking toInsert = new Booking(new ObjectId().toHexString(), Booking.DEFAULT_SITE, "email", "fullName",
+				new DateRangeVO(now.plusDays(10), now.plusDays(12)));
+		DateRangeVO newDateRange = new DateRangeVO(now.plusDays(5), now.plusDays(7));
+
+		//
+		// When
+		//
+		Integer applied = bookingRepository
+				.bulkWrite(Arrays.asList(new BookingWrite(BookingWrite.Type.INSERT, toInsert),
+						new BookingWrite(BookingWrite.Type.UPDATE, Booking.from(toModify, newDateRange))))
+				.block();
+
+		//
+		// Then
+		//
+		assertEquals(applied, 2);
+		assertEquals(storedAsEpochDays("booking"), 2);
+		List<DateRangeVO> dateRanges = bookingRepository
+				.findSlotsByDateRange(Booking.DEFAULT_SITE, new DateRangeVO(now.plusDays(1), now.plusDays(15)))
+				.map(BookingSlot::getDateRange).collectList().block().stream().sorted().collect(Collectors.toList());
+		assertEquals(dateRanges, Arrays.asList(newDateRange, toInsert.getDateRange()));
+	}
+
+	private long storedAsEpochDays(String collection) {
+		return mongo.count(query(where("dateRange.from").type(BSON_INT32).and("dateRange.to").type(BSON_INT32)),
+				collection).block();
+	}
+
+	private Booking booking(int fromDays, int toDays) {
+		return new Booking("email", "fullName", new DateRangeVO(now.plusDays(fromDays), now.plusDays(toDays)));
+	}
+}
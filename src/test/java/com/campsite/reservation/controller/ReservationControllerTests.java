@@ -1,10 +1,15 @@
 package com.campsite.reservation.controller;
 
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.time.Instant;
 import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
 import java.util.TreeSet;
 
 import org.junit.jupiter.api.Test;
@@ -14,17 +19,25 @@ import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.PropertySource;
 import org.springframework.core.env.Environment;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import org.springframework.web.reactive.function.BodyInserters;
 
 import com.campsite.reservation.exception.BookingNotFoundException;
+import com.campsite.reservation.exception.HoldNotFoundException;
 import com.campsite.reservation.model.AvailabilityVO;
+import com.campsite.reservation.model.BatchItemResultVO;
+import com.campsite.reservation.model.BatchMode;
 import com.campsite.reservation.model.Booking;
 import com.campsite.reservation.model.DateRangeVO;
+import com.campsite.reservation.model.Hold;
 import com.campsite.reservation.service.ReservationService;
 
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @ExtendWith(SpringExtension.class)
@@ -57,14 +70,14 @@ public class ReservationControllerTests {
 				add(dateRange);
 			}
 		}, dateRange));
-		when(reservationService.findAvailability(eq(new DateRangeVO(null, null)))).thenReturn(value);
+		when(reservationService.findAvailability(eq(Booking.DEFAULT_SITE), eq(new DateRangeVO(null, null)))).thenReturn(value);
 
 		//
 		// When / Then
 		//
 		webClient.get().uri("/reservations/find-availability").exchange().expectStatus().isOk().expectBody(AvailabilityVO.class)
 				.isEqualTo(value.block());
-		verify(reservationService).findAvailability(new DateRangeVO(now, null));
+		verify(reservationService).findAvailability(Booking.DEFAULT_SITE, new DateRangeVO(now, null));
 	}
 
 	@SuppressWarnings("serial")
@@ -85,14 +98,109 @@ public class ReservationControllerTests {
 				add(actualAvailability);
 			}
 		}, dateRange));
-		when(reservationService.findAvailability(eq(dateRange))).thenReturn(value);
+		when(reservationService.findAvailability(eq(Booking.DEFAULT_SITE), eq(dateRange))).thenReturn(value);
 
 		//
 		// When / Then
 		//
 		webClient.get().uri(String.format("/reservations/find-availability?from=%s&to=%s", from, to)).exchange().expectStatus().isOk()
 				.expectBody(AvailabilityVO.class).isEqualTo(value.block());
-		verify(reservationService).findAvailability(dateRange);
+		verify(reservationService).findAvailability(Booking.DEFAULT_SITE, dateRange);
+	}
+
+	@Test
+	public void testStreamAvailability() {
+
+		//
+		// Given
+		//
+		LocalDate now = LocalDate.now();
+		LocalDate from = now.plusDays(15);
+		LocalDate to = now.plusDays(15).plusMonths(1);
+		DateRangeVO dateRange = new DateRangeVO(from, to);
+		DateRangeVO firstAvailability = new DateRangeVO(from, from.plusDays(5));
+		DateRangeVO secondAvailability = new DateRangeVO(from.plusDays(10), to);
+		when(reservationService.streamAvailability(eq(Booking.DEFAULT_SITE), eq(dateRange)))
+				.thenReturn(Flux.just(firstAvailability, secondAvailability));
+
+		//
+		// When / Then
+		//
+		webClient.get().uri(String.format("/reservations/find-availability/stream?from=%s&to=%s", from, to))
+				.accept(MediaType.APPLICATION_STREAM_JSON).exchange().expectStatus().isOk()
+				.expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_STREAM_JSON)
+				.expectBodyList(DateRangeVO.class).contains(firstAvailability, secondAvailability).hasSize(2);
+		verify(reservationService).streamAvailability(Booking.DEFAULT_SITE, dateRange);
+	}
+
+	@SuppressWarnings("serial")
+	@Test
+	public void testWatchAvailability() {
+
+		//
+		// Given
+		//
+		LocalDate now = LocalDate.now();
+		LocalDate from = now.plusDays(15);
+		LocalDate to = now.plusDays(15).plusMonths(1);
+		DateRangeVO dateRange = new DateRangeVO(from, to);
+		DateRangeVO changed = new DateRangeVO(from.plusDays(2), from.plusDays(5));
+		AvailabilityVO change = new AvailabilityVO(new TreeSet<DateRangeVO>() {
+			{
+				add(new DateRangeVO(from.plusDays(4), from.plusDays(5)));
+			}
+		}, changed);
+		when(reservationService.watchAvailability(eq(Booking.DEFAULT_SITE), eq(dateRange))).thenReturn(Flux.just(change));
+
+		//
+		// When / Then
+		//
+		webClient.get().uri(String.format("/reservations/availability-changes?from=%s&to=%s", from, to))
+				.accept(MediaType.TEXT_EVENT_STREAM).exchange().expectStatus().isOk().expectHeader()
+				.contentTypeCompatibleWith(MediaType.TEXT_EVENT_STREAM).expectBodyList(AvailabilityVO.class)
+				.contains(change).hasSize(1);
+		verify(reservationService).watchAvailability(Booking.DEFAULT_SITE, dateRange);
+	}
+
+	@Test
+	public void testFindAvailability_siteSet() {
+
+		//
+		// Given
+		//
+		LocalDate now = LocalDate.now();
+		LocalDate from = now.plusDays(15);
+		LocalDate to = now.plusDays(15).plusMonths(1);
+		DateRangeVO dateRange = new DateRangeVO(from, to);
+		Mono<AvailabilityVO> value = Mono.just(AvailabilityVO.builder(dateRange).addRange(dateRange).build());
+		when(reservationService.findAvailability(eq("site2"), eq(dateRange))).thenReturn(value);
+
+		//
+		// When / Then
+		//
+		webClient.get().uri(String.format("/reservations/find-availability?siteId=site2&from=%s&to=%s", from, to))
+				.exchange().expectStatus().isOk().expectBody(AvailabilityVO.class).isEqualTo(value.block());
+		verify(reservationService).findAvailability("site2", dateRange);
+	}
+
+	@Test
+	public void testFindFreeSites() {
+
+		//
+		// Given
+		//
+		LocalDate now = LocalDate.now();
+		LocalDate from = now.plusDays(15);
+		LocalDate to = now.plusDays(17);
+		DateRangeVO dateRange = new DateRangeVO(from, to);
+		when(reservationService.findFreeSites(eq(dateRange))).thenReturn(Mono.just(Arrays.asList("site1", "site3")));
+
+		//
+		// When / Then
+		//
+		webClient.get().uri(String.format("/reservations/find-free-sites?from=%s&to=%s", from, to)).exchange()
+				.expectStatus().isOk().expectBody(List.class).isEqualTo(Arrays.asList("site1", "site3"));
+		verify(reservationService).findFreeSites(dateRange);
 	}
 
 	@SuppressWarnings("serial")
@@ -114,14 +222,14 @@ public class ReservationControllerTests {
 				add(actualAvailability);
 			}
 		}, dateRange));
-		when(reservationService.findAvailability(eq(actualDateRange))).thenReturn(value);
+		when(reservationService.findAvailability(eq(Booking.DEFAULT_SITE), eq(actualDateRange))).thenReturn(value);
 
 		//
 		// When / Then
 		//
 		webClient.get().uri(String.format("/reservations/find-availability?from=%s", from)).exchange().expectStatus().isOk()
 				.expectBody(AvailabilityVO.class).isEqualTo(value.block());
-		verify(reservationService).findAvailability(actualDateRange);
+		verify(reservationService).findAvailability(Booking.DEFAULT_SITE, actualDateRange);
 	}
 
 	@Test
@@ -136,14 +244,14 @@ public class ReservationControllerTests {
 		DateRangeVO dateRange = new DateRangeVO(from, to);
 		Mono<AvailabilityVO> value = Mono
 				.<AvailabilityVO>just(new AvailabilityVO(new TreeSet<DateRangeVO>(), dateRange));
-		when(reservationService.findAvailability(eq(dateRange))).thenReturn(value);
+		when(reservationService.findAvailability(eq(Booking.DEFAULT_SITE), eq(dateRange))).thenReturn(value);
 
 		//
 		// When / Then
 		//
 		webClient.get().uri(String.format("/reservations/find-availability?from=%s&to=%s", from, to)).exchange().expectStatus().isOk()
 				.expectBody(AvailabilityVO.class).isEqualTo(value.block());
-		verify(reservationService).findAvailability(dateRange);
+		verify(reservationService).findAvailability(Booking.DEFAULT_SITE, dateRange);
 	}
 
 	@Test
@@ -170,6 +278,28 @@ public class ReservationControllerTests {
 		verify(reservationService).makeReservation(booking);
 	}
 
+	@Test
+	public void testMakeReservation_idempotencyKey() {
+
+		//
+		// Given
+		//
+		LocalDate now = LocalDate.now();
+		DateRangeVO dateRange = new DateRangeVO(now.plusDays(10), now.plusDays(12));
+		Booking booking = new Booking("email", "fullName", dateRange);
+		when(reservationService.makeReservation(eq(booking), eq("someKey"))).thenReturn(Mono.just("someBookingId"));
+
+		//
+		// When / Then
+		//
+		for (int i = 0; i < 2; i++)
+			webClient.post().uri("/reservations").header("Idempotency-Key", "someKey")
+					.contentType(MediaType.APPLICATION_JSON).body(BodyInserters.fromValue(booking)).exchange()
+					.expectStatus().isCreated().expectHeader().valueMatches("Location", "/reservations/someBookingId");
+		verify(reservationService, times(2)).makeReservation(booking, "someKey");
+		verify(reservationService, never()).makeReservation(booking);
+	}
+
 	@Test
 	public void testMakeReservation_noAvailability() {
 
@@ -190,6 +320,67 @@ public class ReservationControllerTests {
 		verify(reservationService).makeReservation(booking);
 	}
 
+	@Test
+	public void testMakeReservations_ok() {
+
+		//
+		// Given
+		//
+		LocalDate now = LocalDate.now();
+		List<Booking> bookings = Arrays.asList(
+				new Booking("email", "fullName", new DateRangeVO(now.plusDays(10), now.plusDays(12))),
+				new Booking("email", "fullName", new DateRangeVO(now.plusDays(11), now.plusDays(13))));
+		when(reservationService.makeReservations(eq(bookings), eq(BatchMode.BEST_EFFORT)))
+				.thenReturn(Mono.just(Arrays.asList(BatchItemResultVO.created(0, "someBookingId"),
+						BatchItemResultVO.rejected(1, "No availability"))));
+
+		//
+		// When / Then
+		//
+		webClient.post().uri("/reservations/batch?mode=BEST_EFFORT").contentType(MediaType.APPLICATION_JSON)
+				.body(BodyInserters.fromValue(bookings)).exchange().expectStatus().isOk().expectBody()
+				.jsonPath("$[0].status").isEqualTo("CREATED").jsonPath("$[0].bookingId").isEqualTo("someBookingId")
+				.jsonPath("$[1].status").isEqualTo("REJECTED");
+		verify(reservationService).makeReservations(bookings, BatchMode.BEST_EFFORT);
+	}
+
+	@Test
+	public void testHoldReservation_ok() {
+
+		//
+		// Given
+		//
+		LocalDate now = LocalDate.now();
+		Booking booking = new Booking("email", "fullName", new DateRangeVO(now.plusDays(10), now.plusDays(12)));
+		Hold hold = new Hold(booking, Instant.now().plusSeconds(300));
+		ReflectionTestUtils.setField(hold, "id", "someHoldId");
+		when(reservationService.holdReservation(eq(booking), eq(5))).thenReturn(Mono.just(hold));
+
+		//
+		// When / Then
+		//
+		webClient.post().uri("/reservations/holds?minutes=5").contentType(MediaType.APPLICATION_JSON)
+				.body(BodyInserters.fromValue(booking)).exchange().expectStatus().isCreated().expectHeader()
+				.valueMatches("Location", "/reservations/holds/someHoldId");
+		verify(reservationService).holdReservation(booking, 5);
+	}
+
+	@Test
+	public void testConfirmHold_notFound() {
+
+		//
+		// Given
+		//
+		when(reservationService.confirmHold(eq("someHoldId")))
+				.thenReturn(Mono.error(new HoldNotFoundException("someHoldId")));
+
+		//
+		// When / Then
+		//
+		webClient.post().uri("/reservations/holds/someHoldId/confirm").exchange().expectStatus().isNotFound();
+		verify(reservationService).confirmHold("someHoldId");
+	}
+
 	@Test
 	public void testGetReservationInfo_ok() {
 
@@ -318,4 +509,24 @@ public class ReservationControllerTests {
 				.exchange().expectStatus().isNotFound();
 		verify(reservationService).modifyReservation(bookingId, newDateRange);
 	}
+
+	@Test
+	public void testModifyReservation_concurrentModification() {
+
+		//
+		// Given
+		//
+		String bookingId = "someBookingId";
+		LocalDate now = LocalDate.now();
+		DateRangeVO newDateRange = new DateRangeVO(now.plusDays(10), now.plusDays(12));
+		when(reservationService.modifyReservation(eq(bookingId), eq(newDateRange)))
+				.thenReturn(Mono.<Booking>error(new OptimisticLockingFailureException("Modified concurrently")));
+
+		//
+		// When / Then
+		//
+		webClient.put().uri(String.format("/reservations/%s", bookingId)).body(BodyInserters.fromValue(newDateRange))
+				.exchange().expectStatus().isEqualTo(HttpStatus.CONFLICT);
+		verify(reservationService).modifyReservation(bookingId, newDateRange);
+	}
 }
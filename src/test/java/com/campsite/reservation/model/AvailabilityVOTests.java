@@ -1,10 +1,12 @@
 package com.campsite.reservation.model;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.time.LocalDate;
+import java.util.Arrays;
 
 import org.junit.jupiter.api.Test;
 
@@ -44,4 +46,48 @@ public class AvailabilityVOTests {
 		});
 	}
 
+	@Test
+	public void testAddRange_outOfOrder() {
+		LocalDate now = LocalDate.now();
+		AvailabilityVO.Builder builder = AvailabilityVO.builder(new DateRangeVO(now, now.plusMonths(1)));
+		builder.addRange(now.plusDays(5), now.plusDays(10));
+		builder.addRange(now, now.plusDays(3));
+		builder.addRange(now.plusDays(15), now.plusDays(20));
+		builder.addRange(now, now.plusDays(3));
+		AvailabilityVO availability = builder.build();
+
+		assertEquals(availability.getDatesAvailable(),
+				Arrays.asList(new DateRangeVO(now, now.plusDays(3)), new DateRangeVO(now.plusDays(5), now.plusDays(10)),
+						new DateRangeVO(now.plusDays(15), now.plusDays(20))),
+				"Availability must keep date ranges sorted and with no duplicates");
+	}
+
+	@Test
+	public void testCovers() {
+		LocalDate now = LocalDate.now();
+		AvailabilityVO.Builder builder = AvailabilityVO.builder(new DateRangeVO(now, now.plusMonths(1)));
+		builder.addRange(now.plusDays(1), now.plusDays(3));
+		builder.addRange(now.plusDays(5), now.plusDays(10));
+		AvailabilityVO availability = builder.build();
+
+		assertTrue(availability.covers(new DateRangeVO(now.plusDays(5), now.plusDays(10))));
+		assertTrue(availability.covers(new DateRangeVO(now.plusDays(6), now.plusDays(8))));
+		assertFalse(availability.covers(new DateRangeVO(now, now.plusDays(2))));
+		assertFalse(availability.covers(new DateRangeVO(now.plusDays(2), now.plusDays(6))));
+		assertFalse(availability.covers(new DateRangeVO(now.plusDays(9), now.plusDays(11))));
+	}
+
+	@Test
+	public void testCovers_adjacentDateRanges() {
+		LocalDate now = LocalDate.now();
+		AvailabilityVO availability = new AvailabilityVO(
+				Arrays.asList(new DateRangeVO(now, now.plusDays(3)), new DateRangeVO(now.plusDays(3), now.plusDays(6))),
+				new DateRangeVO(now, now.plusMonths(1)));
+
+		assertTrue(availability.covers(new DateRangeVO(now.plusDays(2), now.plusDays(5))));
+		assertFalse(availability.covers(new DateRangeVO(now.plusDays(2), now.plusDays(7))));
+		assertFalse(new AvailabilityVO(null, new DateRangeVO(now, now.plusMonths(1)))
+				.covers(new DateRangeVO(now, now.plusDays(1))));
+	}
+
 }
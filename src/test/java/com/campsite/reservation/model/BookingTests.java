@@ -1,5 +1,6 @@
 package com.campsite.reservation.model;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import java.time.LocalDate;
@@ -14,4 +15,13 @@ public class BookingTests {
 				() -> new Booking("email", "fullname", new DateRangeVO(LocalDate.now(), null)));
 	}
 
+	@Test
+	public void testBookingWithoutSiteInDefaultSite() {
+		Booking booking = new Booking("email", "fullname", new DateRangeVO(LocalDate.now(), LocalDate.now().plusDays(1)));
+		assertEquals(booking.getSiteId(), Booking.DEFAULT_SITE);
+		assertEquals(new Booking().getSiteId(), Booking.DEFAULT_SITE);
+		Booking deserialized = new Booking();
+		deserialized.setSiteId(null);
+		assertEquals(deserialized.getSiteId(), Booking.DEFAULT_SITE);
+	}
 }
@@ -8,11 +8,20 @@ import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.time.LocalDate;
+import java.util.Arrays;
 import java.util.Optional;
 
+import org.bson.Document;
 import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
 import org.springframework.data.util.Pair;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
 public class DateRangeVOTests {
 
 	@Test
@@ -43,6 +52,14 @@ public class DateRangeVOTests {
 		assertEquals(dateRange.totalDays(), 10);
 	}
 
+	@Test
+	public void testNights() {
+		LocalDate now = LocalDate.now();
+		assertEquals(new DateRangeVO(now, now.plusDays(3)).nights(),
+				Arrays.asList(now, now.plusDays(1), now.plusDays(2)));
+		assertEquals(new DateRangeVO(now, now.plusDays(1)).nights(), Arrays.asList(now));
+	}
+
 	@Test
 	public void testIsInsideRange() {
 		LocalDate now = LocalDate.now();
@@ -122,5 +139,59 @@ public class DateRangeVOTests {
 		Pair<Optional<DateRangeVO>, Optional<DateRangeVO>> case9 = oneMonthRange.minus(oneMonthRange);
 		assertEquals(case9.getFirst(), Optional.empty());
 		assertEquals(case9.getSecond(), Optional.empty());
+
+		// The date range to substract starts at the same date
+		Pair<Optional<DateRangeVO>, Optional<DateRangeVO>> case10 = oneMonthRange
+				.minus(new DateRangeVO(now, now.plusDays(10)));
+		assertEquals(case10.getFirst(), Optional.empty());
+		assertTrue(case10.getSecond().get().equals(new DateRangeVO(now.plusDays(10), now.plusMonths(1))));
+
+		// The date range to substract ends at the same date
+		Pair<Optional<DateRangeVO>, Optional<DateRangeVO>> case11 = oneMonthRange
+				.minus(new DateRangeVO(now.plusDays(10), now.plusMonths(1)));
+		assertTrue(case11.getFirst().get().equals(new DateRangeVO(now, now.plusDays(10))));
+		assertEquals(case11.getSecond(), Optional.empty());
+	}
+
+	@Test
+	public void testCompareTo() {
+		LocalDate now = LocalDate.now();
+		DateRangeVO oneMonthRange = new DateRangeVO(now, now.plusMonths(1));
+
+		assertEquals(oneMonthRange.compareTo(new DateRangeVO(now, now.plusMonths(1))), 0);
+		assertTrue(oneMonthRange.compareTo(new DateRangeVO(now.plusDays(1), now.plusDays(2))) < 0);
+		assertTrue(oneMonthRange.compareTo(new DateRangeVO(now, now.plusDays(2))) > 0);
+		assertTrue(oneMonthRange.compareTo(new DateRangeVO(now, null)) < 0);
+		assertEquals(oneMonthRange.hashCode(), new DateRangeVO(now, now.plusMonths(1)).hashCode());
+	}
+
+	@Test
+	public void testJson() throws Exception {
+		ObjectMapper mapper = new ObjectMapper().registerModule(new JavaTimeModule())
+				.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+		LocalDate now = LocalDate.now();
+		DateRangeVO dateRange = new DateRangeVO(now, now.plusDays(3));
+		String json = mapper.writeValueAsString(dateRange);
+		assertEquals(json, String.format("{\"from\":\"%s\",\"to\":\"%s\"}", now, now.plusDays(3)));
+		DateRangeVO read = mapper.readValue(json, DateRangeVO.class);
+		assertEquals(read, dateRange);
+		assertEquals(read.toEpochDay(), now.plusDays(3).toEpochDay());
+		assertTrue(mapper.readValue("{}", DateRangeVO.class).isOpen());
+	}
+
+	@Test
+	public void testMongoMapping() {
+		MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE,
+				new MongoMappingContext());
+		converter.afterPropertiesSet();
+		LocalDate now = LocalDate.now();
+		DateRangeVO dateRange = new DateRangeVO(now.plusDays(10), now.plusDays(12));
+		Document document = new Document();
+		converter.write(dateRange, document);
+		DateRangeVO read = converter.read(DateRangeVO.class, document);
+		assertEquals(read, dateRange);
+		assertEquals(read.fromEpochDay(), now.plusDays(10).toEpochDay());
+		assertEquals(read.toEpochDay(), now.plusDays(12).toEpochDay());
+		assertTrue(converter.read(DateRangeVO.class, new Document("from", document.get("from"))).isOpen());
 	}
 }
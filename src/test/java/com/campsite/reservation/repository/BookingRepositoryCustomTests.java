@@ -1,25 +1,34 @@
 package com.campsite.reservation.repository;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
 
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Collectors;
 
+import org.bson.types.ObjectId;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.Example;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
 import com.campsite.reservation.exception.BookingNotFoundException;
 import com.campsite.reservation.model.Booking;
+import com.campsite.reservation.model.BookingSlot;
+import com.campsite.reservation.model.BookingWrite;
 import com.campsite.reservation.model.DateRangeVO;
 
 @ExtendWith(SpringExtension.class)
@@ -29,6 +38,9 @@ public class BookingRepositoryCustomTests {
 	@Autowired
 	BookingRepository repository;
 
+	@Autowired
+	ReactiveMongoTemplate mongo;
+
 	@BeforeEach
 	public void cleanUp() {
 		repository.deleteAll().block();
@@ -56,7 +68,7 @@ public class BookingRepositoryCustomTests {
 		//
 		// When
 		//
-		List<Booking> retValue = repository.findByDateRange(new DateRangeVO(now.plusDays(1), now.plusDays(15)))
+		List<Booking> retValue = repository.findByDateRange(Booking.DEFAULT_SITE, new DateRangeVO(now.plusDays(1), now.plusDays(15)))
 				.collectList().block();
 
 		//
@@ -71,6 +83,40 @@ public class BookingRepositoryCustomTests {
 		assertTrue(emailsInRetValue.contains(email2));
 	}
 
+	@SuppressWarnings("serial")
+	@Test
+	public void testFindByDateRange_onlyOverlappingSortedByFrom() {
+
+		//
+		// Given
+		//
+		LocalDate now = LocalDate.now();
+		List<Booking> bookings = new ArrayList<Booking>() {
+			{
+				add(new Booking("touchingLeft", "fullName", new DateRangeVO(now.plusDays(8), now.plusDays(10))));
+				add(new Booking("insideRight", "fullName", new DateRangeVO(now.plusDays(17), now.plusDays(19))));
+				add(new Booking("exceedingLeft", "fullName", new DateRangeVO(now.plusDays(9), now.plusDays(11))));
+				add(new Booking("touchingRight", "fullName", new DateRangeVO(now.plusDays(20), now.plusDays(22))));
+				add(new Booking("insideLeft", "fullName", new DateRangeVO(now.plusDays(12), now.plusDays(14))));
+			}
+		};
+		repository.saveAll(bookings).collectList().block();
+
+		//
+		// When
+		//
+		List<Booking> retValue = repository.findByDateRange(Booking.DEFAULT_SITE, new DateRangeVO(now.plusDays(10), now.plusDays(20)))
+				.collectList().block();
+
+		//
+		// Then
+		//
+		assertNotNull(retValue);
+		List<String> emailsInRetValue = retValue.stream().map(booking -> booking.getEmail())
+				.collect(Collectors.toList());
+		assertEquals(Arrays.asList("exceedingLeft", "insideLeft", "insideRight"), emailsInRetValue);
+	}
+
 	@SuppressWarnings("serial")
 	@Test
 	public void testFindByDateRangeExcluding() {
@@ -96,7 +142,7 @@ public class BookingRepositoryCustomTests {
 		// When
 		//
 		List<Booking> retValue = repository
-				.findByDateRangeExcluding(new DateRangeVO(now.plusDays(1), now.plusDays(15)), bookingIdToExclude)
+				.findByDateRangeExcluding(Booking.DEFAULT_SITE, new DateRangeVO(now.plusDays(1), now.plusDays(15)), bookingIdToExclude)
 				.collectList().block();
 
 		//
@@ -110,6 +156,151 @@ public class BookingRepositoryCustomTests {
 		assertTrue(emailsInRetValue.contains(email1));
 	}
 
+	@Test
+	public void testExistsByDateRange() {
+
+		//
+		// Given
+		//
+		LocalDate now = LocalDate.now();
+		Booking booking = repository
+				.save(new Booking("email1", "fullName1", new DateRangeVO(now.plusDays(3), now.plusDays(5)))).block();
+
+		//
+		// When / Then
+		//
+		assertTrue(repository.existsByDateRange(Booking.DEFAULT_SITE, new DateRangeVO(now.plusDays(4), now.plusDays(8)))
+				.block());
+		assertFalse(repository
+				.existsByDateRange(Booking.DEFAULT_SITE, new DateRangeVO(now.plusDays(5), now.plusDays(8))).block());
+		assertFalse(repository.existsByDateRange("other", new DateRangeVO(now.plusDays(4), now.plusDays(8))).block());
+		assertFalse(repository.existsByDateRangeExcluding(Booking.DEFAULT_SITE,
+				new DateRangeVO(now.plusDays(4), now.plusDays(8)), booking.getId()).block());
+	}
+
+	@SuppressWarnings("serial")
+	@Test
+	public void testFindByDateRange_onlyGivenSite() {
+
+		//
+		// Given
+		//
+		LocalDate now = LocalDate.now();
+		DateRangeVO dateRange = new DateRangeVO(now.plusDays(3), now.plusDays(5));
+		List<Booking> bookings = new ArrayList<Booking>() {
+			{
+				add(new Booking(null, "site1", "email1", "fullName1", dateRange));
+				add(new Booking(null, "site2", "email2", "fullName2", dateRange));
+			}
+		};
+		repository.saveAll(bookings).collectList().block();
+
+		//
+		// When
+		//
+		List<Booking> retValue = repository.findByDateRange("site2", new DateRangeVO(now, now.plusDays(10)))
+				.collectList().block();
+
+		//
+		// Then
+		//
+		assertNotNull(retValue);
+		assertEquals(retValue.size(), 1);
+		assertEquals(retValue.get(0).getEmail(), "email2");
+	}
+
+	@Test
+	public void testSave_withoutSiteSavedInDefaultSite() {
+
+		//
+		// Given
+		//
+		LocalDate now = LocalDate.now();
+		Booking withoutSite = new Booking("email1", "fullName1", new DateRangeVO(now.plusDays(3), now.plusDays(5)));
+
+		//
+		// When
+		//
+		repository.save(withoutSite).block();
+
+		//
+		// Then
+		//
+		assertEquals(mongo.count(query(where("siteId").is(Booking.DEFAULT_SITE)), Booking.class).block(), 1);
+		assertEquals(repository.findByDateRange(Booking.DEFAULT_SITE, new DateRangeVO(now, now.plusDays(10)))
+				.collectList().block().size(), 1);
+		assertTrue(repository.existsByDateRange(Booking.DEFAULT_SITE, new DateRangeVO(now.plusDays(4), now.plusDays(8)))
+				.block());
+	}
+
+	@SuppressWarnings("serial")
+	@Test
+	public void testFindSiteIdsByDateRange() {
+
+		//
+		// Given
+		//
+		LocalDate now = LocalDate.now();
+		List<Booking> bookings = new ArrayList<Booking>() {
+			{
+				add(new Booking(null, "site1", "email1", "fullName1", new DateRangeVO(now.plusDays(3), now.plusDays(5))));
+				add(new Booking(null, "site1", "email2", "fullName2", new DateRangeVO(now.plusDays(5), now.plusDays(7))));
+				add(new Booking(null, "site2", "email3", "fullName3", new DateRangeVO(now.plusDays(6), now.plusDays(8))));
+				add(new Booking(null, "site3", "email4", "fullName4", new DateRangeVO(now.plusDays(8), now.plusDays(9))));
+			}
+		};
+		repository.saveAll(bookings).collectList().block();
+
+		//
+		// When
+		//
+		List<String> retValue = repository.findSiteIdsByDateRange(new DateRangeVO(now.plusDays(4), now.plusDays(8)))
+				.collectList().block();
+
+		//
+		// Then
+		//
+		assertNotNull(retValue);
+		assertEquals(retValue.size(), 2);
+		assertTrue(retValue.containsAll(Arrays.asList("site1", "site2")));
+	}
+
+	@SuppressWarnings("serial")
+	@Test
+	public void testFindSlotsByDateRange() {
+
+		//
+		// Given
+		//
+		LocalDate now = LocalDate.now();
+		DateRangeVO dateRange1 = new DateRangeVO(now.plusDays(3), now.plusDays(5));
+		DateRangeVO dateRange2 = new DateRangeVO(now.plusDays(8), now.plusDays(10));
+		List<Booking> bookings = new ArrayList<Booking>() {
+			{
+				add(new Booking("email2", "fullName2", dateRange2));
+				add(new Booking("email1", "fullName1", dateRange1));
+				add(new Booking("email3", "fullName3", new DateRangeVO(now.plusDays(20), now.plusDays(22))));
+			}
+		};
+		List<String> ids = repository.saveAll(bookings).map(booking -> booking.getId()).collectList().block();
+
+		//
+		// When
+		//
+		List<BookingSlot> retValue = repository
+				.findSlotsByDateRange(Booking.DEFAULT_SITE, new DateRangeVO(now.plusDays(1), now.plusDays(15))).collectList().block();
+
+		//
+		// Then
+		//
+		assertNotNull(retValue);
+		assertEquals(retValue.size(), 2);
+		assertEquals(retValue.get(0).getId(), ids.get(1));
+		assertEquals(retValue.get(0).getDateRange(), dateRange1);
+		assertEquals(retValue.get(1).getId(), ids.get(0));
+		assertEquals(retValue.get(1).getDateRange(), dateRange2);
+	}
+
 	@SuppressWarnings("serial")
 	@Test
 	public void testDeleteById_ok() {
@@ -166,6 +357,55 @@ public class BookingRepositoryCustomTests {
 		assertThrows(BookingNotFoundException.class, () -> repository.customDeleteById(nonExistentBookingId).block());
 	}
 
+	@Test
+	public void testFindAllIds() {
+
+		//
+		// Given
+		//
+		LocalDate now = LocalDate.now();
+		Booking booking1 = repository
+				.save(new Booking("email1", "fullName1", new DateRangeVO(now.plusDays(3), now.plusDays(5)))).block();
+		Booking booking2 = repository
+				.save(new Booking("email2", "fullName2", new DateRangeVO(now.plusDays(8), now.plusDays(10)))).block();
+
+		//
+		// When
+		//
+		List<String> ids = repository.findAllIds().collectList().block();
+
+		//
+		// Then
+		//
+		assertEquals(ids.size(), 2);
+		assertTrue(ids.containsAll(Arrays.asList(booking1.getId(), booking2.getId())));
+	}
+
+	@Test
+	public void testDeleteById_returnsBookingAsRemoved() {
+
+		//
+		// Given
+		//
+		LocalDate now = LocalDate.now();
+		Booking booking = repository
+				.save(new Booking("email", "fullName", new DateRangeVO(now.plusDays(8), now.plusDays(10)))).block();
+		DateRangeVO newDateRange = new DateRangeVO(now.plusDays(9), now.plusDays(11));
+		repository.customUpdate(Booking.from(booking, newDateRange)).block();
+
+		//
+		// When
+		//
+		Booking deleted = repository.customDeleteById(booking.getId()).block();
+
+		//
+		// Then
+		//
+		assertEquals(deleted.getDateRange(), newDateRange);
+		assertEquals(deleted.getVersion(), Long.valueOf(1));
+		assertEquals(repository.count().block(), 0);
+	}
+
 	@SuppressWarnings("serial")
 	@Test
 	public void testFindById_ok() {
@@ -213,4 +453,124 @@ public class BookingRepositoryCustomTests {
 		//
 		assertThrows(BookingNotFoundException.class, () -> repository.customFindById(nonExistentBookingId).block());
 	}
+
+	@Test
+	public void testUpdate_ok() {
+
+		//
+		// Given
+		//
+		LocalDate now = LocalDate.now();
+		Booking booking = repository
+				.save(new Booking("email", "fullName", new DateRangeVO(now.plusDays(8), now.plusDays(10)))).block();
+		DateRangeVO newDateRange = new DateRangeVO(now.plusDays(9), now.plusDays(11));
+
+		//
+		// When
+		//
+		Booking updated = repository.customUpdate(Booking.from(booking, newDateRange)).block();
+
+		//
+		// Then
+		//
+		assertNotNull(updated);
+		assertEquals(updated.getDateRange(), newDateRange);
+		assertEquals(updated.getVersion(), booking.getVersion() + 1);
+		assertEquals(repository.customFindById(booking.getId()).block().getDateRange(), newDateRange);
+	}
+
+	@Test
+	public void testUpdate_concurrentModification() {
+
+		//
+		// Given
+		//
+		LocalDate now = LocalDate.now();
+		Booking booking = repository
+				.save(new Booking("email", "fullName", new DateRangeVO(now.plusDays(8), now.plusDays(10)))).block();
+		repository.customUpdate(Booking.from(booking, new DateRangeVO(now.plusDays(9), now.plusDays(11)))).block();
+
+		//
+		// When / Then
+		//
+		assertThrows(OptimisticLockingFailureException.class, () -> repository
+				.customUpdate(Booking.from(booking, new DateRangeVO(now.plusDays(12), now.plusDays(14)))).block());
+	}
+
+	@Test
+	public void testUpdate_cancelled() {
+
+		//
+		// Given
+		//
+		LocalDate now = LocalDate.now();
+		Booking booking = repository
+				.save(new Booking("email", "fullName", new DateRangeVO(now.plusDays(8), now.plusDays(10)))).block();
+		repository.customDeleteById(booking.getId()).block();
+
+		//
+		// When / Then
+		//
+		assertThrows(BookingNotFoundException.class, () -> repository
+				.customUpdate(Booking.from(booking, new DateRangeVO(now.plusDays(12), now.plusDays(14)))).block());
+		assertEquals(repository.count().block(), 0);
+	}
+
+	@Test
+	public void testBulkWrite_ok() {
+
+		//
+		// Given
+		//
+		LocalDate now = LocalDate.now();
+		Booking toModify = repository
+				.save(new Booking("email1", "fullName1", new DateRangeVO(now.plusDays(8), now.plusDays(10)))).block();
+		Booking toCancel = repository
+				.save(new Booking("email2", "fullName2", new DateRangeVO(now.plusDays(12), now.plusDays(14)))).block();
+		Booking toInsert = new Booking(new ObjectId().toHexString(), Booking.DEFAULT_SITE, "email3", "fullName3",
+				new DateRangeVO(now.plusDays(3), now.plusDays(5)));
+		DateRangeVO newDateRange = new DateRangeVO(now.plusDays(9), now.plusDays(11));
+
+		//
+		// When
+		//
+		Integer applied = repository.bulkWrite(Arrays.asList(new BookingWrite(BookingWrite.Type.INSERT, toInsert),
+				new BookingWrite(BookingWrite.Type.UPDATE, Booking.from(toModify, newDateRange)),
+				new BookingWrite(BookingWrite.Type.DELETE, toCancel))).block();
+
+		//
+		// Then
+		//
+		assertEquals(applied, 3);
+		assertEquals(repository.customFindById(toInsert.getId()).block().getVersion(), Long.valueOf(0));
+		Booking modified = repository.customFindById(toModify.getId()).block();
+		assertEquals(modified.getDateRange(), newDateRange);
+		assertEquals(modified.getVersion(), toModify.getVersion() + 1);
+		assertEquals(repository.count().block(), 2);
+	}
+
+	@Test
+	public void testBulkWrite_stopsAtFailedWrite() {
+
+		//
+		// Given
+		//
+		LocalDate now = LocalDate.now();
+		Booking existing = repository
+				.save(new Booking("email1", "fullName1", new DateRangeVO(now.plusDays(8), now.plusDays(10)))).block();
+		Booking toInsert = new Booking(new ObjectId().toHexString(), Booking.DEFAULT_SITE, "email2", "fullName2",
+				new DateRangeVO(now.plusDays(3), now.plusDays(5)));
+
+		//
+		// When
+		//
+		Integer applied = repository.bulkWrite(Arrays.asList(new BookingWrite(BookingWrite.Type.INSERT, existing),
+				new BookingWrite(BookingWrite.Type.INSERT, toInsert))).block();
+
+		//
+		// Then
+		//
+		assertEquals(applied, 0);
+		assertEquals(repository.count().block(), 1);
+	}
 }
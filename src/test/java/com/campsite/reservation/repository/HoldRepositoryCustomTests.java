@@ -0,0 +1,122 @@
+package com.campsite.reservation.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import com.campsite.reservation.exception.HoldNotFoundException;
+import com.campsite.reservation.model.Booking;
+import com.campsite.reservation.model.BookingSlot;
+import com.campsite.reservation.model.DateRangeVO;
+import com.campsite.reservation.model.Hold;
+
+@ExtendWith(SpringExtension.class)
+@DataMongoTest
+public class HoldRepositoryCustomTests {
+
+	@Autowired
+	HoldRepository repository;
+
+	LocalDate now = LocalDate.now();
+
+	@BeforeEach
+	public void cleanUp() {
+		repository.deleteAll().block();
+		repository.ensureIndexes().block();
+	}
+
+	@Test
+	public void testFindSlotsByDateRange_onlyNotExpired() {
+
+		//
+		// Given
+		//
+		Hold active = repository.insert(hold(now.plusDays(3), now.plusDays(5), Instant.now().plusSeconds(600)))
+				.block();
+		repository.insert(hold(now.plusDays(1), now.plusDays(2), Instant.now().minusSeconds(1))).block();
+		repository.insert(hold(now.plusDays(20), now.plusDays(22), Instant.now().plusSeconds(600))).block();
+
+		//
+		// When
+		//
+		List<BookingSlot> slots = repository
+				.findSlotsByDateRange(Booking.DEFAULT_SITE, new DateRangeVO(now, now.plusDays(10))).collectList()
+				.block();
+
+		//
+		// Then
+		//
+		assertEquals(slots.size(), 1);
+		assertEquals(slots.get(0).getId(), active.getId());
+		assertEquals(slots.get(0).getDateRange(), active.getDateRange());
+	}
+
+	@Test
+	public void testExistsByDateRangeExcluding() {
+
+		//
+		// Given
+		//
+		Hold hold = repository.insert(hold(now.plusDays(3), now.plusDays(5), Instant.now().plusSeconds(600)))
+				.block();
+		DateRangeVO overlapping = new DateRangeVO(now.plusDays(4), now.plusDays(8));
+
+		//
+		// When / Then
+		//
+		assertTrue(repository.existsByDateRange(Booking.DEFAULT_SITE, overlapping).block());
+		assertFalse(repository.existsByDateRangeExcluding(Booking.DEFAULT_SITE, overlapping, hold.getId()).block());
+	}
+
+	@Test
+	public void testFindActiveById_ok() {
+
+		//
+		// Given
+		//
+		Hold hold = repository.insert(hold(now.plusDays(3), now.plusDays(5), Instant.now().plusSeconds(600)))
+				.block();
+
+		//
+		// When
+		//
+		Hold found = repository.findActiveById(hold.getId()).block();
+
+		//
+		// Then
+		//
+		assertEquals(found.getId(), hold.getId());
+		assertEquals(found.getDateRange(), hold.getDateRange());
+	}
+
+	@Test
+	public void testFindActiveById_expired() {
+
+		//
+		// Given
+		//
+		Hold hold = repository.insert(hold(now.plusDays(3), now.plusDays(5), Instant.now().minusSeconds(1)))
+				.block();
+
+		//
+		// When / Then
+		//
+		assertThrows(HoldNotFoundException.class, () -> repository.findActiveById(hold.getId()).block());
+	}
+
+	private Hold hold(LocalDate from, LocalDate to, Instant expiresAt) {
+		return new Hold(new Booking("email", "fullName", new DateRangeVO(from, to)), expiresAt);
+	}
+}
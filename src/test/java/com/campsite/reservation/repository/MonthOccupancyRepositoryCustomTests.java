@@ -0,0 +1,179 @@
+package com.campsite.reservation.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import com.campsite.reservation.model.Booking;
+import com.campsite.reservation.model.DateRangeVO;
+import com.campsite.reservation.model.MonthOccupancy;
+
+@ExtendWith(SpringExtension.class)
+@DataMongoTest
+public class MonthOccupancyRepositoryCustomTests {
+
+	@Autowired
+	MonthOccupancyRepository repository;
+
+	YearMonth month = YearMonth.now().plusMonths(1);
+
+	@BeforeEach
+	public void cleanUp() {
+		repository.deleteAll().block();
+		repository.ensureIndexes().block();
+	}
+
+	@Test
+	public void testClaimNights_ok() {
+
+		//
+		// Given
+		//
+		repository.claimNights(Booking.DEFAULT_SITE, "booking1", Arrays.asList(month.atDay(1), month.atDay(2)))
+				.block();
+
+		//
+		// When
+		//
+		Boolean claimed = repository
+				.claimNights(Booking.DEFAULT_SITE, "booking2", Arrays.asList(month.atDay(3), month.atDay(4))).block();
+
+		//
+		// Then
+		//
+		MonthOccupancy occupancy = repository.findById(MonthOccupancy.idFor(Booking.DEFAULT_SITE, month)).block();
+		assertTrue(claimed);
+		assertEquals(repository.count().block(), 1);
+		assertEquals(occupancy.getMask(), 0b1111);
+		assertEquals(occupancy.getBookingIds().get("3"), "booking2");
+	}
+
+	@Test
+	public void testClaimNights_alreadyTaken() {
+
+		//
+		// Given
+		//
+		List<LocalDate> acrossMonths = Arrays.asList(month.atEndOfMonth(), month.plusMonths(1).atDay(1));
+		repository.claimNights(Booking.DEFAULT_SITE, "booking1", Arrays.asList(month.plusMonths(1).atDay(1)))
+				.block();
+
+		//
+		// When
+		//
+		Boolean claimed = repository.claimNights(Booking.DEFAULT_SITE, "booking2", acrossMonths).block();
+
+		//
+		// Then
+		//
+		assertFalse(claimed);
+		assertEquals(repository.findById(MonthOccupancy.idFor(Booking.DEFAULT_SITE, month)).block().getMask(), 0);
+		assertEquals(repository.findById(MonthOccupancy.idFor(Booking.DEFAULT_SITE, month.plusMonths(1))).block()
+				.getBookingIds().get("1"), "booking1");
+	}
+
+	@Test
+	public void testReleaseNights_onlyOwnNights() {
+
+		//
+		// Given
+		//
+		repository.claimNights(Booking.DEFAULT_SITE, "booking1", Arrays.asList(month.atDay(1), month.atDay(2)))
+				.block();
+
+		//
+		// When
+		//
+		repository.releaseNights(Booking.DEFAULT_SITE, "booking2", Arrays.asList(month.atDay(1))).block();
+		repository.releaseNights(Booking.DEFAULT_SITE, "booking1", Arrays.asList(month.atDay(2))).block();
+
+		//
+		// Then
+		//
+		MonthOccupancy occupancy = repository.findById(MonthOccupancy.idFor(Booking.DEFAULT_SITE, month)).block();
+		assertEquals(occupancy.getMask(), 0b1);
+		assertEquals(occupancy.getBookingIds().size(), 1);
+	}
+
+	@Test
+	public void testReleaseNights_sharedMonth() {
+
+		//
+		// Given
+		//
+		repository.claimNights(Booking.DEFAULT_SITE, "booking1", Arrays.asList(month.atDay(1), month.atDay(2)))
+				.block();
+		repository.claimNights(Booking.DEFAULT_SITE, "booking2", Arrays.asList(month.atDay(3))).block();
+
+		//
+		// When
+		//
+		repository.releaseNights(Booking.DEFAULT_SITE, "booking1",
+				Arrays.asList(month.atDay(1), month.atDay(2), month.atDay(3))).block();
+
+		//
+		// Then
+		//
+		MonthOccupancy occupancy = repository.findById(MonthOccupancy.idFor(Booking.DEFAULT_SITE, month)).block();
+		assertEquals(occupancy.getMask(), 0b100);
+		assertEquals(occupancy.getBookingIds().get("3"), "booking2");
+	}
+
+	@Test
+	public void testFindFrom() {
+
+		//
+		// Given
+		//
+		repository.claimNights(Booking.DEFAULT_SITE, "booking1", Arrays.asList(month.minusMonths(1).atDay(1)))
+				.block();
+		repository.claimNights("site2", "booking2", Arrays.asList(month.atDay(1))).block();
+
+		//
+		// When
+		//
+		List<MonthOccupancy> months = repository.findFrom(month).collectList().block();
+
+		//
+		// Then
+		//
+		assertEquals(months.size(), 1);
+		assertEquals(months.get(0).getId(), MonthOccupancy.idFor("site2", month));
+	}
+
+	@Test
+	public void testFindByDateRange() {
+
+		//
+		// Given
+		//
+		repository.claimNights(Booking.DEFAULT_SITE, "booking1", Arrays.asList(month.atDay(1))).block();
+		repository.claimNights(Booking.DEFAULT_SITE, "booking2", Arrays.asList(month.plusMonths(1).atDay(1))).block();
+		repository.claimNights("site2", "booking3", Arrays.asList(month.atDay(1))).block();
+
+		//
+		// When
+		//
+		List<MonthOccupancy> months = repository
+				.findByDateRange(Booking.DEFAULT_SITE, new DateRangeVO(month.atDay(10), month.plusMonths(1).atDay(1)))
+				.collectList().block();
+
+		//
+		// Then
+		//
+		assertEquals(months.size(), 1);
+		assertEquals(months.get(0).getId(), MonthOccupancy.idFor(Booking.DEFAULT_SITE, month));
+	}
+}
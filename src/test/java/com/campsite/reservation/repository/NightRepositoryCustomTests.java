@@ -0,0 +1,128 @@
+package com.campsite.reservation.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import com.campsite.reservation.model.Booking;
+import com.campsite.reservation.model.Night;
+
+@ExtendWith(SpringExtension.class)
+@DataMongoTest
+public class NightRepositoryCustomTests {
+
+	@Autowired
+	NightRepository repository;
+
+	@BeforeEach
+	public void cleanUp() {
+		repository.deleteAll().block();
+		repository.ensureIndexes().block();
+	}
+
+	@Test
+	public void testClaimNights_ok() {
+
+		//
+		// Given
+		//
+		LocalDate now = LocalDate.now();
+		repository.claimNights(Booking.DEFAULT_SITE, "booking1", Arrays.asList(now.plusDays(1), now.plusDays(2)))
+				.block();
+
+		//
+		// When
+		//
+		Boolean claimed = repository
+				.claimNights(Booking.DEFAULT_SITE, "booking2", Arrays.asList(now.plusDays(3), now.plusDays(4))).block();
+
+		//
+		// Then
+		//
+		assertTrue(claimed);
+		assertEquals(repository.findAll().count().block(), 4);
+	}
+
+	@Test
+	public void testClaimNights_alreadyTaken() {
+
+		//
+		// Given
+		//
+		LocalDate now = LocalDate.now();
+		repository.claimNights(Booking.DEFAULT_SITE, "booking1", Arrays.asList(now.plusDays(3))).block();
+
+		//
+		// When
+		//
+		Boolean claimed = repository
+				.claimNights(Booking.DEFAULT_SITE, "booking2",
+						Arrays.asList(now.plusDays(1), now.plusDays(2), now.plusDays(3)))
+				.block();
+
+		//
+		// Then
+		//
+		assertFalse(claimed);
+		List<Night> remaining = repository.findAll().collectList().block();
+		assertEquals(remaining.size(), 1);
+		assertEquals(remaining.get(0).getBookingId(), "booking1");
+	}
+
+	@Test
+	public void testReleaseNights_onlyOwnNights() {
+
+		//
+		// Given
+		//
+		LocalDate now = LocalDate.now();
+		repository.claimNights(Booking.DEFAULT_SITE, "booking1", Arrays.asList(now.plusDays(1), now.plusDays(2)))
+				.block();
+		repository.claimNights(Booking.DEFAULT_SITE, "booking2", Arrays.asList(now.plusDays(3))).block();
+
+		//
+		// When
+		//
+		repository.releaseNights("booking1", Arrays.asList(now.plusDays(2), now.plusDays(3))).block();
+
+		//
+		// Then
+		//
+		List<LocalDate> remaining = repository.findAll().map(night -> night.getDate()).collectList().block()
+				.stream().sorted().collect(Collectors.toList());
+		assertEquals(remaining, Arrays.asList(now.plusDays(1), now.plusDays(3)));
+	}
+
+	@Test
+	public void testClaimNights_otherSite() {
+
+		//
+		// Given
+		//
+		LocalDate now = LocalDate.now();
+		repository.claimNights(Booking.DEFAULT_SITE, "booking1", Arrays.asList(now.plusDays(1))).block();
+
+		//
+		// When
+		//
+		Boolean claimed = repository.claimNights("site2", "booking2", Arrays.asList(now.plusDays(1))).block();
+
+		//
+		// Then
+		//
+		assertTrue(claimed);
+		assertEquals(repository.findAll().count().block(), 2);
+	}
+}
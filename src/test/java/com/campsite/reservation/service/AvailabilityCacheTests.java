@@ -0,0 +1,183 @@
+package com.campsite.reservation.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import com.campsite.reservation.event.BookingEvent;
+import com.campsite.reservation.model.AvailabilityVO;
+import com.campsite.reservation.model.Booking;
+import com.campsite.reservation.model.DateRangeVO;
+import com.campsite.reservation.service.impl.AvailabilityCache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Mono;
+
+public class AvailabilityCacheTests {
+
+	AvailabilityCache cache;
+
+	SimpleMeterRegistry meterRegistry;
+
+	AtomicInteger calculations;
+
+	LocalDate now = LocalDate.now();
+
+	@BeforeEach
+	public void beforeEach() {
+		meterRegistry = new SimpleMeterRegistry();
+		cache = new AvailabilityCache(new MockEnvironment(), meterRegistry);
+		calculations = new AtomicInteger();
+	}
+
+	@Test
+	public void testGet_cached() {
+
+		//
+		// Given
+		//
+		DateRangeVO dateRange = new DateRangeVO(now, now.plusMonths(1));
+
+		//
+		// When
+		//
+		AvailabilityVO first = cache.get(Booking.DEFAULT_SITE, dateRange, () -> calculate(dateRange)).block();
+		AvailabilityVO second = cache.get(Booking.DEFAULT_SITE, dateRange, () -> calculate(dateRange)).block();
+
+		//
+		// Then
+		//
+		assertEquals(first, second);
+		assertEquals(calculations.get(), 1);
+		assertEquals(meterRegistry.get("cache.gets").tag("cache", "availability").tag("result", "hit")
+				.functionCounter().count(), 1.0);
+	}
+
+	@Test
+	public void testGet_copies() {
+
+		//
+		// Given
+		//
+		DateRangeVO dateRange = new DateRangeVO(now, now.plusMonths(1));
+		AvailabilityVO first = cache.get(Booking.DEFAULT_SITE, dateRange, () -> calculate(dateRange)).block();
+
+		//
+		// When
+		//
+		first.getDatesAvailable().clear();
+		AvailabilityVO second = cache.get(Booking.DEFAULT_SITE, dateRange, () -> calculate(dateRange)).block();
+		second.getDatesAvailable().clear();
+		AvailabilityVO third = cache.get(Booking.DEFAULT_SITE, dateRange, () -> calculate(dateRange)).block();
+
+		//
+		// Then
+		//
+		assertEquals(calculations.get(), 1);
+		assertEquals(third.getDatesAvailable(), Arrays.asList(dateRange));
+	}
+
+	@Test
+	public void testOnBookingEvent_invalidatesOnlyOverlapping() {
+
+		//
+		// Given
+		//
+		DateRangeVO overlapping = new DateRangeVO(now, now.plusDays(10));
+		DateRangeVO touching = new DateRangeVO(now.plusDays(10), now.plusDays(20));
+		cache.get(Booking.DEFAULT_SITE, overlapping, () -> calculate(overlapping)).block();
+		cache.get(Booking.DEFAULT_SITE, touching, () -> calculate(touching)).block();
+		Booking booking = new Booking("id", "email", "fullName", new DateRangeVO(now.plusDays(8), now.plusDays(10)));
+
+		//
+		// When
+		//
+		cache.onBookingEvent(BookingEvent.created(booking));
+
+		//
+		// Then
+		//
+		assertEquals(cache.size(), 1);
+		cache.get(Booking.DEFAULT_SITE, touching, () -> calculate(touching)).block();
+		assertEquals(calculations.get(), 2);
+		cache.get(Booking.DEFAULT_SITE, overlapping, () -> calculate(overlapping)).block();
+		assertEquals(calculations.get(), 3);
+	}
+
+	@Test
+	public void testOnBookingEvent_modifiedInvalidatesPreviousDateRange() {
+
+		//
+		// Given
+		//
+		DateRangeVO dateRange = new DateRangeVO(now, now.plusDays(10));
+		cache.get(Booking.DEFAULT_SITE, dateRange, () -> calculate(dateRange)).block();
+		Booking booking = new Booking("id", "email", "fullName", new DateRangeVO(now.plusDays(12), now.plusDays(14)));
+
+		//
+		// When
+		//
+		cache.onBookingEvent(BookingEvent.modified(booking, new DateRangeVO(now.plusDays(2), now.plusDays(4))));
+
+		//
+		// Then
+		//
+		assertEquals(cache.size(), 0);
+	}
+
+	@Test
+	public void testGet_notCachedWhenBookingChangedWhileCalculating() {
+
+		//
+		// Given
+		//
+		DateRangeVO dateRange = new DateRangeVO(now, now.plusDays(10));
+		Booking booking = new Booking("id", "email", "fullName", new DateRangeVO(now.plusDays(2), now.plusDays(4)));
+
+		//
+		// When
+		//
+		cache.get(Booking.DEFAULT_SITE, dateRange, () -> calculate(dateRange)
+				.doOnNext(availability -> cache.onBookingEvent(BookingEvent.created(booking)))).block();
+
+		//
+		// Then
+		//
+		assertEquals(cache.size(), 0);
+	}
+
+	private Mono<AvailabilityVO> calculate(DateRangeVO dateRange) {
+		return Mono.fromSupplier(() -> {
+			calculations.incrementAndGet();
+			return AvailabilityVO.builder(dateRange).addRange(dateRange).build();
+		});
+	}
+
+	@Test
+	public void testOnBookingEvent_otherSiteNotInvalidated() {
+
+		//
+		// Given
+		//
+		DateRangeVO dateRange = new DateRangeVO(now, now.plusDays(10));
+		cache.get(Booking.DEFAULT_SITE, dateRange, () -> calculate(dateRange)).block();
+		Booking booking = new Booking(null, "site2", "email", "fullName",
+				new DateRangeVO(now.plusDays(2), now.plusDays(4)));
+
+		//
+		// When
+		//
+		cache.onBookingEvent(BookingEvent.created(booking));
+
+		//
+		// Then
+		//
+		assertEquals(cache.size(), 1);
+	}
+}
@@ -0,0 +1,129 @@
+package com.campsite.reservation.service;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.time.LocalDate;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import com.campsite.reservation.event.BookingEvent;
+import com.campsite.reservation.model.AvailabilityVO;
+import com.campsite.reservation.model.Booking;
+import com.campsite.reservation.model.DateRangeVO;
+import com.campsite.reservation.service.impl.AvailabilityChanges;
+
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+public class AvailabilityChangesTests {
+
+	AvailabilityService availabilityService;
+
+	AvailabilityChanges availabilityChanges;
+
+	LocalDate now = LocalDate.now();
+
+	@BeforeEach
+	public void beforeEach() {
+		availabilityService = mock(AvailabilityService.class);
+		availabilityChanges = new AvailabilityChanges(new MockEnvironment(), availabilityService);
+	}
+
+	@Test
+	public void testWatch_changeClippedToDateRange() {
+
+		//
+		// Given
+		//
+		DateRangeVO bookedDateRange = new DateRangeVO(now.plusDays(8), now.plusDays(12));
+		when(availabilityService.calculateAvailability(eq(Booking.DEFAULT_SITE), eq(bookedDateRange))).thenReturn(
+				Mono.just(AvailabilityVO.builder(bookedDateRange).build()));
+		Booking booking = new Booking("id", "email", "fullName", bookedDateRange);
+
+		//
+		// When / Then
+		//
+		StepVerifier.create(availabilityChanges.watch(Booking.DEFAULT_SITE, new DateRangeVO(now, now.plusDays(10))))
+				.then(() -> availabilityChanges.onBookingEvent(BookingEvent.created(booking)))
+				.expectNext(AvailabilityVO.builder(new DateRangeVO(now.plusDays(8), now.plusDays(10))).build())
+				.thenCancel().verify();
+	}
+
+	@Test
+	public void testWatch_modifiedShowsReleasedDates() {
+
+		//
+		// Given
+		//
+		DateRangeVO previousDateRange = new DateRangeVO(now.plusDays(2), now.plusDays(4));
+		DateRangeVO newDateRange = new DateRangeVO(now.plusDays(5), now.plusDays(6));
+		DateRangeVO changed = new DateRangeVO(now.plusDays(2), now.plusDays(6));
+		when(availabilityService.calculateAvailability(eq(Booking.DEFAULT_SITE), eq(changed))).thenReturn(Mono.just(
+				AvailabilityVO.builder(changed).addRange(new DateRangeVO(now.plusDays(2), now.plusDays(5))).build()));
+		Booking booking = new Booking("id", "email", "fullName", newDateRange);
+
+		//
+		// When / Then
+		//
+		StepVerifier.create(availabilityChanges.watch(Booking.DEFAULT_SITE, new DateRangeVO(now, now.plusDays(10))))
+				.then(() -> availabilityChanges.onBookingEvent(BookingEvent.modified(booking, previousDateRange)))
+				.expectNext(AvailabilityVO.builder(changed)
+						.addRange(new DateRangeVO(now.plusDays(2), now.plusDays(5))).build())
+				.thenCancel().verify();
+	}
+
+	@Test
+	public void testWatch_notOverlapping() {
+
+		//
+		// Given
+		//
+		DateRangeVO bookedDateRange = new DateRangeVO(now.plusDays(10), now.plusDays(12));
+		when(availabilityService.calculateAvailability(eq(Booking.DEFAULT_SITE), eq(bookedDateRange))).thenReturn(
+				Mono.just(AvailabilityVO.builder(bookedDateRange).build()));
+		Booking booking = new Booking("id", "email", "fullName", bookedDateRange);
+
+		//
+		// When / Then
+		//
+		StepVerifier.create(availabilityChanges.watch(Booking.DEFAULT_SITE, new DateRangeVO(now, now.plusDays(10))))
+				.then(() -> availabilityChanges.onBookingEvent(BookingEvent.created(booking)))
+				.expectNoEvent(Duration.ofMillis(100)).thenCancel().verify();
+	}
+
+	@Test
+	public void testWatch_calculatedOncePerEvent() {
+
+		//
+		// Given
+		//
+		DateRangeVO bookedDateRange = new DateRangeVO(now.plusDays(2), now.plusDays(4));
+		when(availabilityService.calculateAvailability(any(String.class), any(DateRangeVO.class))).thenReturn(
+				Mono.just(AvailabilityVO.builder(bookedDateRange).build()));
+		Booking booking = new Booking("id", "email", "fullName", bookedDateRange);
+		StepVerifier first = StepVerifier.create(availabilityChanges.watch(Booking.DEFAULT_SITE, new DateRangeVO(now, now.plusDays(10))))
+				.expectNextCount(1).thenCancel().verifyLater();
+		StepVerifier second = StepVerifier.create(availabilityChanges.watch(Booking.DEFAULT_SITE, new DateRangeVO(now, now.plusDays(3))))
+				.expectNextCount(1).thenCancel().verifyLater();
+
+		//
+		// When
+		//
+		availabilityChanges.onBookingEvent(BookingEvent.cancelled(booking));
+
+		//
+		// Then
+		//
+		first.verify();
+		second.verify();
+		verify(availabilityService, times(1)).calculateAvailability(Booking.DEFAULT_SITE, bookedDateRange);
+	}
+}
@@ -2,25 +2,38 @@ package com.campsite.reservation.service;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.time.LocalDate;
 import java.util.Arrays;
 
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.springframework.boot.test.context.SpringBootTest;
 
-import com.campsite.reservation.model.AvailabilityVO;
 import com.campsite.reservation.model.Booking;
+import com.campsite.reservation.model.AvailabilityVO;
+import com.campsite.reservation.model.BookingSlot;
 import com.campsite.reservation.model.DateRangeVO;
 import com.campsite.reservation.repository.BookingRepository;
+import com.campsite.reservation.repository.HoldRepository;
 import com.campsite.reservation.service.impl.AvailabilityServiceImpl;
+import com.campsite.reservation.service.impl.ReservationMetrics;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.MonoProcessor;
+import reactor.test.StepVerifier;
+import reactor.test.publisher.TestPublisher;
 
 @SpringBootTest
 public class AvailabilityServiceTests {
@@ -28,9 +41,50 @@ public class AvailabilityServiceTests {
 	@Mock
 	BookingRepository bookingRepository;
 
+	SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	@Spy
+	ReservationMetrics metrics = new ReservationMetrics(meterRegistry);
+
+	@Mock
+	HoldRepository holdRepository;
+
 	@InjectMocks
 	AvailabilityService service = new AvailabilityServiceImpl();
 
+	@BeforeEach
+	public void beforeEach() {
+		when(holdRepository.findSlotsByDateRange(any(), any())).thenReturn(Flux.empty());
+		when(holdRepository.findSlotsByDateRangeExcluding(any(), any(), any())).thenReturn(Flux.empty());
+	}
+
+	@Test
+	public void testCalculateAvailability_holdsTaken() {
+
+		//
+		// Given
+		//
+		LocalDate now = LocalDate.now();
+		DateRangeVO dateRange = new DateRangeVO(now, now.plusMonths(1));
+		when(bookingRepository.findSlotsByDateRange(eq(Booking.DEFAULT_SITE), eq(dateRange))).thenReturn(
+				Flux.just(new BookingSlot("booking1", new DateRangeVO(now.plusDays(10), now.plusDays(12)))));
+		when(holdRepository.findSlotsByDateRange(eq(Booking.DEFAULT_SITE), eq(dateRange))).thenReturn(Flux.just(
+				new BookingSlot("hold1", new DateRangeVO(now.plusDays(2), now.plusDays(4))),
+				new BookingSlot("hold2", new DateRangeVO(now.plusDays(11), now.plusDays(14)))));
+
+		//
+		// When
+		//
+		AvailabilityVO availability = service.calculateAvailability(Booking.DEFAULT_SITE, dateRange).block();
+
+		//
+		// Then
+		//
+		assertEquals(availability.getDatesAvailable(),
+				Arrays.asList(new DateRangeVO(now, now.plusDays(2)), new DateRangeVO(now.plusDays(4), now.plusDays(10)),
+						new DateRangeVO(now.plusDays(14), now.plusMonths(1))));
+	}
+
 	@Test
 	public void testCalculateAvailability_someBookigs_someAvailability() {
 
@@ -39,9 +93,9 @@ public class AvailabilityServiceTests {
 		//
 		LocalDate now = LocalDate.now();
 		DateRangeVO dateRange = new DateRangeVO(now, now.plusMonths(3));
-		when(bookingRepository.findByDateRange(eq(dateRange))).thenReturn(Flux.<Booking>create(emitter -> {
-			emitter.next(new Booking("email1", "fullname1", new DateRangeVO(now.plusDays(5), now.plusDays(10))));
-			emitter.next(new Booking("email2", "fullname2",
+		when(bookingRepository.findSlotsByDateRange(eq(Booking.DEFAULT_SITE), eq(dateRange))).thenReturn(Flux.<BookingSlot>create(emitter -> {
+			emitter.next(new BookingSlot("id1", new DateRangeVO(now.plusDays(5), now.plusDays(10))));
+			emitter.next(new BookingSlot("id2",
 					new DateRangeVO(now.plusMonths(1), now.plusMonths(1).plusDays(10))));
 			emitter.complete();
 		}));
@@ -49,7 +103,7 @@ public class AvailabilityServiceTests {
 		//
 		// When
 		//
-		AvailabilityVO availability = service.calculateAvailability(dateRange).block();
+		AvailabilityVO availability = service.calculateAvailability(Booking.DEFAULT_SITE, dateRange).block();
 
 		//
 		// Then
@@ -72,13 +126,13 @@ public class AvailabilityServiceTests {
 		//
 		LocalDate now = LocalDate.now();
 		DateRangeVO dateRange = new DateRangeVO(now, now.plusMonths(3));
-		when(bookingRepository.findByDateRange(eq(dateRange)))
-				.thenReturn(Flux.<Booking>create(emitter -> emitter.complete()));
+		when(bookingRepository.findSlotsByDateRange(eq(Booking.DEFAULT_SITE), eq(dateRange)))
+				.thenReturn(Flux.<BookingSlot>create(emitter -> emitter.complete()));
 
 		//
 		// When
 		//
-		AvailabilityVO availability = service.calculateAvailability(dateRange).block();
+		AvailabilityVO availability = service.calculateAvailability(Booking.DEFAULT_SITE, dateRange).block();
 
 		//
 		// Then
@@ -98,16 +152,16 @@ public class AvailabilityServiceTests {
 		//
 		LocalDate now = LocalDate.now();
 		DateRangeVO dateRange = new DateRangeVO(now, now.plusMonths(3));
-		when(bookingRepository.findByDateRange(eq(dateRange))).thenReturn(Flux.<Booking>create(emitter -> {
-			emitter.next(new Booking("email1", "fullname1", new DateRangeVO(now, now.plusMonths(1))));
-			emitter.next(new Booking("email2", "fullname2", new DateRangeVO(now.plusMonths(1), now.plusMonths(3))));
+		when(bookingRepository.findSlotsByDateRange(eq(Booking.DEFAULT_SITE), eq(dateRange))).thenReturn(Flux.<BookingSlot>create(emitter -> {
+			emitter.next(new BookingSlot("id1", new DateRangeVO(now, now.plusMonths(1))));
+			emitter.next(new BookingSlot("id2", new DateRangeVO(now.plusMonths(1), now.plusMonths(3))));
 			emitter.complete();
 		}));
 
 		//
 		// When
 		//
-		AvailabilityVO availability = service.calculateAvailability(dateRange).block();
+		AvailabilityVO availability = service.calculateAvailability(Booking.DEFAULT_SITE, dateRange).block();
 
 		//
 		// Then
@@ -126,16 +180,16 @@ public class AvailabilityServiceTests {
 		//
 		LocalDate now = LocalDate.now();
 		DateRangeVO dateRange = new DateRangeVO(now, now.plusMonths(3));
-		when(bookingRepository.findByDateRange(eq(dateRange))).thenReturn(Flux.<Booking>create(emitter -> {
-			emitter.next(new Booking("email1", "fullname1", new DateRangeVO(now.minusDays(10), now.plusMonths(1))));
-			emitter.next(new Booking("email2", "fullname2", new DateRangeVO(now.plusMonths(1), now.plusMonths(4))));
+		when(bookingRepository.findSlotsByDateRange(eq(Booking.DEFAULT_SITE), eq(dateRange))).thenReturn(Flux.<BookingSlot>create(emitter -> {
+			emitter.next(new BookingSlot("id1", new DateRangeVO(now.minusDays(10), now.plusMonths(1))));
+			emitter.next(new BookingSlot("id2", new DateRangeVO(now.plusMonths(1), now.plusMonths(4))));
 			emitter.complete();
 		}));
 
 		//
 		// When
 		//
-		AvailabilityVO availability = service.calculateAvailability(dateRange).block();
+		AvailabilityVO availability = service.calculateAvailability(Booking.DEFAULT_SITE, dateRange).block();
 
 		//
 		// Then
@@ -145,4 +199,104 @@ public class AvailabilityServiceTests {
 		assertNotNull(availability.getDatesAvailable());
 		assertEquals(availability.getDatesAvailable().size(), 0);
 	}
+
+	@Test
+	public void testCalculateAvailability_bookingStartingAtFrom() {
+
+		//
+		// Given
+		//
+		LocalDate now = LocalDate.now();
+		DateRangeVO dateRange = new DateRangeVO(now, now.plusMonths(1));
+		when(bookingRepository.findSlotsByDateRange(eq(Booking.DEFAULT_SITE), eq(dateRange))).thenReturn(Flux.<BookingSlot>create(emitter -> {
+			emitter.next(new BookingSlot("id1", new DateRangeVO(now, now.plusDays(3))));
+			emitter.next(new BookingSlot("id2", new DateRangeVO(now.plusDays(2), now.plusDays(4))));
+			emitter.complete();
+		}));
+
+		//
+		// When
+		//
+		AvailabilityVO availability = service.calculateAvailability(Booking.DEFAULT_SITE, dateRange).block();
+
+		//
+		// Then
+		//
+		assertEquals(availability.getDatesAvailable().size(), 1);
+		assertTrue(availability.getDatesAvailable().contains(new DateRangeVO(now.plusDays(4), now.plusMonths(1))));
+	}
+
+	@Test
+	public void testStreamAvailability() {
+
+		//
+		// Given
+		//
+		LocalDate now = LocalDate.now();
+		DateRangeVO dateRange = new DateRangeVO(now, now.plusMonths(3));
+		when(bookingRepository.findSlotsByDateRange(eq(Booking.DEFAULT_SITE), eq(dateRange))).thenReturn(Flux.<BookingSlot>create(emitter -> {
+			emitter.next(new BookingSlot("id1", new DateRangeVO(now.plusDays(5), now.plusDays(10))));
+			emitter.next(new BookingSlot("id2",
+					new DateRangeVO(now.plusMonths(1), now.plusMonths(1).plusDays(10))));
+			emitter.complete();
+		}));
+
+		//
+		// When / Then
+		//
+		StepVerifier.create(service.streamAvailability(Booking.DEFAULT_SITE, dateRange))
+				.expectNext(new DateRangeVO(now, now.plusDays(5)))
+				.expectNext(new DateRangeVO(now.plusDays(10), now.plusMonths(1)))
+				.expectNext(new DateRangeVO(now.plusMonths(1).plusDays(10), now.plusMonths(3))).verifyComplete();
+	}
+
+	@Test
+	public void testStreamAvailability_gapEmittedBeforeCompletion() {
+
+		//
+		// Given
+		//
+		LocalDate now = LocalDate.now();
+		DateRangeVO dateRange = new DateRangeVO(now, now.plusMonths(1));
+		TestPublisher<BookingSlot> slots = TestPublisher.create();
+		when(bookingRepository.findSlotsByDateRange(eq(Booking.DEFAULT_SITE), eq(dateRange))).thenReturn(slots.flux());
+
+		//
+		// When / Then
+		//
+		StepVerifier.create(service.streamAvailability(Booking.DEFAULT_SITE, dateRange))
+				.then(() -> slots.next(new BookingSlot("id1", new DateRangeVO(now.plusDays(5), now.plusDays(10)))))
+				.expectNext(new DateRangeVO(now, now.plusDays(5)))
+				.then(() -> slots.complete())
+				.expectNext(new DateRangeVO(now.plusDays(10), now.plusMonths(1))).verifyComplete();
+	}
+
+	@Test
+	public void testCalculateAvailability_coalesced() {
+
+		//
+		// Given
+		//
+		LocalDate now = LocalDate.now();
+		DateRangeVO dateRange = new DateRangeVO(now, now.plusMonths(1));
+		TestPublisher<BookingSlot> slots = TestPublisher.create();
+		when(bookingRepository.findSlotsByDateRange(eq(Booking.DEFAULT_SITE), eq(dateRange))).thenReturn(slots.flux());
+
+		//
+		// When
+		//
+		MonoProcessor<AvailabilityVO> first = service.calculateAvailability(Booking.DEFAULT_SITE, dateRange).toProcessor();
+		MonoProcessor<AvailabilityVO> second = service.calculateAvailability(Booking.DEFAULT_SITE, dateRange).toProcessor();
+		slots.next(new BookingSlot("id1", new DateRangeVO(now.plusDays(5), now.plusDays(10))));
+		slots.complete();
+
+		//
+		// Then
+		//
+		verify(bookingRepository, times(1)).findSlotsByDateRange(eq(Booking.DEFAULT_SITE), eq(dateRange));
+		assertEquals(first.block(), second.block());
+		assertNotSame(first.block(), second.block());
+		assertEquals(first.block().getDatesAvailable().size(), 2);
+		assertEquals(meterRegistry.get("reservation.availability.requests").tag("coalesced", "true").counter().count(), 1);
+	}
 }
@@ -0,0 +1,184 @@
+package com.campsite.reservation.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.mock.env.MockEnvironment;
+
+import com.campsite.reservation.event.BookingEvent;
+import com.campsite.reservation.model.BatchItemResultVO;
+import com.campsite.reservation.model.BatchMode;
+import com.campsite.reservation.model.Booking;
+import com.campsite.reservation.model.BookingSlot;
+import com.campsite.reservation.model.BookingWrite;
+import com.campsite.reservation.model.DateRangeVO;
+import com.campsite.reservation.repository.BookingRepository;
+import com.campsite.reservation.repository.HoldRepository;
+import com.campsite.reservation.service.impl.BatchReservations;
+import com.campsite.reservation.service.impl.ReservationMetrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public class BatchReservationsTests {
+
+	@Mock
+	BookingService bookingService;
+
+	@Mock
+	AvailabilityService availabilityService;
+
+	@Mock
+	BookingRepository bookingRepository;
+
+	@Mock
+	HoldRepository holdRepository;
+
+	@Mock
+	ApplicationEventPublisher eventPublisher;
+
+	@Spy
+	ReservationMetrics metrics = new ReservationMetrics(new SimpleMeterRegistry());
+
+	@InjectMocks
+	BatchReservations batchReservations = new BatchReservations(new MockEnvironment(), new SimpleMeterRegistry());
+
+	List<List<BookingWrite>> bulkWrites;
+
+	LocalDate now = LocalDate.now();
+
+	@BeforeEach
+	public void beforeEach() {
+		MockitoAnnotations.initMocks(this);
+		bulkWrites = new ArrayList<List<BookingWrite>>();
+		when(availabilityService.honoursHolds()).thenReturn(true);
+		when(bookingRepository.findSlotsByDateRange(eq(Booking.DEFAULT_SITE), any(DateRangeVO.class)))
+				.thenReturn(Flux.just(new BookingSlot("existing", new DateRangeVO(now.plusDays(5), now.plusDays(7)))));
+		when(holdRepository.findSlotsByDateRange(eq(Booking.DEFAULT_SITE), any(DateRangeVO.class)))
+				.thenReturn(Flux.empty());
+		when(bookingRepository.bulkWrite(any())).thenAnswer(invocation -> {
+			List<BookingWrite> writes = invocation.getArgument(0);
+			bulkWrites.add(writes);
+			return Mono.just(writes.size());
+		});
+	}
+
+	@Test
+	public void testMake_bestEffort() {
+
+		//
+		// When
+		//
+		List<BatchItemResultVO> results = batchReservations.make(Arrays.asList(booking(1, 3), booking(2, 4),
+				booking(6, 8), booking(7, 9)), BatchMode.BEST_EFFORT).block();
+
+		//
+		// Then
+		//
+		assertEquals(statuses(results), Arrays.asList(BatchItemResultVO.Status.CREATED,
+				BatchItemResultVO.Status.REJECTED, BatchItemResultVO.Status.REJECTED, BatchItemResultVO.Status.CREATED));
+		assertNotNull(results.get(0).getBookingId());
+		// One query for the union of all date ranges
+		verify(bookingRepository).findSlotsByDateRange(Booking.DEFAULT_SITE, new DateRangeVO(now.plusDays(1),
+				now.plusDays(9)));
+		assertEquals(bulkWrites.size(), 1);
+		assertEquals(bulkWrites.get(0).size(), 2);
+		verify(eventPublisher, times(2)).publishEvent(any(BookingEvent.class));
+	}
+
+	@Test
+	public void testMake_allOrNothing_rejected() {
+
+		//
+		// When
+		//
+		List<BatchItemResultVO> results = batchReservations
+				.make(Arrays.asList(booking(1, 3), booking(6, 8)), BatchMode.ALL_OR_NOTHING).block();
+
+		//
+		// Then
+		//
+		assertEquals(statuses(results),
+				Arrays.asList(BatchItemResultVO.Status.NOT_SAVED, BatchItemResultVO.Status.REJECTED));
+		verify(bookingRepository, never()).bulkWrite(any());
+	}
+
+	@Test
+	public void testMake_allOrNothing_bulkWritePartiallyApplied() {
+
+		//
+		// Given
+		//
+		doReturn(Mono.just(1), Mono.just(1)).when(bookingRepository).bulkWrite(any());
+
+		//
+		// When
+		//
+		List<BatchItemResultVO> results = batchReservations
+				.make(Arrays.asList(booking(1, 3), booking(3, 5)), BatchMode.ALL_OR_NOTHING).block();
+
+		//
+		// Then
+		//
+		assertEquals(statuses(results),
+				Arrays.asList(BatchItemResultVO.Status.NOT_SAVED, BatchItemResultVO.Status.NOT_SAVED));
+		verify(bookingRepository, times(2)).bulkWrite(any());
+		verify(eventPublisher, never()).publishEvent(any(BookingEvent.class));
+	}
+
+	@Test
+	public void testMake_preconditionsNotMet() {
+
+		//
+		// Given
+		//
+		Booking unknownSite = new Booking(null, "unknown", "email", "fullName",
+				new DateRangeVO(now.plusDays(1), now.plusDays(3)));
+		doThrow(new IllegalArgumentException("Unknown site: unknown")).when(bookingService).checkSite("unknown");
+
+		//
+		// When
+		//
+		List<BatchItemResultVO> results = batchReservations
+				.make(Arrays.asList(unknownSite, booking(1, 3)), BatchMode.BEST_EFFORT).block();
+
+		//
+		// Then
+		//
+		assertEquals(statuses(results),
+				Arrays.asList(BatchItemResultVO.Status.REJECTED, BatchItemResultVO.Status.CREATED));
+		assertEquals(results.get(0).getMessage(), "Unknown site: unknown");
+		verify(bookingRepository, never()).findSlotsByDateRange(eq("unknown"), any(DateRangeVO.class));
+	}
+
+	private Booking booking(int fromDays, int toDays) {
+		return new Booking(null, Booking.DEFAULT_SITE, "email", "fullName",
+				new DateRangeVO(now.plusDays(fromDays), now.plusDays(toDays)));
+	}
+
+	private static List<BatchItemResultVO.Status> statuses(List<BatchItemResultVO> results) {
+		return results.stream().map(BatchItemResultVO::getStatus).collect(Collectors.toList());
+	}
+}
@@ -0,0 +1,129 @@
+package com.campsite.reservation.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import com.campsite.reservation.event.BookingEvent;
+import com.campsite.reservation.exception.BookingNotFoundException;
+import com.campsite.reservation.model.Booking;
+import com.campsite.reservation.model.DateRangeVO;
+import com.campsite.reservation.service.impl.BookingCache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+
+public class BookingCacheTests {
+
+	BookingCache cache;
+
+	SimpleMeterRegistry meterRegistry;
+
+	AtomicInteger lookups;
+
+	LocalDate now = LocalDate.now();
+
+	Booking booking = new Booking("id", "email", "fullName", new DateRangeVO(now.plusDays(8), now.plusDays(10)));
+
+	@BeforeEach
+	public void beforeEach() {
+		meterRegistry = new SimpleMeterRegistry();
+		cache = new BookingCache(new MockEnvironment(), meterRegistry);
+		lookups = new AtomicInteger();
+	}
+
+	@Test
+	public void testGet_cached() {
+
+		//
+		// When
+		//
+		Booking first = cache.get("id", () -> lookup(booking)).block();
+		Booking second = cache.get("id", () -> lookup(booking)).block();
+
+		//
+		// Then
+		//
+		assertEquals(first, second);
+		assertEquals(lookups.get(), 1);
+		assertEquals(meterRegistry.get("reservation.booking-cache.hit-ratio").gauge().value(), 0.5);
+		assertEquals(meterRegistry.get("cache.size").tag("cache", "booking").gauge().value(), 1.0);
+	}
+
+	@Test
+	public void testGet_notFoundNotCached() {
+
+		//
+		// Given
+		//
+		assertThrows(BookingNotFoundException.class,
+				() -> cache.get("id", () -> Mono.error(new BookingNotFoundException("id"))).block());
+
+		//
+		// When
+		//
+		cache.get("id", () -> lookup(booking)).block();
+
+		//
+		// Then
+		//
+		assertEquals(lookups.get(), 1);
+	}
+
+	@Test
+	public void testOnBookingEvent_invalidates() {
+
+		//
+		// Given
+		//
+		cache.get("id", () -> lookup(booking)).block();
+		Booking modified = Booking.from(booking, new DateRangeVO(now.plusDays(9), now.plusDays(11)));
+
+		//
+		// When
+		//
+		cache.onBookingEvent(BookingEvent.modified(modified, booking.getDateRange()));
+
+		//
+		// Then
+		//
+		assertEquals(cache.get("id", () -> lookup(modified)).block().getDateRange(), modified.getDateRange());
+		assertEquals(lookups.get(), 2);
+	}
+
+	@Test
+	public void testGet_readWhileModifiedNotCached() {
+
+		//
+		// Given
+		//
+		MonoProcessor<Booking> read = MonoProcessor.create();
+		MonoProcessor<Booking> first = cache.get("id", () -> read).toProcessor();
+		cache.onBookingEvent(BookingEvent.cancelled(booking));
+
+		//
+		// When
+		//
+		read.onNext(booking);
+
+		//
+		// Then
+		//
+		first.block();
+		assertEquals(cache.size(), 0);
+	}
+
+	private Mono<Booking> lookup(Booking booking) {
+		return Mono.fromSupplier(() -> {
+			lookups.incrementAndGet();
+			return booking;
+		});
+	}
+}
@@ -0,0 +1,74 @@
+package com.campsite.reservation.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDate;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.mock.env.MockEnvironment;
+
+import com.campsite.reservation.event.BookingEvent;
+import com.campsite.reservation.model.Booking;
+import com.campsite.reservation.model.DateRangeVO;
+import com.campsite.reservation.repository.BookingRepository;
+import com.campsite.reservation.service.impl.BookingIdFilter;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Flux;
+
+public class BookingIdFilterTests {
+
+	@Mock
+	BookingRepository bookingRepository;
+
+	SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	@InjectMocks
+	BookingIdFilter filter = new BookingIdFilter(new MockEnvironment(), meterRegistry);
+
+	LocalDate now = LocalDate.now();
+
+	@BeforeEach
+	public void beforeEach() {
+		MockitoAnnotations.initMocks(this);
+		when(bookingRepository.findAllIds()).thenReturn(Flux.just("id1", "id2"));
+		filter.load();
+	}
+
+	@Test
+	public void testMightExist_loaded() {
+		assertTrue(filter.mightExist("id1"));
+		assertTrue(filter.mightExist("id2"));
+		assertFalse(filter.mightExist("unknown"));
+		assertEquals(meterRegistry.get("reservation.booking-id-filter.ids").gauge().value(), 2.0);
+		assertEquals(meterRegistry.get("reservation.booking-id-filter.lookups-skipped").counter().count(), 1.0);
+	}
+
+	@Test
+	public void testOnBookingEvent() {
+
+		//
+		// When
+		//
+		filter.onBookingEvent(BookingEvent.created(booking("id3")));
+		filter.onBookingEvent(BookingEvent.cancelled(booking("id1")));
+
+		//
+		// Then
+		//
+		assertTrue(filter.mightExist("id3"));
+		assertFalse(filter.mightExist("id1"));
+		assertEquals(meterRegistry.get("reservation.booking-id-filter.ids").gauge().value(), 2.0);
+	}
+
+	private Booking booking(String id) {
+		return new Booking(id, "email", "fullName", new DateRangeVO(now.plusDays(1), now.plusDays(2)));
+	}
+}
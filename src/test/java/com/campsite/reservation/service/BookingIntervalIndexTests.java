@@ -0,0 +1,102 @@
+package com.campsite.reservation.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import com.campsite.reservation.model.BookingSlot;
+import com.campsite.reservation.model.DateRangeVO;
+import com.campsite.reservation.service.impl.BookingIntervalIndex;
+
+public class BookingIntervalIndexTests {
+
+	@Test
+	public void testOverlapping() {
+		LocalDate now = LocalDate.now();
+		BookingIntervalIndex index = new BookingIntervalIndex();
+		index.put(new BookingSlot("touchingLeft", new DateRangeVO(now.plusDays(8), now.plusDays(10))));
+		index.put(new BookingSlot("insideRight", new DateRangeVO(now.plusDays(17), now.plusDays(19))));
+		index.put(new BookingSlot("exceedingLeft", new DateRangeVO(now.plusDays(7), now.plusDays(11))));
+		index.put(new BookingSlot("touchingRight", new DateRangeVO(now.plusDays(20), now.plusDays(22))));
+		index.put(new BookingSlot("insideLeft", new DateRangeVO(now.plusDays(12), now.plusDays(14))));
+
+		List<String> overlapping = ids(index.overlapping(new DateRangeVO(now.plusDays(10), now.plusDays(20)), null));
+
+		assertEquals(Arrays.asList("exceedingLeft", "insideLeft", "insideRight"), overlapping);
+	}
+
+	@Test
+	public void testOverlapping_excluding() {
+		LocalDate now = LocalDate.now();
+		BookingIntervalIndex index = new BookingIntervalIndex();
+		index.put(new BookingSlot("id1", new DateRangeVO(now.plusDays(1), now.plusDays(3))));
+		index.put(new BookingSlot("id2", new DateRangeVO(now.plusDays(3), now.plusDays(5))));
+
+		List<String> overlapping = ids(index.overlapping(new DateRangeVO(now, now.plusDays(10)), "id1"));
+
+		assertEquals(Arrays.asList("id2"), overlapping);
+	}
+
+	@Test
+	public void testAnyOverlapping() {
+		LocalDate now = LocalDate.now();
+		BookingIntervalIndex index = new BookingIntervalIndex();
+		index.put(new BookingSlot("id1", new DateRangeVO(now.plusDays(1), now.plusDays(3))));
+		index.put(new BookingSlot("id2", new DateRangeVO(now.plusDays(5), now.plusDays(9))));
+
+		assertTrue(index.anyOverlapping(new DateRangeVO(now.plusDays(8), now.plusDays(10)), null));
+		assertFalse(index.anyOverlapping(new DateRangeVO(now.plusDays(3), now.plusDays(5)), null));
+		assertFalse(index.anyOverlapping(new DateRangeVO(now.plusDays(6), now.plusDays(7)), "id2"));
+	}
+
+	@Test
+	public void testPut_replacesSameId() {
+		LocalDate now = LocalDate.now();
+		BookingIntervalIndex index = new BookingIntervalIndex();
+		index.put(new BookingSlot("id1", new DateRangeVO(now.plusDays(1), now.plusDays(3))));
+		index.put(new BookingSlot("id1", new DateRangeVO(now.plusDays(5), now.plusDays(7))));
+
+		assertEquals(index.size(), 1);
+		assertTrue(index.overlapping(new DateRangeVO(now, now.plusDays(4)), null).isEmpty());
+		assertEquals(Arrays.asList("id1"), ids(index.overlapping(new DateRangeVO(now.plusDays(4), now.plusDays(8)), null)));
+	}
+
+	@Test
+	public void testRemove() {
+		LocalDate now = LocalDate.now();
+		BookingIntervalIndex index = new BookingIntervalIndex();
+		index.put(new BookingSlot("id1", new DateRangeVO(now.plusDays(1), now.plusDays(3))));
+		index.put(new BookingSlot("id2", new DateRangeVO(now.plusDays(1), now.plusDays(2))));
+
+		index.remove("id1");
+
+		assertNull(index.get("id1"));
+		assertEquals(Arrays.asList("id2"), ids(index.overlapping(new DateRangeVO(now, now.plusDays(4)), null)));
+	}
+
+	@Test
+	public void testRemoveEndedBefore() {
+		LocalDate now = LocalDate.now();
+		BookingIntervalIndex index = new BookingIntervalIndex();
+		index.put(new BookingSlot("ended", new DateRangeVO(now.minusDays(3), now)));
+		index.put(new BookingSlot("current", new DateRangeVO(now.minusDays(1), now.plusDays(1))));
+		index.put(new BookingSlot("future", new DateRangeVO(now.plusDays(1), now.plusDays(2))));
+
+		index.removeEndedBefore(now);
+
+		assertEquals(index.size(), 2);
+		assertNull(index.get("ended"));
+	}
+
+	private List<String> ids(List<BookingSlot> slots) {
+		return slots.stream().map(slot -> slot.getId()).collect(Collectors.toList());
+	}
+}
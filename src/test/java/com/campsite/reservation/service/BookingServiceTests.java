@@ -4,6 +4,10 @@ import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
 import java.time.LocalDate;
@@ -11,6 +15,7 @@ import java.util.TreeSet;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.Answers;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
@@ -33,7 +38,10 @@ public class BookingServiceTests {
 	@Autowired
 	Environment env;
 
-	@Mock
+	/**
+	 * isAvailable runs over the availability stubbed in each test.
+	 */
+	@Mock(answer = Answers.CALLS_REAL_METHODS)
 	AvailabilityService availabilityService;
 
 	@Autowired
@@ -63,7 +71,7 @@ public class BookingServiceTests {
 		DateRangeVO dateRange = new DateRangeVO(now.plusDays(minDaysAhead),
 				now.plusDays(minDaysAhead + maxBookingDays));
 		Booking booking = new Booking("email", "fullName", dateRange);
-		when(availabilityService.calculateAvailability(eq(dateRange)))
+		when(availabilityService.calculateAvailability(eq(Booking.DEFAULT_SITE), eq(dateRange)))
 				.thenReturn(Mono.<AvailabilityVO>just(new AvailabilityVO(new TreeSet<DateRangeVO>() {
 					{
 						add(dateRange);
@@ -92,7 +100,7 @@ public class BookingServiceTests {
 		DateRangeVO dateRange = new DateRangeVO(now.plusDays(minDaysAhead),
 				now.plusDays(minDaysAhead + maxBookingDays));
 		Booking booking = new Booking("email", "fullName", dateRange);
-		when(availabilityService.calculateAvailability(eq(dateRange)))
+		when(availabilityService.calculateAvailability(eq(Booking.DEFAULT_SITE), eq(dateRange)))
 				.thenReturn(Mono.<AvailabilityVO>just(new AvailabilityVO(new TreeSet<DateRangeVO>() {
 					{
 						add(new DateRangeVO(now.plusDays(minDaysAhead), now.plusDays(minDaysAhead + 2)));
@@ -120,7 +128,7 @@ public class BookingServiceTests {
 		DateRangeVO dateRange = new DateRangeVO(now.plusDays(minDaysAhead),
 				now.plusDays(minDaysAhead + maxBookingDays));
 		Booking booking = new Booking("email", "fullName", dateRange);
-		when(availabilityService.calculateAvailability(eq(dateRange)))
+		when(availabilityService.calculateAvailability(eq(Booking.DEFAULT_SITE), eq(dateRange)))
 				.thenReturn(Mono.<AvailabilityVO>just(new AvailabilityVO(new TreeSet<DateRangeVO>(), dateRange)));
 
 		//
@@ -145,7 +153,7 @@ public class BookingServiceTests {
 		LocalDate now = LocalDate.now();
 		DateRangeVO newDateRange = new DateRangeVO(now.plusDays(10 + minDaysAhead),
 				now.plusDays(10 + minDaysAhead + maxBookingDays));
-		when(availabilityService.calculateAvailabilityExcluding(eq(bookingId), eq(newDateRange)))
+		when(availabilityService.calculateAvailabilityExcluding(eq(Booking.DEFAULT_SITE), eq(bookingId), eq(newDateRange)))
 				.thenReturn(Mono.<AvailabilityVO>just(new AvailabilityVO(new TreeSet<DateRangeVO>() {
 					{
 						add(newDateRange);
@@ -155,7 +163,7 @@ public class BookingServiceTests {
 		//
 		// When
 		//
-		Boolean isAllowed = service.isBookingModificationAllowed(bookingId, newDateRange).block();
+		Boolean isAllowed = service.isBookingModificationAllowed(Booking.DEFAULT_SITE, bookingId, newDateRange).block();
 
 		//
 		// Then
@@ -174,7 +182,7 @@ public class BookingServiceTests {
 		LocalDate now = LocalDate.now();
 		DateRangeVO newDateRange = new DateRangeVO(now.plusDays(minDaysAhead + 1),
 				now.plusDays(minDaysAhead + 1 + maxBookingDays));
-		when(availabilityService.calculateAvailabilityExcluding(eq(bookingId), eq(newDateRange)))
+		when(availabilityService.calculateAvailabilityExcluding(eq(Booking.DEFAULT_SITE), eq(bookingId), eq(newDateRange)))
 				.thenReturn(Mono.<AvailabilityVO>just(new AvailabilityVO(new TreeSet<DateRangeVO>() {
 					{
 						add(new DateRangeVO(now.plusDays(minDaysAhead), now.plusDays(minDaysAhead + 2)));
@@ -184,7 +192,7 @@ public class BookingServiceTests {
 		//
 		// When
 		//
-		Boolean isAllowed = service.isBookingModificationAllowed(bookingId, newDateRange).block();
+		Boolean isAllowed = service.isBookingModificationAllowed(Booking.DEFAULT_SITE, bookingId, newDateRange).block();
 
 		//
 		// Then
@@ -201,13 +209,13 @@ public class BookingServiceTests {
 		String bookingId = "someBookingId";
 		LocalDate now = LocalDate.now();
 		DateRangeVO newDateRange = new DateRangeVO(now.plusDays(minDaysAhead + 10), now.plusDays(minDaysAhead + 11));
-		when(availabilityService.calculateAvailabilityExcluding(eq(bookingId), eq(newDateRange)))
+		when(availabilityService.calculateAvailabilityExcluding(eq(Booking.DEFAULT_SITE), eq(bookingId), eq(newDateRange)))
 				.thenReturn(Mono.<AvailabilityVO>just(new AvailabilityVO(new TreeSet<DateRangeVO>(), newDateRange)));
 
 		//
 		// When
 		//
-		Boolean isAllowed = service.isBookingModificationAllowed(bookingId, newDateRange).block();
+		Boolean isAllowed = service.isBookingModificationAllowed(Booking.DEFAULT_SITE, bookingId, newDateRange).block();
 
 		//
 		// Then
@@ -215,6 +223,56 @@ public class BookingServiceTests {
 		assertFalse(isAllowed);
 	}
 
+	@Test
+	public void testIsBookingModificationAllowed_onlyAddedNightsChecked() {
+
+		//
+		// Given
+		//
+		LocalDate now = LocalDate.now();
+		Booking booking = new Booking("someBookingId", "email", "fullName",
+				new DateRangeVO(now.plusDays(minDaysAhead + 1), now.plusDays(minDaysAhead + 3)));
+		DateRangeVO newDateRange = new DateRangeVO(now.plusDays(minDaysAhead + 2), now.plusDays(minDaysAhead + 4));
+		DateRangeVO addedNights = new DateRangeVO(now.plusDays(minDaysAhead + 3), now.plusDays(minDaysAhead + 4));
+		doReturn(Mono.just(Boolean.TRUE)).when(availabilityService).isAvailable(Booking.DEFAULT_SITE, addedNights,
+				null);
+
+		//
+		// When
+		//
+		Boolean isAllowed = service.isBookingModificationAllowed(booking, newDateRange).block();
+
+		//
+		// Then
+		//
+		assertTrue(isAllowed);
+		verify(availabilityService).isAvailable(Booking.DEFAULT_SITE, addedNights, null);
+		verifyNoMoreInteractions(availabilityService);
+	}
+
+	@Test
+	public void testIsBookingModificationAllowed_shrinkNotChecked() {
+
+		//
+		// Given
+		//
+		LocalDate now = LocalDate.now();
+		Booking booking = new Booking("someBookingId", "email", "fullName",
+				new DateRangeVO(now.plusDays(minDaysAhead + 1), now.plusDays(minDaysAhead + 3)));
+		DateRangeVO newDateRange = new DateRangeVO(now.plusDays(minDaysAhead + 1), now.plusDays(minDaysAhead + 2));
+
+		//
+		// When
+		//
+		Boolean isAllowed = service.isBookingModificationAllowed(booking, newDateRange).block();
+
+		//
+		// Then
+		//
+		assertTrue(isAllowed);
+		verifyNoInteractions(availabilityService);
+	}
+
 	@Test
 	public void testIsBookingCreationAllowed_cannotBookMoreThanMaxDays() {
 
@@ -247,7 +305,7 @@ public class BookingServiceTests {
 		// When / Then
 		//
 		assertThrows(IllegalArgumentException.class, () -> {
-			service.isBookingModificationAllowed(bookingId, newDateRange).block();
+			service.isBookingModificationAllowed(Booking.DEFAULT_SITE, bookingId, newDateRange).block();
 		});
 	}
 
@@ -283,7 +341,7 @@ public class BookingServiceTests {
 		// When / Then
 		//
 		assertThrows(IllegalArgumentException.class, () -> {
-			service.isBookingModificationAllowed(bookingId, newDateRange).block();
+			service.isBookingModificationAllowed(Booking.DEFAULT_SITE, bookingId, newDateRange).block();
 		});
 	}
 
@@ -319,7 +377,7 @@ public class BookingServiceTests {
 		// When / Then
 		//
 		assertThrows(IllegalArgumentException.class, () -> {
-			service.isBookingModificationAllowed(bookingId, newDateRange).block();
+			service.isBookingModificationAllowed(Booking.DEFAULT_SITE, bookingId, newDateRange).block();
 		});
 	}
 
@@ -355,7 +413,26 @@ public class BookingServiceTests {
 		// When / Then
 		//
 		assertThrows(IllegalArgumentException.class, () -> {
-			service.isBookingModificationAllowed(bookingId, newDateRange).block();
+			service.isBookingModificationAllowed(Booking.DEFAULT_SITE, bookingId, newDateRange).block();
+		});
+	}
+
+	@Test
+	public void testIsBookingCreationAllowed_unknownSite() {
+
+		//
+		// Given
+		//
+		LocalDate now = LocalDate.now();
+		DateRangeVO dateRange = new DateRangeVO(now.plusDays(minDaysAhead),
+				now.plusDays(minDaysAhead + maxBookingDays));
+		Booking booking = new Booking(null, "unknownSite", "email", "fullName", dateRange);
+
+		//
+		// When / Then
+		//
+		assertThrows(IllegalArgumentException.class, () -> {
+			service.isBookingCreationAllowed(booking).block();
 		});
 	}
 }
@@ -0,0 +1,186 @@
+package com.campsite.reservation.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.MockitoAnnotations;
+import org.springframework.core.env.Environment;
+
+import com.campsite.reservation.exception.BookingNotFoundException;
+import com.campsite.reservation.model.AvailabilityVO;
+import com.campsite.reservation.model.Booking;
+import com.campsite.reservation.model.BookingSlot;
+import com.campsite.reservation.model.CapacityRangeVO;
+import com.campsite.reservation.model.DateRangeVO;
+import com.campsite.reservation.repository.BookingRepository;
+import com.campsite.reservation.service.impl.CapacityAvailabilityServiceImpl;
+import com.campsite.reservation.service.impl.ReservationMetrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public class CapacityAvailabilityServiceTests {
+
+	@Mock
+	Environment env;
+
+	@Mock
+	BookingRepository bookingRepository;
+
+	SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	@Spy
+	ReservationMetrics metrics = new ReservationMetrics(meterRegistry);
+
+	@InjectMocks
+	CapacityAvailabilityServiceImpl service = new CapacityAvailabilityServiceImpl();
+
+	LocalDate now = LocalDate.now();
+
+	@BeforeEach
+	public void beforeEach() {
+		MockitoAnnotations.initMocks(this);
+		when(env.getProperty(eq("reservation.capacity-per-night"), eq(Integer.class), any(Integer.class)))
+				.thenReturn(2);
+		when(env.getProperty(eq("reservation.max-days-ahead"), eq(Integer.class), any(Integer.class))).thenReturn(30);
+		when(env.getProperty(eq("reservation.max-booking-days"), eq(Integer.class), any(Integer.class)))
+				.thenReturn(3);
+		when(bookingRepository.findSlotsEndingAfter(any(LocalDate.class))).thenReturn(Flux.<BookingSlot>just(
+				new BookingSlot("id1", new DateRangeVO(now.plusDays(5), now.plusDays(10))),
+				new BookingSlot("id2", new DateRangeVO(now.plusDays(8), now.plusDays(12)))));
+		service.load();
+	}
+
+	@Test
+	public void testCalculateAvailability_loadedBookings() {
+
+		//
+		// Given
+		//
+		DateRangeVO dateRange = new DateRangeVO(now, now.plusDays(20));
+
+		//
+		// When
+		//
+		AvailabilityVO availability = service.calculateAvailability(Booking.DEFAULT_SITE, dateRange).block();
+
+		//
+		// Then
+		//
+		assertEquals(availability.getDatesAvailable().size(), 4);
+		assertEquals(availability.getDatesAvailable(),
+				Arrays.asList(new DateRangeVO(now, now.plusDays(5)), new DateRangeVO(now.plusDays(5), now.plusDays(8)),
+						new DateRangeVO(now.plusDays(10), now.plusDays(12)),
+						new DateRangeVO(now.plusDays(12), now.plusDays(20))));
+		assertEquals(((CapacityRangeVO) availability.getDatesAvailable().get(0)).getRemainingCapacity(), 2);
+		assertEquals(((CapacityRangeVO) availability.getDatesAvailable().get(1)).getRemainingCapacity(), 1);
+	}
+
+	@Test
+	public void testCalculateAvailabilityExcluding() {
+
+		//
+		// Given
+		//
+		DateRangeVO dateRange = new DateRangeVO(now.plusDays(8), now.plusDays(10));
+		when(bookingRepository.customFindById("id1")).thenReturn(Mono.just(
+				new Booking("id1", "email", "fullName", new DateRangeVO(now.plusDays(5), now.plusDays(10)))));
+
+		//
+		// When
+		//
+		AvailabilityVO availability = service.calculateAvailabilityExcluding(Booking.DEFAULT_SITE, "id1", dateRange)
+				.block();
+
+		//
+		// Then
+		//
+		assertEquals(availability.getDatesAvailable().size(), 1);
+		assertTrue(availability.getDatesAvailable().contains(dateRange));
+		assertEquals(((CapacityRangeVO) availability.getDatesAvailable().get(0)).getRemainingCapacity(), 1);
+	}
+
+	@Test
+	public void testCalculateAvailabilityExcluding_bookingNotFound() {
+
+		//
+		// Given
+		//
+		DateRangeVO dateRange = new DateRangeVO(now.plusDays(8), now.plusDays(10));
+		when(bookingRepository.customFindById("cancelled"))
+				.thenReturn(Mono.error(new BookingNotFoundException("cancelled")));
+
+		//
+		// When
+		//
+		AvailabilityVO availability = service
+				.calculateAvailabilityExcluding(Booking.DEFAULT_SITE, "cancelled", dateRange).block();
+
+		//
+		// Then
+		//
+		// Same as with nothing excluded: id1 and id2 take all the capacity
+		assertTrue(availability.getDatesAvailable().isEmpty());
+	}
+
+	@Test
+	public void testClaimAndRelease() {
+
+		//
+		// Given
+		//
+		DateRangeVO full = new DateRangeVO(now.plusDays(9), now.plusDays(11));
+		DateRangeVO free = new DateRangeVO(now.plusDays(14), now.plusDays(16));
+
+		//
+		// When
+		//
+		Boolean claimedFull = service.claim(Booking.DEFAULT_SITE, "id3", full.nights()).block();
+		Boolean claimedFree1 = service.claim(Booking.DEFAULT_SITE, "id3", free.nights()).block();
+		Boolean claimedFree2 = service.claim(Booking.DEFAULT_SITE, "id4", free.nights()).block();
+		Boolean claimedFree3 = service.claim(Booking.DEFAULT_SITE, "id5", free.nights()).block();
+		service.release(Booking.DEFAULT_SITE, "id4", free.nights()).block();
+		AvailabilityVO availability = service.calculateAvailability(Booking.DEFAULT_SITE, free).block();
+
+		//
+		// Then
+		//
+		assertFalse(claimedFull);
+		assertTrue(claimedFree1);
+		assertTrue(claimedFree2);
+		assertFalse(claimedFree3);
+		assertEquals(((CapacityRangeVO) availability.getDatesAvailable().get(0)).getRemainingCapacity(), 1);
+	}
+
+	@Test
+	public void testClaim_otherSite() {
+
+		//
+		// Given
+		//
+		DateRangeVO dateRange = new DateRangeVO(now.plusDays(9), now.plusDays(10));
+
+		//
+		// When
+		//
+		Boolean claimed = service.claim("site2", "id3", dateRange.nights()).block();
+
+		//
+		// Then
+		//
+		assertTrue(claimed);
+	}
+}
@@ -0,0 +1,42 @@
+package com.campsite.reservation.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+
+import com.campsite.reservation.service.impl.CountingBloomFilter;
+
+public class CountingBloomFilterTests {
+
+	@Test
+	public void testAddAndRemove() {
+		CountingBloomFilter filter = new CountingBloomFilter(100, 0.01);
+		filter.add("id1");
+		filter.add("id2");
+
+		filter.remove("id1");
+
+		assertFalse(filter.mightContain("id1"));
+		assertTrue(filter.mightContain("id2"));
+		assertEquals(filter.size(), 1);
+	}
+
+	@Test
+	public void testFalsePositiveProbability() {
+		CountingBloomFilter filter = new CountingBloomFilter(10000, 0.01);
+		for (int i = 0; i < 10000; i++)
+			filter.add(new ObjectId().toHexString());
+
+		int falsePositives = 0;
+		for (int i = 0; i < 10000; i++)
+			if (filter.mightContain(new ObjectId().toHexString()))
+				falsePositives++;
+
+		assertTrue(falsePositives < 200, "About 1% of unknown ids may be reported, got " + falsePositives);
+		assertTrue(Math.abs(filter.falsePositiveProbability() - 0.01) < 0.001);
+		assertEquals(filter.sizeInBytes(), 95851);
+	}
+}
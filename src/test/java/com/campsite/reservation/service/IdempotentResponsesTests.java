@@ -0,0 +1,210 @@
+package com.campsite.reservation.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.util.DigestUtils;
+
+import com.campsite.reservation.exception.IdempotencyKeyInUseException;
+import com.campsite.reservation.model.IdempotentResponse;
+import com.campsite.reservation.repository.IdempotentResponseRepository;
+import com.campsite.reservation.service.impl.IdempotentResponses;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+
+public class IdempotentResponsesTests {
+
+	static final String REQUEST = "request";
+
+	static final String REQUEST_HASH = DigestUtils.md5DigestAsHex(REQUEST.getBytes(StandardCharsets.UTF_8));
+
+	IdempotentResponseRepository repository;
+
+	IdempotentResponses responses;
+
+	AtomicInteger reservations;
+
+	@BeforeEach
+	public void beforeEach() {
+		repository = mock(IdempotentResponseRepository.class);
+		when(repository.findById(any(String.class))).thenReturn(Mono.empty());
+		when(repository.insert(any(IdempotentResponse.class)))
+				.thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+		when(repository.takeOver(any(String.class), any(String.class), any(Date.class))).thenReturn(Mono.empty());
+		when(repository.complete(any(String.class), any(String.class))).thenAnswer(invocation -> Mono
+				.just(new IdempotentResponse(invocation.getArgument(0), REQUEST_HASH, invocation.getArgument(1))));
+		when(repository.deleteById(any(String.class))).thenReturn(Mono.empty());
+		responses = new IdempotentResponses(new MockEnvironment(), new SimpleMeterRegistry(), repository);
+		reservations = new AtomicInteger();
+	}
+
+	@Test
+	public void testBookingIdFor_replayed() {
+
+		//
+		// When
+		//
+		String first = responses.bookingIdFor("key", REQUEST, () -> reserve("booking1")).block();
+		String second = responses.bookingIdFor("key", REQUEST, () -> reserve("booking2")).block();
+
+		//
+		// Then
+		//
+		assertEquals(first, "booking1");
+		assertEquals(second, "booking1");
+		assertEquals(reservations.get(), 1);
+		verify(repository, times(1)).insert(any(IdempotentResponse.class));
+		verify(repository, times(1)).complete("key", "booking1");
+	}
+
+	@Test
+	public void testBookingIdFor_concurrentWaitsForFirst() {
+
+		//
+		// Given
+		//
+		MonoProcessor<String> firstBooking = MonoProcessor.create();
+		MonoProcessor<String> first = responses.bookingIdFor("key", REQUEST, () -> {
+			reservations.incrementAndGet();
+			return firstBooking;
+		}).toProcessor();
+		MonoProcessor<String> second = responses.bookingIdFor("key", REQUEST, () -> reserve("booking2"))
+				.toProcessor();
+
+		//
+		// When
+		//
+		firstBooking.onNext("booking1");
+
+		//
+		// Then
+		//
+		assertEquals(first.block(), "booking1");
+		assertEquals(second.block(), "booking1");
+		assertEquals(reservations.get(), 1);
+	}
+
+	@Test
+	public void testBookingIdFor_storedByOtherInstance() {
+
+		//
+		// Given
+		//
+		when(repository.insert(any(IdempotentResponse.class))).thenReturn(Mono.error(new DuplicateKeyException("key")));
+		when(repository.findById(eq("key"))).thenReturn(Mono.just(new IdempotentResponse("key", REQUEST_HASH, "booking0")));
+
+		//
+		// When
+		//
+		String bookingId = responses.bookingIdFor("key", REQUEST, () -> reserve("booking1")).block();
+
+		//
+		// Then
+		//
+		assertEquals(bookingId, "booking0");
+		assertEquals(reservations.get(), 0);
+	}
+
+	@Test
+	public void testBookingIdFor_pendingInOtherInstance() {
+
+		//
+		// Given
+		//
+		when(repository.insert(any(IdempotentResponse.class))).thenReturn(Mono.error(new DuplicateKeyException("key")));
+		when(repository.findById(eq("key"))).thenReturn(Mono.just(new IdempotentResponse("key", REQUEST_HASH, null)));
+
+		//
+		// When / Then
+		//
+		assertThrows(IdempotencyKeyInUseException.class,
+				() -> responses.bookingIdFor("key", REQUEST, () -> reserve("booking1")).block());
+		assertEquals(reservations.get(), 0);
+	}
+
+	@Test
+	public void testBookingIdFor_pendingTakenOver() {
+
+		//
+		// Given
+		//
+		when(repository.insert(any(IdempotentResponse.class))).thenReturn(Mono.error(new DuplicateKeyException("key")));
+		when(repository.takeOver(eq("key"), eq(REQUEST_HASH), any(Date.class)))
+				.thenReturn(Mono.just(new IdempotentResponse("key", REQUEST_HASH, null)));
+
+		//
+		// When
+		//
+		String bookingId = responses.bookingIdFor("key", REQUEST, () -> reserve("booking1")).block();
+
+		//
+		// Then
+		//
+		assertEquals(bookingId, "booking1");
+		assertEquals(reservations.get(), 1);
+	}
+
+	@Test
+	public void testBookingIdFor_differentRequestRejected() {
+
+		//
+		// Given
+		//
+		responses.bookingIdFor("key", REQUEST, () -> reserve("booking1")).block();
+
+		//
+		// When / Then
+		//
+		assertThrows(IllegalArgumentException.class,
+				() -> responses.bookingIdFor("key", "other request", () -> reserve("booking2")).block());
+		assertEquals(reservations.get(), 1);
+	}
+
+	@Test
+	public void testBookingIdFor_failedNotStored() {
+
+		//
+		// Given
+		//
+		assertThrows(IllegalArgumentException.class, () -> responses
+				.bookingIdFor("key", REQUEST, () -> Mono.error(new IllegalArgumentException("No availability")))
+				.block());
+		verify(repository).deleteById("key");
+		verify(repository, never()).complete(any(String.class), any(String.class));
+
+		//
+		// When
+		//
+		String bookingId = responses.bookingIdFor("key", REQUEST, () -> reserve("booking1")).block();
+
+		//
+		// Then
+		//
+		assertEquals(bookingId, "booking1");
+		assertEquals(reservations.get(), 1);
+	}
+
+	private Mono<String> reserve(String bookingId) {
+		return Mono.fromSupplier(() -> {
+			reservations.incrementAndGet();
+			return bookingId;
+		});
+	}
+}
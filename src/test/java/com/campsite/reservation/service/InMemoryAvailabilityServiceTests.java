@@ -0,0 +1,168 @@
+package com.campsite.reservation.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.MockitoAnnotations;
+
+import com.campsite.reservation.event.BookingEvent;
+import com.campsite.reservation.model.AvailabilityVO;
+import com.campsite.reservation.model.Booking;
+import com.campsite.reservation.model.BookingSlot;
+import com.campsite.reservation.model.DateRangeVO;
+import com.campsite.reservation.repository.BookingRepository;
+import com.campsite.reservation.service.impl.InMemoryAvailabilityServiceImpl;
+import com.campsite.reservation.service.impl.ReservationMetrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Flux;
+
+public class InMemoryAvailabilityServiceTests {
+
+	@Mock
+	BookingRepository bookingRepository;
+
+	SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	@Spy
+	ReservationMetrics metrics = new ReservationMetrics(meterRegistry);
+
+	@InjectMocks
+	InMemoryAvailabilityServiceImpl service = new InMemoryAvailabilityServiceImpl();
+
+	LocalDate now = LocalDate.now();
+
+	@BeforeEach
+	public void beforeEach() {
+		MockitoAnnotations.initMocks(this);
+		when(bookingRepository.findSlotsEndingAfter(any(LocalDate.class))).thenReturn(Flux.<BookingSlot>just(
+				new BookingSlot("id1", new DateRangeVO(now.plusDays(5), now.plusDays(10))),
+				new BookingSlot("id2", new DateRangeVO(now.plusMonths(1), now.plusMonths(1).plusDays(10)))));
+		service.load();
+	}
+
+	@Test
+	public void testCalculateAvailability_loadedBookings() {
+
+		//
+		// Given
+		//
+		DateRangeVO dateRange = new DateRangeVO(now, now.plusMonths(3));
+
+		//
+		// When
+		//
+		AvailabilityVO availability = service.calculateAvailability(Booking.DEFAULT_SITE, dateRange).block();
+
+		//
+		// Then
+		//
+		assertEquals(availability.getDatesAvailable().size(), 3);
+		assertTrue(availability.getDatesAvailable()
+				.containsAll(Arrays.asList(new DateRangeVO(now, now.plusDays(5)),
+						new DateRangeVO(now.plusDays(10), now.plusMonths(1)),
+						new DateRangeVO(now.plusMonths(1).plusDays(10), now.plusMonths(3)))));
+	}
+
+	@Test
+	public void testCalculateAvailabilityExcluding() {
+
+		//
+		// Given
+		//
+		DateRangeVO dateRange = new DateRangeVO(now, now.plusDays(20));
+
+		//
+		// When
+		//
+		AvailabilityVO availability = service.calculateAvailabilityExcluding(Booking.DEFAULT_SITE, "id1", dateRange).block();
+
+		//
+		// Then
+		//
+		assertEquals(availability.getDatesAvailable().size(), 1);
+		assertTrue(availability.getDatesAvailable().contains(dateRange));
+	}
+
+	@Test
+	public void testCalculateAvailability_afterBookingEvents() {
+
+		//
+		// Given
+		//
+		DateRangeVO dateRange = new DateRangeVO(now, now.plusDays(20));
+		Booking created = new Booking("id3", "email", "fullName", new DateRangeVO(now.plusDays(12), now.plusDays(14)));
+		Booking cancelled = new Booking("id1", "email", "fullName", new DateRangeVO(now.plusDays(5), now.plusDays(10)));
+
+		//
+		// When
+		//
+		service.onBookingEvent(BookingEvent.created(created));
+		service.onBookingEvent(BookingEvent.cancelled(cancelled));
+		AvailabilityVO availability = service.calculateAvailability(Booking.DEFAULT_SITE, dateRange).block();
+
+		//
+		// Then
+		//
+		assertEquals(availability.getDatesAvailable().size(), 2);
+		assertTrue(availability.getDatesAvailable().containsAll(Arrays
+				.asList(new DateRangeVO(now, now.plusDays(12)), new DateRangeVO(now.plusDays(14), now.plusDays(20)))));
+	}
+
+	@Test
+	public void testCalculateAvailability_otherSite() {
+
+		//
+		// Given
+		//
+		DateRangeVO dateRange = new DateRangeVO(now, now.plusDays(20));
+		Booking otherSite = new Booking("id3", "site2", "email", "fullName",
+				new DateRangeVO(now.plusDays(12), now.plusDays(14)));
+
+		//
+		// When
+		//
+		service.onBookingEvent(BookingEvent.created(otherSite));
+		AvailabilityVO availability = service.calculateAvailability("site2", dateRange).block();
+
+		//
+		// Then
+		//
+		assertEquals(availability.getDatesAvailable().size(), 2);
+		assertTrue(availability.getDatesAvailable().containsAll(Arrays
+				.asList(new DateRangeVO(now, now.plusDays(12)), new DateRangeVO(now.plusDays(14), now.plusDays(20)))));
+	}
+
+	@Test
+	public void testCalculateAvailability_recordsMetrics() {
+
+		//
+		// Given
+		//
+		DateRangeVO dateRange = new DateRangeVO(now.plusDays(20), now.plusMonths(2));
+
+		//
+		// When
+		//
+		service.calculateAvailability(Booking.DEFAULT_SITE, dateRange).block();
+
+		//
+		// Then
+		//
+		assertEquals(meterRegistry.get("reservation.stage").tag("stage", ReservationMetrics.KERNEL).timer().count(), 1);
+		assertEquals(meterRegistry.get("reservation.availability.bookings").tag("kind", "scanned").summary()
+				.totalAmount(), 1);
+		assertEquals(meterRegistry.get("reservation.availability.bookings").tag("kind", "overlapping").summary()
+				.totalAmount(), 1);
+	}
+}
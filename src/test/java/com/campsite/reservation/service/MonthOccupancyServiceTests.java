@@ -0,0 +1,199 @@
+package com.campsite.reservation.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.MockitoAnnotations;
+
+import com.campsite.reservation.model.AvailabilityVO;
+import com.campsite.reservation.model.Booking;
+import com.campsite.reservation.model.BookingSlot;
+import com.campsite.reservation.model.DateRangeVO;
+import com.campsite.reservation.model.MonthOccupancy;
+import com.campsite.reservation.repository.BookingRepository;
+import com.campsite.reservation.repository.MonthOccupancyRepository;
+import com.campsite.reservation.service.impl.MonthOccupancyServiceImpl;
+import com.campsite.reservation.service.impl.ReservationMetrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public class MonthOccupancyServiceTests {
+
+	@Mock
+	MonthOccupancyRepository monthOccupancyRepository;
+
+	@Mock
+	BookingRepository bookingRepository;
+
+	SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	@Spy
+	ReservationMetrics metrics = new ReservationMetrics(meterRegistry);
+
+	@InjectMocks
+	MonthOccupancyServiceImpl service = new MonthOccupancyServiceImpl();
+
+	YearMonth month = YearMonth.now().plusMonths(1);
+
+	@BeforeEach
+	public void beforeEach() {
+		MockitoAnnotations.initMocks(this);
+		when(monthOccupancyRepository.ensureIndexes()).thenReturn(Mono.just("siteId_month"));
+		when(monthOccupancyRepository.claimNights(anyString(), anyString(), anyList()))
+				.thenReturn(Mono.just(Boolean.TRUE));
+		when(monthOccupancyRepository.releaseNights(anyString(), anyString(), anyList())).thenReturn(Mono.empty());
+		// id1 takes the last 2 nights of the month, id2 the first 2 nights of the next one
+		when(monthOccupancyRepository.findByDateRange(eq(Booking.DEFAULT_SITE), any(DateRangeVO.class)))
+				.thenReturn(Flux.just(
+						new MonthOccupancy(Booking.DEFAULT_SITE, month).take(month.atEndOfMonth().minusDays(1), "id1")
+								.take(month.atEndOfMonth(), "id1"),
+						new MonthOccupancy(Booking.DEFAULT_SITE, month.plusMonths(1)).take(month.plusMonths(1).atDay(1), "id2")
+								.take(month.plusMonths(1).atDay(2), "id2")));
+	}
+
+	@Test
+	public void testCalculateAvailability() {
+
+		//
+		// Given
+		//
+		DateRangeVO dateRange = new DateRangeVO(month.atDay(1), month.plusMonths(2).atDay(1));
+
+		//
+		// When
+		//
+		AvailabilityVO availability = service.calculateAvailability(Booking.DEFAULT_SITE, dateRange).block();
+
+		//
+		// Then
+		//
+		assertEquals(availability.getDatesAvailable().size(), 2);
+		assertTrue(availability.getDatesAvailable()
+				.containsAll(Arrays.asList(new DateRangeVO(month.atDay(1), month.atEndOfMonth().minusDays(1)),
+						new DateRangeVO(month.plusMonths(1).atDay(3), month.plusMonths(2).atDay(1)))));
+	}
+
+	@Test
+	public void testCalculateAvailabilityExcluding() {
+
+		//
+		// Given
+		//
+		DateRangeVO dateRange = new DateRangeVO(month.atDay(1), month.plusMonths(2).atDay(1));
+
+		//
+		// When
+		//
+		AvailabilityVO availability = service.calculateAvailabilityExcluding(Booking.DEFAULT_SITE, "id1", dateRange)
+				.block();
+
+		//
+		// Then
+		//
+		assertEquals(availability.getDatesAvailable().size(), 2);
+		assertTrue(availability.getDatesAvailable()
+				.containsAll(Arrays.asList(new DateRangeVO(month.atDay(1), month.plusMonths(1).atDay(1)),
+						new DateRangeVO(month.plusMonths(1).atDay(3), month.plusMonths(2).atDay(1)))));
+	}
+
+	@Test
+	public void testCalculateAvailability_noMonths() {
+
+		//
+		// Given
+		//
+		DateRangeVO dateRange = new DateRangeVO(month.atDay(1), month.atDay(10));
+		when(monthOccupancyRepository.findByDateRange(eq("site2"), any(DateRangeVO.class)))
+				.thenReturn(Flux.<MonthOccupancy>empty());
+
+		//
+		// When
+		//
+		AvailabilityVO availability = service.calculateAvailability("site2", dateRange).block();
+
+		//
+		// Then
+		//
+		assertEquals(availability.getDatesAvailable().size(), 1);
+		assertTrue(availability.getDatesAvailable().contains(dateRange));
+	}
+
+	@Test
+	public void testLoad_claimsMissingNights() {
+
+		//
+		// Given
+		//
+		// Booked while this engine was off: only its first night is there
+		LocalDate now = LocalDate.now();
+		when(bookingRepository.findSlotsEndingAfter(any(LocalDate.class))).thenReturn(Flux.just(
+				new BookingSlot("id1", Booking.DEFAULT_SITE, new DateRangeVO(now.plusDays(1), now.plusDays(4)))));
+		when(monthOccupancyRepository.findFrom(eq(YearMonth.from(now)))).thenReturn(
+				Flux.just(new MonthOccupancy(Booking.DEFAULT_SITE, YearMonth.from(now.plusDays(1))).take(now.plusDays(1),
+						"id1")));
+		when(bookingRepository.customFindById(eq("id1"))).thenReturn(Mono.just(new Booking("id1", Booking.DEFAULT_SITE,
+				"email", "fullName", new DateRangeVO(now.plusDays(1), now.plusDays(4)))));
+
+		//
+		// When
+		//
+		service.load();
+
+		//
+		// Then
+		//
+		verify(monthOccupancyRepository).claimNights(Booking.DEFAULT_SITE, "id1",
+				Arrays.asList(now.plusDays(2), now.plusDays(3)));
+		verify(monthOccupancyRepository, never()).releaseNights(anyString(), anyString(), anyList());
+	}
+
+	@Test
+	public void testLoad_releasesOrphanNights() {
+
+		//
+		// Given
+		//
+		// Cancelled while this engine was off, and one being booked right now
+		LocalDate now = LocalDate.now();
+		String cancelled = new ObjectId(new Date(System.currentTimeMillis() - 3600000)).toHexString();
+		String beingBooked = new ObjectId().toHexString();
+		when(bookingRepository.findSlotsEndingAfter(any(LocalDate.class))).thenReturn(Flux.empty());
+		when(monthOccupancyRepository.findFrom(eq(YearMonth.from(now)))).thenReturn(Flux.just(
+				new MonthOccupancy(Booking.DEFAULT_SITE, YearMonth.from(now)).take(now, cancelled),
+				new MonthOccupancy(Booking.DEFAULT_SITE, month).take(month.atDay(5), beingBooked)));
+
+		//
+		// When
+		//
+		service.load();
+
+		//
+		// Then
+		//
+		verify(monthOccupancyRepository).releaseNights(Booking.DEFAULT_SITE, cancelled,
+				Collections.singletonList(now));
+		verify(monthOccupancyRepository, never()).releaseNights(anyString(), eq(beingBooked), anyList());
+		verify(monthOccupancyRepository, never()).claimNights(anyString(), anyString(), anyList());
+	}
+}
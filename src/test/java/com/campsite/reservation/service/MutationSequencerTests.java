@@ -0,0 +1,263 @@
+package com.campsite.reservation.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.mock.env.MockEnvironment;
+
+import com.campsite.reservation.exception.WriteQueueFullException;
+import com.campsite.reservation.model.Booking;
+import com.campsite.reservation.model.BookingSlot;
+import com.campsite.reservation.model.BookingWrite;
+import com.campsite.reservation.model.DateRangeVO;
+import com.campsite.reservation.repository.BookingRepository;
+import com.campsite.reservation.service.impl.MutationSequencer;
+import com.campsite.reservation.service.impl.ReservationMetrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+
+public class MutationSequencerTests {
+
+	@Mock
+	BookingRepository bookingRepository;
+
+	@Spy
+	ReservationMetrics metrics = new ReservationMetrics(new SimpleMeterRegistry());
+
+	@InjectMocks
+	MutationSequencer sequencer = new MutationSequencer(
+			new MockEnvironment().withProperty("reservation.sequencer.queue-capacity", "4"));
+
+	List<List<BookingWrite>> bulkWrites;
+
+	LocalDate now = LocalDate.now();
+
+	Booking existing = new Booking("existing", Booking.DEFAULT_SITE, "email", "fullName",
+			new DateRangeVO(now.plusDays(5), now.plusDays(7)));
+
+	@BeforeEach
+	public void beforeEach() {
+		MockitoAnnotations.initMocks(this);
+		bulkWrites = new ArrayList<List<BookingWrite>>();
+		when(bookingRepository.findSlotsEndingAfter(any(LocalDate.class)))
+				.thenReturn(Flux.just(BookingSlot.from(existing)));
+		when(bookingRepository.bulkWrite(any())).thenAnswer(invocation -> {
+			List<BookingWrite> writes = invocation.getArgument(0);
+			bulkWrites.add(writes);
+			return Mono.just(writes.size());
+		});
+		sequencer.load();
+	}
+
+	@Test
+	public void testCreate_ok() {
+
+		//
+		// When
+		//
+		Booking booked = sequencer.create(booking(now.plusDays(7), now.plusDays(9))).block();
+
+		//
+		// Then
+		//
+		assertEquals(booked.getVersion(), Long.valueOf(0));
+		assertEquals(bulkWrites.size(), 1);
+		assertEquals(bulkWrites.get(0).get(0).getType(), BookingWrite.Type.INSERT);
+		assertEquals(bulkWrites.get(0).get(0).getBooking().getId(), booked.getId());
+	}
+
+	@Test
+	public void testCreate_noAvailability() {
+
+		//
+		// When / Then
+		//
+		assertThrows(IllegalArgumentException.class,
+				() -> sequencer.create(booking(now.plusDays(6), now.plusDays(8))).block());
+		assertEquals(bulkWrites.size(), 0);
+	}
+
+	@Test
+	public void testCreate_queuedWhileSavingGoInOneBatch() {
+
+		//
+		// Given
+		//
+		MonoProcessor<Integer> firstBulkWrite = MonoProcessor.create();
+		doAnswer(invocation -> {
+			List<BookingWrite> writes = invocation.getArgument(0);
+			bulkWrites.add(writes);
+			return bulkWrites.size() == 1 ? firstBulkWrite : Mono.just(writes.size());
+		}).when(bookingRepository).bulkWrite(any());
+		MonoProcessor<Booking> first = sequencer.create(booking(now.plusDays(1), now.plusDays(2))).toProcessor();
+		MonoProcessor<Booking> second = sequencer.create(booking(now.plusDays(2), now.plusDays(3))).toProcessor();
+		MonoProcessor<Booking> third = sequencer.create(booking(now.plusDays(3), now.plusDays(4))).toProcessor();
+		MonoProcessor<Booking> overlapping = sequencer.create(booking(now.plusDays(3), now.plusDays(5)))
+				.toProcessor();
+
+		//
+		// When
+		//
+		firstBulkWrite.onNext(1);
+
+		//
+		// Then
+		//
+		first.block();
+		second.block();
+		third.block();
+		assertThrows(IllegalArgumentException.class, () -> overlapping.block());
+		assertEquals(bulkWrites.size(), 2);
+		assertEquals(bulkWrites.get(0).size(), 1);
+		assertEquals(bulkWrites.get(1).size(), 2);
+	}
+
+	@Test
+	public void testCreate_queueFull() {
+
+		//
+		// Given
+		//
+		doReturn(MonoProcessor.<Integer>create()).when(bookingRepository).bulkWrite(any());
+		sequencer.create(booking(now.plusDays(1), now.plusDays(2))).toProcessor();
+		for (int i = 0; i < 4; i++)
+			sequencer.create(booking(now.plusDays(10 + i), now.plusDays(11 + i))).toProcessor();
+
+		//
+		// When / Then
+		//
+		assertThrows(WriteQueueFullException.class,
+				() -> sequencer.create(booking(now.plusDays(20), now.plusDays(21))).block());
+	}
+
+	@Test
+	public void testModify_ok() {
+
+		//
+		// When
+		//
+		Booking modified = sequencer.modify(existing, new DateRangeVO(now.plusDays(6), now.plusDays(8))).block();
+
+		//
+		// Then
+		//
+		assertEquals(modified.getDateRange(), new DateRangeVO(now.plusDays(6), now.plusDays(8)));
+		assertEquals(modified.getVersion(), Long.valueOf(1));
+		assertEquals(bulkWrites.get(0).get(0).getType(), BookingWrite.Type.UPDATE);
+	}
+
+	@Test
+	public void testModify_cancelledConcurrently() {
+
+		//
+		// Given
+		//
+		sequencer.cancel(existing).block();
+
+		//
+		// When / Then
+		//
+		assertThrows(OptimisticLockingFailureException.class,
+				() -> sequencer.modify(existing, new DateRangeVO(now.plusDays(6), now.plusDays(8))).block());
+		assertEquals(bulkWrites.size(), 1);
+	}
+
+	@Test
+	public void testCancel_nightsReleased() {
+
+		//
+		// Given
+		//
+		sequencer.cancel(existing).block();
+
+		//
+		// When
+		//
+		Booking booked = sequencer.create(booking(now.plusDays(5), now.plusDays(7))).block();
+
+		//
+		// Then
+		//
+		assertEquals(booked.getDateRange(), existing.getDateRange());
+		assertEquals(bulkWrites.get(0).get(0).getType(), BookingWrite.Type.DELETE);
+	}
+
+	@Test
+	public void testCreate_bulkWritePartiallyApplied() {
+
+		//
+		// Given
+		//
+		MonoProcessor<Integer> firstBulkWrite = MonoProcessor.create();
+		doReturn(firstBulkWrite, Mono.just(1)).when(bookingRepository).bulkWrite(any());
+		MonoProcessor<Booking> blocking = sequencer.create(booking(now.plusDays(1), now.plusDays(2)))
+				.toProcessor();
+		MonoProcessor<Booking> saved = sequencer.create(booking(now.plusDays(2), now.plusDays(3))).toProcessor();
+		MonoProcessor<Booking> notSaved = sequencer.create(booking(now.plusDays(3), now.plusDays(4)))
+				.toProcessor();
+
+		//
+		// When
+		//
+		firstBulkWrite.onNext(1);
+
+		//
+		// Then
+		//
+		blocking.block();
+		saved.block();
+		assertThrows(IllegalStateException.class, () -> notSaved.block());
+		// Bookings kept for the site are loaded again
+		verify(bookingRepository, times(2)).findSlotsEndingAfter(any(LocalDate.class));
+	}
+
+	@Test
+	public void testCreate_commitThrows() {
+
+		//
+		// Given
+		//
+		doThrow(new IllegalStateException("bulkWrite")).doAnswer(invocation -> {
+			List<BookingWrite> writes = invocation.getArgument(0);
+			bulkWrites.add(writes);
+			return Mono.just(writes.size());
+		}).when(bookingRepository).bulkWrite(any());
+
+		//
+		// When / Then
+		//
+		assertThrows(IllegalStateException.class,
+				() -> sequencer.create(booking(now.plusDays(1), now.plusDays(2))).block());
+		// The next mutations are still taken
+		Booking booked = sequencer.create(booking(now.plusDays(1), now.plusDays(2))).block();
+		assertEquals(booked.getDateRange(), new DateRangeVO(now.plusDays(1), now.plusDays(2)));
+		assertEquals(bulkWrites.size(), 1);
+		// Bookings kept for the site are loaded again
+		verify(bookingRepository, times(2)).findSlotsEndingAfter(any(LocalDate.class));
+	}
+
+	private Booking booking(LocalDate from, LocalDate to) {
+		return new Booking(null, Booking.DEFAULT_SITE, "email", "fullName", new DateRangeVO(from, to));
+	}
+}
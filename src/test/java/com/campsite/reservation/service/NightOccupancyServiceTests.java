@@ -0,0 +1,162 @@
+package com.campsite.reservation.service;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import com.campsite.reservation.exception.BookingNotFoundException;
+import com.campsite.reservation.model.Booking;
+import com.campsite.reservation.model.BookingSlot;
+import com.campsite.reservation.model.DateRangeVO;
+import com.campsite.reservation.model.Night;
+import com.campsite.reservation.repository.BookingRepository;
+import com.campsite.reservation.repository.NightRepository;
+import com.campsite.reservation.service.impl.NightOccupancyServiceImpl;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public class NightOccupancyServiceTests {
+
+	@Mock
+	NightRepository nightRepository;
+
+	@Mock
+	BookingRepository bookingRepository;
+
+	@InjectMocks
+	NightOccupancyServiceImpl service = new NightOccupancyServiceImpl();
+
+	LocalDate now = LocalDate.now();
+
+	@BeforeEach
+	public void beforeEach() {
+		MockitoAnnotations.initMocks(this);
+		when(nightRepository.ensureIndexes()).thenReturn(Mono.just("siteId_date_unique"));
+		when(nightRepository.claimNights(anyString(), anyString(), anyList())).thenReturn(Mono.just(Boolean.TRUE));
+		when(nightRepository.releaseNights(anyString(), anyList())).thenReturn(Mono.empty());
+	}
+
+	@Test
+	public void testLoad_claimsMissingNights() {
+
+		//
+		// Given
+		//
+		// Booked while the occupancy mode was off: only its first night is there
+		when(bookingRepository.findSlotsEndingAfter(any(LocalDate.class))).thenReturn(Flux.just(
+				new BookingSlot("id1", Booking.DEFAULT_SITE, new DateRangeVO(now.plusDays(1), now.plusDays(4)))));
+		when(nightRepository.findFrom(eq(now)))
+				.thenReturn(Flux.just(new Night(Booking.DEFAULT_SITE, now.plusDays(1), "id1")));
+		when(bookingRepository.customFindById(eq("id1"))).thenReturn(Mono.just(booking("id1", 1, 4)));
+
+		//
+		// When
+		//
+		service.load();
+
+		//
+		// Then
+		//
+		verify(nightRepository).claimNights(Booking.DEFAULT_SITE, "id1",
+				Arrays.asList(now.plusDays(2), now.plusDays(3)));
+		verify(nightRepository, never()).releaseNights(anyString(), anyList());
+	}
+
+	@Test
+	public void testLoad_releasesOrphanNights() {
+
+		//
+		// Given
+		//
+		// Cancelled while the occupancy mode was off, and one being booked right now
+		String cancelled = new ObjectId(new Date(System.currentTimeMillis() - 3600000)).toHexString();
+		String beingBooked = new ObjectId().toHexString();
+		when(bookingRepository.findSlotsEndingAfter(any(LocalDate.class))).thenReturn(Flux.empty());
+		when(nightRepository.findFrom(eq(now))).thenReturn(
+				Flux.just(new Night(Booking.DEFAULT_SITE, now.plusDays(1), cancelled),
+						new Night(Booking.DEFAULT_SITE, now.plusDays(5), beingBooked)));
+
+		//
+		// When
+		//
+		service.load();
+
+		//
+		// Then
+		//
+		verify(nightRepository).releaseNights(cancelled, Collections.singletonList(now.plusDays(1)));
+		verify(nightRepository, never()).releaseNights(eq(beingBooked), anyList());
+		verify(nightRepository, never()).claimNights(anyString(), anyString(), anyList());
+	}
+
+	@Test
+	public void testLoad_bookingModifiedMeanwhile() {
+
+		//
+		// Given
+		//
+		// Modified by another instance after the bookings were read
+		when(bookingRepository.findSlotsEndingAfter(any(LocalDate.class))).thenReturn(Flux.just(
+				new BookingSlot("id1", Booking.DEFAULT_SITE, new DateRangeVO(now.plusDays(1), now.plusDays(4)))));
+		when(nightRepository.findFrom(eq(now))).thenReturn(Flux.empty());
+		when(bookingRepository.customFindById(eq("id1"))).thenReturn(Mono.just(booking("id1", 5, 7)));
+
+		//
+		// When
+		//
+		service.load();
+
+		//
+		// Then
+		//
+		verify(nightRepository, never()).claimNights(anyString(), anyString(), anyList());
+	}
+
+	@Test
+	public void testLoad_bookingCancelledWhileClaiming() {
+
+		//
+		// Given
+		//
+		when(bookingRepository.findSlotsEndingAfter(any(LocalDate.class))).thenReturn(Flux.just(
+				new BookingSlot("id1", Booking.DEFAULT_SITE, new DateRangeVO(now.plusDays(1), now.plusDays(3)))));
+		when(nightRepository.findFrom(eq(now))).thenReturn(Flux.empty());
+		when(bookingRepository.customFindById(eq("id1"))).thenReturn(Mono.just(booking("id1", 1, 3)),
+				Mono.error(new BookingNotFoundException("id1")));
+
+		//
+		// When
+		//
+		service.load();
+
+		//
+		// Then
+		//
+		List<LocalDate> nights = Arrays.asList(now.plusDays(1), now.plusDays(2));
+		verify(nightRepository).claimNights(Booking.DEFAULT_SITE, "id1", nights);
+		verify(nightRepository).releaseNights("id1", nights);
+	}
+
+	private Booking booking(String id, int fromDays, int toDays) {
+		return new Booking(id, Booking.DEFAULT_SITE, "email", "fullName",
+				new DateRangeVO(now.plusDays(fromDays), now.plusDays(toDays)));
+	}
+}
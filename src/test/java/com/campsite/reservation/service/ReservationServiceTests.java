@@ -1,30 +1,49 @@
 package com.campsite.reservation.service;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
+import java.time.Instant;
 import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
 
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.core.env.Environment;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import com.campsite.reservation.exception.HoldNotFoundException;
+import com.campsite.reservation.model.AvailabilityVO;
 import com.campsite.reservation.model.Booking;
 import com.campsite.reservation.model.DateRangeVO;
+import com.campsite.reservation.model.Hold;
 import com.campsite.reservation.repository.BookingRepository;
+import com.campsite.reservation.repository.HoldRepository;
 import com.campsite.reservation.service.impl.ReservationServiceImpl;
 
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @SpringBootTest
@@ -42,6 +61,9 @@ public class ReservationServiceTests {
 	@Mock
 	AvailabilityService availabilityService;
 
+	@Mock
+	HoldRepository holdRepository;
+
 	@Mock
 	MeterRegistry meterRegistry;
 
@@ -64,6 +86,11 @@ public class ReservationServiceTests {
 				Integer.class);
 	}
 
+	@AfterEach
+	public void afterEach() {
+		ReflectionTestUtils.setField(service, "occupancyService", null);
+	}
+
 	@Test
 	public void testFindAvailability_dateRangeIsClosed() {
 
@@ -73,16 +100,39 @@ public class ReservationServiceTests {
 		LocalDate now = LocalDate.now();
 		DateRangeVO dateRange = new DateRangeVO(now.plusDays(minDaysAhead),
 				now.plusDays(minDaysAhead + maxBookingDays));
+		when(availabilityService.calculateAvailability(eq(Booking.DEFAULT_SITE), eq(dateRange)))
+				.thenReturn(Mono.just(AvailabilityVO.builder(dateRange).addRange(dateRange).build()));
 
 		//
 		// When
 		//
-		service.findAvailability(dateRange);
+		service.findAvailability(Booking.DEFAULT_SITE, dateRange).block();
 
 		//
 		// Then
 		//
-		verify(availabilityService).calculateAvailability(dateRange);
+		verify(availabilityService).calculateAvailability(Booking.DEFAULT_SITE, dateRange);
+	}
+
+	@Test
+	public void testFindAvailability_unknownSite() {
+
+		//
+		// Given
+		//
+		LocalDate now = LocalDate.now();
+		DateRangeVO dateRange = new DateRangeVO(now.plusDays(minDaysAhead),
+				now.plusDays(minDaysAhead + maxBookingDays));
+		doThrow(new IllegalArgumentException("Unknown site: unknown")).when(bookingService).checkSite("unknown");
+
+		//
+		// When / Then
+		//
+		assertThrows(IllegalArgumentException.class, () -> service.findAvailability("unknown", dateRange).block());
+		assertThrows(IllegalArgumentException.class,
+				() -> service.streamAvailability("unknown", dateRange).blockLast());
+		assertThrows(IllegalArgumentException.class, () -> service.watchAvailability("unknown", dateRange));
+		verifyNoInteractions(availabilityService);
 	}
 
 	@Test
@@ -93,17 +143,20 @@ public class ReservationServiceTests {
 		//
 		LocalDate now = LocalDate.now();
 		DateRangeVO dateRange = new DateRangeVO(now.plusDays(minDaysAhead), null);
+		DateRangeVO closedDateRange = new DateRangeVO(now.plusDays(minDaysAhead),
+				now.plusDays(minDaysAhead).plusMonths(defaultMonthsForAvailabilityRequest));
+		when(availabilityService.calculateAvailability(eq(Booking.DEFAULT_SITE), eq(closedDateRange)))
+				.thenReturn(Mono.just(AvailabilityVO.builder(closedDateRange).addRange(closedDateRange).build()));
 
 		//
 		// When
 		//
-		service.findAvailability(dateRange);
+		service.findAvailability(Booking.DEFAULT_SITE, dateRange).block();
 
 		//
 		// Then
 		//
-		verify(availabilityService).calculateAvailability(new DateRangeVO(now.plusDays(minDaysAhead),
-				now.plusDays(minDaysAhead).plusMonths(defaultMonthsForAvailabilityRequest)));
+		verify(availabilityService).calculateAvailability(Booking.DEFAULT_SITE, closedDateRange);
 	}
 
 	@Test
@@ -166,9 +219,9 @@ public class ReservationServiceTests {
 		Booking booking = new Booking(bookingId, "email", "fullName", dateRange);
 		Booking newBooking = Booking.from(booking, newDateRange);
 		when(bookingRepository.customFindById(eq(bookingId))).thenReturn(Mono.<Booking>just(booking));
-		when(bookingService.isBookingModificationAllowed(eq(bookingId), eq(newDateRange)))
+		when(bookingService.isBookingModificationAllowed(eq(booking), eq(newDateRange)))
 				.thenReturn(Mono.<Boolean>just(Boolean.TRUE));
-		when(bookingRepository.save(eq(newBooking))).thenReturn(Mono.<Booking>just(newBooking));
+		when(bookingRepository.customUpdate(eq(newBooking))).thenReturn(Mono.<Booking>just(newBooking));
 
 		//
 		// When
@@ -179,8 +232,8 @@ public class ReservationServiceTests {
 		// Then
 		//
 		verify(bookingRepository).customFindById(bookingId);
-		verify(bookingService).isBookingModificationAllowed(bookingId, newDateRange);
-		verify(bookingRepository).save(newBooking);
+		verify(bookingService).isBookingModificationAllowed(booking, newDateRange);
+		verify(bookingRepository).customUpdate(newBooking);
 	}
 
 	@Test
@@ -197,7 +250,7 @@ public class ReservationServiceTests {
 		String bookingId = "someBookingId";
 		Booking booking = new Booking(bookingId, "email", "fullName", dateRange);
 		when(bookingRepository.customFindById(eq(bookingId))).thenReturn(Mono.<Booking>just(booking));
-		when(bookingService.isBookingModificationAllowed(eq(bookingId), eq(newDateRange)))
+		when(bookingService.isBookingModificationAllowed(eq(booking), eq(newDateRange)))
 				.thenReturn(Mono.<Boolean>just(Boolean.FALSE));
 
 		//
@@ -205,7 +258,7 @@ public class ReservationServiceTests {
 		//
 		assertThrows(IllegalArgumentException.class, () -> service.modifyReservation(bookingId, newDateRange).block());
 		verify(bookingRepository).customFindById(bookingId);
-		verify(bookingService).isBookingModificationAllowed(bookingId, newDateRange);
+		verify(bookingService).isBookingModificationAllowed(booking, newDateRange);
 		verifyNoMoreInteractions(bookingRepository);
 	}
 
@@ -240,7 +293,7 @@ public class ReservationServiceTests {
 		// Given
 		//
 		String bookingId = "someBookingId";
-		when(bookingRepository.customDeleteById(eq(bookingId))).thenReturn(Mono.<Boolean>empty());
+		when(bookingRepository.customDeleteById(eq(bookingId))).thenReturn(Mono.<Booking>empty());
 
 		//
 		// When
@@ -252,4 +305,257 @@ public class ReservationServiceTests {
 		//
 		verify(bookingRepository).customDeleteById(bookingId);
 	}
+
+	@Test
+	public void testFindFreeSites() {
+
+		//
+		// Given
+		//
+		LocalDate now = LocalDate.now();
+		DateRangeVO dateRange = new DateRangeVO(now.plusDays(1), now.plusDays(3));
+		when(bookingService.getSites()).thenReturn(Arrays.asList("site1", "site2", "site3"));
+		when(bookingRepository.findSiteIdsByDateRange(eq(dateRange))).thenReturn(Flux.just("site2"));
+
+		//
+		// When
+		//
+		List<String> freeSites = service.findFreeSites(dateRange).block();
+
+		//
+		// Then
+		//
+		assertEquals(freeSites, Arrays.asList("site1", "site3"));
+		verify(bookingRepository).findSiteIdsByDateRange(dateRange);
+	}
+
+	@Test
+	public void testConfirmHold_ok() {
+
+		//
+		// Given
+		//
+		Hold hold = hold("someHoldId");
+		when(holdRepository.findActiveById(eq("someHoldId"))).thenReturn(Mono.just(hold));
+		when(bookingService.isBookingModificationAllowed(eq(Booking.DEFAULT_SITE), eq("someHoldId"),
+				eq(hold.getDateRange()))).thenReturn(Mono.just(Boolean.TRUE));
+		when(bookingRepository.insert(eq(hold.toBooking()))).thenReturn(Mono.just(hold.toBooking()));
+		when(holdRepository.deleteById(eq("someHoldId"))).thenReturn(Mono.empty());
+
+		//
+		// When
+		//
+		Booking booking = service.confirmHold("someHoldId").block();
+
+		//
+		// Then
+		//
+		assertEquals(booking.getId(), "someHoldId");
+		verify(bookingRepository).insert(hold.toBooking());
+		verify(holdRepository).deleteById("someHoldId");
+	}
+
+	@Test
+	public void testConfirmHold_expiredOrUnknown() {
+
+		//
+		// Given
+		//
+		when(holdRepository.findActiveById(eq("someHoldId")))
+				.thenReturn(Mono.error(new HoldNotFoundException("someHoldId")));
+
+		//
+		// When / Then
+		//
+		assertThrows(HoldNotFoundException.class, () -> service.confirmHold("someHoldId").block());
+		verifyNoInteractions(bookingRepository);
+		verify(holdRepository, never()).deleteById(any(String.class));
+	}
+
+	@Test
+	public void testConfirmHold_nightsTaken() {
+
+		//
+		// Given
+		//
+		Hold hold = hold("someHoldId");
+		when(holdRepository.findActiveById(eq("someHoldId"))).thenReturn(Mono.just(hold));
+		when(bookingService.isBookingModificationAllowed(eq(Booking.DEFAULT_SITE), eq("someHoldId"),
+				eq(hold.getDateRange()))).thenReturn(Mono.just(Boolean.FALSE));
+
+		//
+		// When / Then
+		//
+		assertThrows(IllegalArgumentException.class, () -> service.confirmHold("someHoldId").block());
+		verifyNoInteractions(bookingRepository);
+		verify(holdRepository, never()).deleteById(any(String.class));
+	}
+
+	@Test
+	public void testConfirmHold_alreadyConfirmed() {
+
+		//
+		// Given
+		//
+		Hold hold = hold("someHoldId");
+		when(holdRepository.findActiveById(eq("someHoldId"))).thenReturn(Mono.just(hold));
+		when(bookingService.isBookingModificationAllowed(eq(Booking.DEFAULT_SITE), eq("someHoldId"),
+				eq(hold.getDateRange()))).thenReturn(Mono.just(Boolean.TRUE));
+		when(bookingRepository.insert(eq(hold.toBooking())))
+				.thenReturn(Mono.error(new DuplicateKeyException("someHoldId")));
+
+		//
+		// When / Then
+		//
+		assertThrows(HoldNotFoundException.class, () -> service.confirmHold("someHoldId").block());
+		verify(holdRepository, never()).deleteById(any(String.class));
+	}
+
+	@Test
+	public void testMakeReservation_claimingNights() {
+
+		//
+		// Given
+		//
+		OccupancyService occupancyService = claimingNights();
+		Booking booking = new Booking("email", "fullName", dateRange(1, 4));
+		when(occupancyService.claim(eq(Booking.DEFAULT_SITE), anyString(), eq(booking.getDateRange().nights())))
+				.thenReturn(Mono.just(Boolean.TRUE));
+		when(bookingRepository.save(any(Booking.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+
+		//
+		// When
+		//
+		Booking saved = service.makeReservation(booking).block();
+
+		//
+		// Then
+		//
+		// Nights are claimed for the id the booking is saved with
+		verify(occupancyService).claim(Booking.DEFAULT_SITE, saved.getId(), booking.getDateRange().nights());
+		verify(occupancyService, never()).release(anyString(), anyString(), anyList());
+		verifyNoInteractions(availabilityService);
+	}
+
+	@Test
+	public void testMakeReservation_claimingNights_taken() {
+
+		//
+		// Given
+		//
+		OccupancyService occupancyService = claimingNights();
+		Booking booking = new Booking("email", "fullName", dateRange(1, 4));
+		when(occupancyService.claim(eq(Booking.DEFAULT_SITE), anyString(), anyList()))
+				.thenReturn(Mono.just(Boolean.FALSE));
+
+		//
+		// When / Then
+		//
+		assertThrows(IllegalArgumentException.class, () -> service.makeReservation(booking).block());
+		verifyNoInteractions(bookingRepository);
+	}
+
+	@Test
+	public void testMakeReservation_claimingNights_releasedWhenNotSaved() {
+
+		//
+		// Given
+		//
+		OccupancyService occupancyService = claimingNights();
+		Booking booking = new Booking("email", "fullName", dateRange(1, 4));
+		when(occupancyService.claim(eq(Booking.DEFAULT_SITE), anyString(), anyList()))
+				.thenReturn(Mono.just(Boolean.TRUE));
+		when(occupancyService.release(eq(Booking.DEFAULT_SITE), anyString(), anyList())).thenReturn(Mono.empty());
+		when(bookingRepository.save(any(Booking.class))).thenReturn(Mono.error(new IllegalStateException("save")));
+
+		//
+		// When / Then
+		//
+		assertThrows(IllegalStateException.class, () -> service.makeReservation(booking).block());
+		ArgumentCaptor<String> claimedFor = ArgumentCaptor.forClass(String.class);
+		verify(occupancyService).claim(eq(Booking.DEFAULT_SITE), claimedFor.capture(), anyList());
+		verify(occupancyService).release(Booking.DEFAULT_SITE, claimedFor.getValue(), booking.getDateRange().nights());
+	}
+
+	@Test
+	public void testModifyReservation_claimingNights() {
+
+		//
+		// Given
+		//
+		OccupancyService occupancyService = claimingNights();
+		Booking booking = new Booking("someBookingId", "email", "fullName", dateRange(1, 4));
+		Booking modified = Booking.from(booking, dateRange(2, 5));
+		LocalDate now = LocalDate.now();
+		when(bookingRepository.customFindById(eq("someBookingId"))).thenReturn(Mono.just(booking));
+		when(occupancyService.claim(eq(Booking.DEFAULT_SITE), eq("someBookingId"), anyList()))
+				.thenReturn(Mono.just(Boolean.TRUE));
+		when(occupancyService.release(eq(Booking.DEFAULT_SITE), eq("someBookingId"), anyList()))
+				.thenReturn(Mono.empty());
+		when(bookingRepository.customUpdate(eq(modified))).thenReturn(Mono.just(modified));
+
+		//
+		// When
+		//
+		service.modifyReservation("someBookingId", modified.getDateRange()).block();
+
+		//
+		// Then
+		//
+		// Only the night added is claimed, and only the night no longer needed is released
+		verify(occupancyService).claim(Booking.DEFAULT_SITE, "someBookingId",
+				Arrays.asList(now.plusDays(minDaysAhead + 4)));
+		verify(occupancyService).release(Booking.DEFAULT_SITE, "someBookingId",
+				Arrays.asList(now.plusDays(minDaysAhead + 1)));
+	}
+
+	@Test
+	public void testModifyReservation_claimingNights_releasedWhenNotSaved() {
+
+		//
+		// Given
+		//
+		OccupancyService occupancyService = claimingNights();
+		Booking booking = new Booking("someBookingId", "email", "fullName", dateRange(1, 4));
+		Booking modified = Booking.from(booking, dateRange(2, 5));
+		LocalDate now = LocalDate.now();
+		when(bookingRepository.customFindById(eq("someBookingId"))).thenReturn(Mono.just(booking));
+		when(occupancyService.claim(eq(Booking.DEFAULT_SITE), eq("someBookingId"), anyList()))
+				.thenReturn(Mono.just(Boolean.TRUE));
+		when(occupancyService.release(eq(Booking.DEFAULT_SITE), eq("someBookingId"), anyList()))
+				.thenReturn(Mono.empty());
+		when(bookingRepository.customUpdate(eq(modified))).thenReturn(Mono.error(new IllegalStateException("save")));
+
+		//
+		// When / Then
+		//
+		assertThrows(IllegalStateException.class,
+				() -> service.modifyReservation("someBookingId", modified.getDateRange()).block());
+		verify(occupancyService).release(Booking.DEFAULT_SITE, "someBookingId",
+				Arrays.asList(now.plusDays(minDaysAhead + 4)));
+		verify(occupancyService, never()).release(Booking.DEFAULT_SITE, "someBookingId",
+				Arrays.asList(now.plusDays(minDaysAhead + 1)));
+	}
+
+	/**
+	 * Same as reservation.occupancy-mode=night, for the current test only.
+	 */
+	private OccupancyService claimingNights() {
+		OccupancyService occupancyService = mock(OccupancyService.class);
+		ReflectionTestUtils.setField(service, "occupancyService", occupancyService);
+		return occupancyService;
+	}
+
+	private DateRangeVO dateRange(int fromDays, int toDays) {
+		LocalDate now = LocalDate.now();
+		return new DateRangeVO(now.plusDays(minDaysAhead + fromDays), now.plusDays(minDaysAhead + toDays));
+	}
+
+	private Hold hold(String holdId) {
+		LocalDate now = LocalDate.now();
+		Hold hold = new Hold(new Booking("email", "fullName", new DateRangeVO(now.plusDays(minDaysAhead),
+				now.plusDays(minDaysAhead + maxBookingDays))), Instant.now().plusSeconds(600));
+		ReflectionTestUtils.setField(hold, "id", holdId);
+		return hold;
+	}
 }